@@ -0,0 +1,123 @@
+package ascii_art;
+
+import image.Image;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A check that renders which repeat the last render allocate nothing on the heap, on any thread, once
+ * the render context holds buffers of their size. Every scenario sets up a fresh shell state on a
+ * generated image, renders a few times to warm the context up and then renders again, failing if any
+ * of those renders allocated a byte outside of writing its output. The grids are large enough that
+ * error diffusion runs its helper threads, so the check needs more than one processor; on a single
+ * processor it fails rather than passing without them (a JVM can be given more with
+ * -XX:ActiveProcessorCount).
+ * <p>
+ * Usage: AllocationCheck [WIDTHxHEIGHT]
+ * <br>
+ * The process exits with status 1 if a render allocated, and 2 if the check could not run.
+ */
+public class AllocationCheck {
+	private static final String SIZE_SEPARATOR = "x";
+	private static final String DEFAULT_IMAGE_SIZE = "3000x2000";
+	private static final String ASCII_ART = "asciiArt";
+	// Raises the default resolution to 256 tiles per row, 32768 tiles on a 3:2 image
+	private static final String[] RESOLUTION = {"res up", "res up", "res up", "res up", "res up", "res up",
+			"res up"};
+	private static final String[][] SCENARIOS = {
+			{},
+			{"dither on"},
+			{"dither on", "reverse", "contrast equalize"},
+			{"match shape"},
+			{"match braille"},
+			{"match blocks"},
+			{"color on"},
+			{"edges on"},
+			{"aspect 2"},
+			{"res down", "zoom in"},
+			{"dither on", "res down", "zoom in"},
+	};
+	private static final int WARMUP_RENDERS = 3;
+	private static final int CHECKED_RENDERS = 10;
+	private static final String USAGE_MSG = "Usage: AllocationCheck [WIDTHxHEIGHT]";
+	private static final String SINGLE_PROCESSOR_MSG = "Did not check, since the parallel paths need " +
+			"more than one processor.";
+	private static final String PASSED_MSG = "ok      %s";
+	private static final String FAILED_MSG = "FAILED  %s: renders allocated %s bytes";
+	private static final String NOT_COUNTED_MSG = "FAILED  %s: a render did not count its allocations";
+	private static final String SUMMARY_MSG = "%d of %d scenarios allocated.";
+	private static final String BASE_SCENARIO = "brightness";
+	private static final String SCENARIO_SEPARATOR = ", ";
+
+	/**
+	 * Runs the check from the command line.
+	 *
+	 * @param args optionally the size of the generated image
+	 */
+	public static void main(String[] args) {
+		if (args.length > 1) {
+			System.out.println(USAGE_MSG);
+			System.exit(2);
+		}
+		if (Runtime.getRuntime().availableProcessors() < 2) {
+			System.out.println(SINGLE_PROCESSOR_MSG);
+			System.exit(2);
+		}
+		String[] size = (args.length > 0 ? args[0] : DEFAULT_IMAGE_SIZE).split(SIZE_SEPARATOR);
+		Image image = ReplayDriver.generateImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), 0);
+
+		int failed = 0;
+		for (String[] scenario : SCENARIOS) {
+			String name = scenario.length == 0 ? BASE_SCENARIO : String.join(SCENARIO_SEPARATOR, scenario);
+			List<Long> allocations = check(image, scenario);
+			if (allocations.contains(-1L)) {
+				System.out.println(String.format(NOT_COUNTED_MSG, name));
+				failed++;
+			} else if (allocations.stream().anyMatch(allocated -> allocated != 0)) {
+				System.out.println(String.format(FAILED_MSG, name, allocations));
+				failed++;
+			} else {
+				System.out.println(String.format(PASSED_MSG, name));
+			}
+		}
+		System.out.println(String.format(SUMMARY_MSG, failed, SCENARIOS.length));
+		System.exit(failed > 0 ? 1 : 0);
+	}
+
+	// Helper: sets a fresh state up with the scenario's commands, warms it up and returns the allocations
+	// of the checked renders
+	private static List<Long> check(Image image, String[] scenario) {
+		ShellState shellState = new ShellState(image);
+		shellState.getRenderContext().setCountingAllocations(true);
+		Shell shell = new Shell(shellState);
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream())));
+		List<Long> allocations = new ArrayList<>();
+		try {
+			for (String line : RESOLUTION) {
+				shell.executeLine(line);
+			}
+			for (String line : scenario) {
+				shell.executeLine(line);
+			}
+			for (int i = 0; i < WARMUP_RENDERS + CHECKED_RENDERS; i++) {
+				shell.executeLine(ASCII_ART);
+				shellState.getRenderScheduler().awaitIdle();
+				long allocated = shellState.pollRenderAllocation();
+				if (i >= WARMUP_RENDERS) {
+					allocations.add(allocated);
+				}
+			}
+		} finally {
+			System.setOut(console);
+			shellState.getRenderScheduler().awaitIdle();
+			shellState.getRenderScheduler().shutdown();
+			shellState.close();
+		}
+		return allocations;
+	}
+}
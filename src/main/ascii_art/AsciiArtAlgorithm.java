@@ -1,9 +1,21 @@
 package ascii_art;
 
+import ascii_output.AsciiRowOutput;
+import image.BrightnessGrid;
+import image.BrightnessPyramid;
 import image.Image;
 import image.ImageProcessor;
+import image.SparseBrightnessGrid;
+import image.UniformRegions;
+import image_char_matching.CharConverter;
+import image_char_matching.CharMatcherSnapshot;
 import image_char_matching.SubImgCharMatcher;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
 /**
  * The AsciiArtAlgorithm class coordinates the process of converting an image
  * into ASCII art using a given charset and resolution.
@@ -12,41 +24,121 @@ import image_char_matching.SubImgCharMatcher;
  * Charset changes are handled externally via the SubImgCharMatcher object.
  * Additionally, the class can be fed a cached brightness grid to avoid recomputation. and can push
  * updates via a callback.
+ * The art, tile colors and scratch arrays are taken from a {@link RenderContext}, so a render that
+ * shares the context of the renders before it at the same resolution allocates nothing.
+ * Tiles may be taller than wide, to make up for characters being taller than wide; they then cover
+ * fewer rows of the image.
  *
  * @author aronisaacs
  */
 public class AsciiArtAlgorithm {
+	// Previews of a progressive render are this many times coarser than the next level
+	private static final int PREVIEW_STEP = 4;
+	// Previews coarser than this are not worth looking at
+	private static final int MIN_PREVIEW_RESOLUTION = 16;
 
-	private final Image image;                 // the padded image (fixed after construction)
-	private final SubImgCharMatcher matcher;   // character matcher (mutable externally)
+	private final Image originalImage;         // the image as given
+	private RenderContext context;             // buffers the render writes into
+	private final CharMatcherSnapshot charset; // the charset as it was when the render was set up
 	private int resolution;                    // number of characters per row
+	private int tileAspect = 1;                // tile height in tile widths
 	private final boolean reverseBrightness; //false by default, true if brightness must be reversed
+	private final MatchMode matchMode;       // how tiles are matched to characters
+	private final SubCellGlyphs subCells;    // glyph tables of the sub-cell match modes, null otherwise
+	private final boolean dither;            // true if brightness matching diffuses its error
+	private final ErrorDiffusion diffusion;  // maps brightness with error diffusion, when dithering
+	private final ContrastMode contrast;     // how brightness is spread over the charset's range
+	private final boolean color;             // true if the average color of every tile is computed
+	private int[][] tileColors;              // average color of every tile of the last run, in color mode
+	private char[][] edgeGlyphs;             // edge character of every tile of this resolution, or null
+	private UniformRegions uniformRegions;   // tiles of a single color in the padded image, or null
 
 	// Cached brightness grid (recomputed only when resolution changes)
-	private double[][] brightnessGrid;
-	private final java.util.function.Consumer<double[][]> cacheCallback;
+	private BrightnessGrid brightnessGrid;
+	private final Consumer<BrightnessGrid> cacheCallback;
+
+	// Time spent by the last run in each stage, for the render cost model
+	private long brightnessNanos = 0;
+	private long matchNanos = 0;
+	private long allocatedBytes = -1;
 
 	/**
 	 * Constructs an AsciiArtAlgorithm with the given image, matcher, and resolution.
-	 * The image is padded to power-of-two dimensions during construction.
+	 * The matcher's current charset is captured here, so edits made before the render runs apply to
+	 * the next render. The image is padded to power-of-two dimensions only if it is needed.
 	 *
 	 * @param image      original image
 	 * @param matcher    character matcher
 	 * @param resolution number of characters per row (must be a power of two)
+	 * @param reverseBrightness true if brightness must be reversed
+	 * @param matchMode  match tiles by brightness only, by brightness and shape, or draw their sub-cells
+	 *                   with Braille patterns or quadrant blocks
+	 * @param dither     true to diffuse the brightness error of every tile to its neighbours, when
+	 *                   matching by brightness
+	 * @param contrast   how the brightness of the tiles is adjusted from their histogram, when matching
+	 *                   by brightness
+	 * @param color      true to compute the average color of every tile, in the same pass as its
+	 *                   brightness
+	 * @param initialBrightnessGrid cached brightness grid for this resolution, or null
+	 * @param cacheCallback receives the brightness grid whenever it is computed, may be null
 	 * @throws IllegalArgumentException if resolution is invalid
 	 */
 	public AsciiArtAlgorithm(Image image,
 							 SubImgCharMatcher matcher,
 							 int resolution,
 							 boolean reverseBrightness,
-							 double[][] initialBrightnessGrid,
-							 java.util.function.Consumer<double[][]> cacheCallback) {
-		this.image = ImageProcessor.padToPowerOfTwo(image);
-		this.matcher = matcher;
+							 MatchMode matchMode,
+							 boolean dither,
+							 ContrastMode contrast,
+							 boolean color,
+							 BrightnessGrid initialBrightnessGrid,
+							 Consumer<BrightnessGrid> cacheCallback) {
+		this(image, matcher.getSnapshot(), resolution, reverseBrightness, matchMode, dither, contrast,
+				color, initialBrightnessGrid, cacheCallback);
+	}
+
+	/**
+	 * Constructs an AsciiArtAlgorithm that renders with the given compiled charset, for callers that
+	 * compile charsets themselves rather than editing a matcher.
+	 *
+	 * @param image      original image
+	 * @param charset    compiled charset
+	 * @param resolution number of characters per row (must be a power of two)
+	 * @param reverseBrightness true if brightness must be reversed
+	 * @param matchMode  match tiles by brightness only, by brightness and shape, or draw their sub-cells
+	 *                   with Braille patterns or quadrant blocks
+	 * @param dither     true to diffuse the brightness error of every tile to its neighbours, when
+	 *                   matching by brightness
+	 * @param contrast   how the brightness of the tiles is adjusted from their histogram, when matching
+	 *                   by brightness
+	 * @param color      true to compute the average color of every tile, in the same pass as its
+	 *                   brightness
+	 * @param initialBrightnessGrid cached brightness grid for this resolution, or null
+	 * @param cacheCallback receives the brightness grid whenever it is computed, may be null
+	 */
+	public AsciiArtAlgorithm(Image image,
+							 CharMatcherSnapshot charset,
+							 int resolution,
+							 boolean reverseBrightness,
+							 MatchMode matchMode,
+							 boolean dither,
+							 ContrastMode contrast,
+							 boolean color,
+							 BrightnessGrid initialBrightnessGrid,
+							 Consumer<BrightnessGrid> cacheCallback) {
+		this.originalImage = image;
+		this.charset = charset;
 		setResolution(resolution); // validates and sets
 		this.brightnessGrid = initialBrightnessGrid;
 		this.reverseBrightness = reverseBrightness;
+		this.matchMode = matchMode;
+		this.subCells = SubCellGlyphs.of(matchMode);
+		this.dither = dither;
+		this.diffusion = dither ? new ErrorDiffusion(charset) : null;
+		this.contrast = contrast;
+		this.color = color;
 		this.cacheCallback = cacheCallback;
+		this.context = new RenderContext(false); // nobody clears it, so it must not start helper threads
 	}
 
 	/**
@@ -58,6 +150,80 @@ public class AsciiArtAlgorithm {
 		this.resolution = resolution;
 	}
 
+	/**
+	 * Gets the resolution.
+	 *
+	 * @return number of characters per row
+	 */
+	public int getResolution() {
+		return resolution;
+	}
+
+
+	/**
+	 * Sets the edge characters drawn over the matched characters, for edge mode. Tiles without an edge
+	 * keep the character they are matched to; the sub-cell modes draw edges with their own cells, so they
+	 * ignore edge characters.
+	 *
+	 * @param edgeGlyphs the edge character of every tile of this resolution, 0 where there is no edge,
+	 *                   or null to draw no edges
+	 */
+	public void setEdgeGlyphs(char[][] edgeGlyphs) {
+		this.edgeGlyphs = subCells == null ? edgeGlyphs : null;
+	}
+
+	/**
+	 * Sets the height of the tiles in tile widths, 1 (square tiles) unless set. The brightness grid given
+	 * to the constructor must have been computed with tiles of this aspect.
+	 *
+	 * @param tileAspect a power of two, such that a tile is no taller than the padded image
+	 */
+	public void setTileAspect(int tileAspect) {
+		this.tileAspect = tileAspect;
+	}
+
+	/**
+	 * Sets the brightness grid to map, computed elsewhere since the algorithm was constructed, such as by
+	 * the worker processes of a band-sharded render. The cache callback is not called for it.
+	 *
+	 * @param brightnessGrid brightness grid of this resolution and tile aspect
+	 */
+	public void setBrightnessGrid(BrightnessGrid brightnessGrid) {
+		this.brightnessGrid = brightnessGrid;
+	}
+
+	/**
+	 * Sets the buffers the render writes into, in place of buffers of its own, with which error is
+	 * diffused on the rendering thread alone. The art and tile colors a run returns live in the context,
+	 * so they are overwritten by the next render that uses it.
+	 *
+	 * @param context the render context, used by one render at a time
+	 */
+	public void setRenderContext(RenderContext context) {
+		this.context = context;
+	}
+
+	/**
+	 * Sets the uniform regions of the padded image. Tiles inside them are filled from their single color
+	 * without reading their pixels, and a run of tiles of one color is matched to a character once.
+	 *
+	 * @param uniformRegions the uniform regions of the padded image, or null to read every tile
+	 */
+	public void setUniformRegions(UniformRegions uniformRegions) {
+		this.uniformRegions = uniformRegions;
+	}
+
+	/**
+	 * Checks that the captured charset is large enough to render with. The sub-cell match modes draw
+	 * with their own glyphs, so they accept any charset.
+	 *
+	 * @throws IllegalStateException if charset is too small
+	 */
+	public void checkCharset() {
+		if (subCells == null && charset.size() < 2) {
+			throw new IllegalStateException("Did not execute. Charset is too small.");
+		}
+	}
 
 	/**
 	 * Runs the algorithm using the current resolution, charset, and brightness grid.
@@ -66,63 +232,651 @@ public class AsciiArtAlgorithm {
 	 * @throws IllegalStateException if charset is too small
 	 */
 	public char[][] run() {
-		if (matcher.getCharset().size() < 2) {
-			throw new IllegalStateException("Did not execute. Charset is too small.");
+		return run(new RenderProgress());
+	}
+
+	/**
+	 * Runs the algorithm, reporting every completed tile row to the given progress and stopping as soon
+	 * as it is cancelled.
+	 *
+	 * @param progress receives completed rows and signals cancellation
+	 * @return a 2D char array representing the ASCII art
+	 * @throws IllegalStateException                       if charset is too small
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled
+	 */
+	public char[][] run(RenderProgress progress) {
+		checkCharset();
+		brightnessNanos = 0;
+		long allocatedBefore = allocatedSoFar();
+		long start = System.nanoTime();
+		if (matchMode == MatchMode.SHAPE || subCells != null) {
+			char[][] ascii = drawEdges(runShapeMatching(progress), 0, 0);
+			matchNanos = System.nanoTime() - start;
+			allocatedBytes = allocatedSince(allocatedBefore);
+			return ascii;
 		}
 
-		// Recompute brightness grid if needed
+		// Recompute brightness grid if needed, colors are never cached so color mode always scans the tiles
 		if (brightnessGrid == null) {
-			brightnessGrid = computeBrightnessGrid();
+			brightnessGrid = computeBrightnessGrid(progress, true);
 			//add the push callback here later
 			if (cacheCallback != null) {
 				cacheCallback.accept(brightnessGrid);
 			}
+			brightnessNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+		} else if (color) {
+			computeBrightnessGrid(progress, false);
+			brightnessNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+		}
+
+		char[][] ascii = drawEdges(mapToChars(brightnessGrid, progress), 0, 0);
+		matchNanos = System.nanoTime() - start;
+		allocatedBytes = allocatedSince(allocatedBefore);
+		return ascii;
+	}
+
+	/**
+	 * Gets the average color of every tile, computed by the last run in color mode.
+	 *
+	 * @return the colors packed as 0xRRGGBB, indexed by tile row and column, or null if not in color mode
+	 */
+	public int[][] getTileColors() {
+		return tileColors;
+	}
+
+	/**
+	 * Gets the time the last run spent computing the brightness grid.
+	 *
+	 * @return time in nanoseconds, 0 if the grid was cached or the run matched by shape or
+	 *         sub-cells
+	 */
+	public long getBrightnessNanos() {
+		return brightnessNanos;
+	}
+
+	/**
+	 * Gets the time the last run spent matching tiles to characters; in the shape and sub-cell modes
+	 * this includes reading the pixels.
+	 *
+	 * @return time in nanoseconds
+	 */
+	public long getMatchNanos() {
+		return matchNanos;
+	}
+
+	/**
+	 * Gets the number of bytes the last standard or viewport run allocated on the heap, output excluded,
+	 * when its render context counts allocations, on its own thread and on the helper threads of error
+	 * diffusion alike. Once the context holds buffers of the right size, this
+	 * is 0 unless the run computed a brightness grid to cache.
+	 *
+	 * @return size in bytes, or -1 if allocations were not counted
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	// Helper: the bytes this thread and the context's helper threads allocated so far, or -1 if the
+	// context does not count allocations
+	private long allocatedSoFar() {
+		return context.getAllocatedBytes();
+	}
+
+	// Helper: the bytes this thread allocated since the given count, or -1 if allocations are not counted
+	private long allocatedSince(long allocatedBefore) {
+		long allocatedAfter = allocatedSoFar();
+		return allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+	}
+
+	/**
+	 * Runs the algorithm progressively, for renders large enough that waiting for the full result is
+	 * slow. Low-resolution previews read from the brightness pyramid are handed to the preview consumer
+	 * first, each {@value #PREVIEW_STEP} times finer than the one before, and the full-resolution art is
+	 * returned last. In shape mode the previews are matched by brightness; in the sub-cell modes they
+	 * are drawn from the tiles of the pyramid's resolution of the cells. Previews are sampled from a few
+	 * pixels of every tile unless a pyramid level they can be averaged from is built already, so they
+	 * cost a small fraction of a pass over the pixels, and only the final level reads all of them.
+	 *
+	 * @param progress        receives completed rows and signals cancellation
+	 * @param pyramid         the brightness pyramid of the image
+	 * @param previewConsumer receives every preview as soon as it is mapped
+	 * @return a 2D char array representing the ASCII art at the full resolution
+	 * @throws IllegalStateException                       if charset is too small
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled
+	 */
+	public char[][] runProgressive(RenderProgress progress,
+								   BrightnessPyramid pyramid,
+								   Consumer<char[][]> previewConsumer) {
+		checkCharset();
+		int minPreview = Math.max(MIN_PREVIEW_RESOLUTION, pyramid.getMinTilesPerRow());
+		// a tile must fit in the image height
+		minPreview = Math.max(minPreview, ImageProcessor.getPaddedWidth(originalImage) * tileAspect
+				/ ImageProcessor.getPaddedHeight(originalImage));
+		Deque<Integer> previews = new ArrayDeque<>();
+		for (int preview = resolution / PREVIEW_STEP; preview >= minPreview; preview /= PREVIEW_STEP) {
+			previews.push(preview); // coarsest first
+		}
+		for (int preview : previews) {
+			int levelTiles = subCells == null ? preview : cellLevelTiles(preview);
+			try (BrightnessGrid level = pyramid.getPreviewGrid(levelTiles, progress::checkCancelled)) {
+				if (subCells != null) {
+					previewConsumer.accept(mapSubCells(level, preview, progress));
+				} else if (tileAspect == 1) {
+					previewConsumer.accept(mapToChars(level, progress));
+				} else {
+					try (BrightnessGrid grid = stackTiles(level, tileAspect)) {
+						previewConsumer.accept(mapToChars(grid, progress));
+					}
+				}
+			}
+		}
+
+		// the final level comes from the pyramid as well, unless shape matching needs the pixels
+		if (brightnessGrid == null && matchMode == MatchMode.BRIGHTNESS) {
+			brightnessGrid = tileAspect == 1 ? pyramidGrid(pyramid, resolution, progress)
+					: stackPyramidTiles(pyramid, resolution, tileAspect, progress);
+			if (cacheCallback != null) {
+				cacheCallback.accept(brightnessGrid);
+			}
+		}
+		return run(progress);
+	}
+
+	// Helper: a level of the pyramid, reporting the rows of the level to the progress if it is built
+	private static BrightnessGrid pyramidGrid(BrightnessPyramid pyramid, int tilesPerRow,
+											  RenderProgress progress) {
+		if (!pyramid.hasGrid(tilesPerRow)) {
+			progress.start(pyramid.getRows(tilesPerRow));
+		}
+		return pyramid.getGrid(tilesPerRow, progress::rowCompleted);
+	}
+
+	/**
+	 * Computes the brightness of tiles taller than wide at the given tiles per row, averaging the square
+	 * tiles of the pyramid level stacked in each of them. The grid is a new one, owned by the caller.
+	 *
+	 * @param pyramid     the brightness pyramid of the image
+	 * @param tilesPerRow number of tiles per row, a resolution the pyramid provides
+	 * @param tileAspect  tile height in tile widths, a power of two no taller than the padded image
+	 * @param progress    receives the rows of the pyramid level if it is built, and signals cancellation
+	 * @return the grid of average tile brightness in [0,1]
+	 */
+	public static BrightnessGrid stackPyramidTiles(BrightnessPyramid pyramid, int tilesPerRow,
+												   int tileAspect, RenderProgress progress) {
+		return stackTiles(pyramidGrid(pyramid, tilesPerRow, progress), tileAspect);
+	}
+
+	// Helper: a new grid of the tiles of the given grid of square tiles stacked tileAspect high
+	private static BrightnessGrid stackTiles(BrightnessGrid level, int tileAspect) {
+		BrightnessGrid grid = new BrightnessGrid(level.getRows() / tileAspect, level.getColumns());
+		for (int row = 0; row < grid.getRows(); row++) {
+			for (int col = 0; col < grid.getColumns(); col++) {
+				double sum = 0.0;
+				for (int k = 0; k < tileAspect; k++) {
+					sum += level.get(row * tileAspect + k, col);
+				}
+				grid.set(row, col, sum / tileAspect);
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Runs the algorithm on a window of the grid only, for zoomed views: the art holds the given rows and
+	 * columns of tiles of this resolution. Only the pixels inside the window are read, and when matching
+	 * by brightness only for tiles the sparse grid does not hold yet; those are added to it, so views that
+	 * overlap later reuse them. A cached brightness grid of the whole image is used if one is available.
+	 * Contrast adjustment uses the histogram of the window.
+	 *
+	 * @param progress    receives completed rows and signals cancellation
+	 * @param tiles       tiles of this resolution computed so far, filled as tiles are computed
+	 * @param firstRow    first tile row of the window
+	 * @param firstColumn first tile column of the window
+	 * @param rows        number of tile rows in the window
+	 * @param columns     number of tile columns in the window
+	 * @return a 2D char array representing the ASCII art of the window
+	 * @throws IllegalStateException                       if charset is too small
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled
+	 */
+	public char[][] runViewport(RenderProgress progress, SparseBrightnessGrid tiles, int firstRow,
+								int firstColumn, int rows, int columns) {
+		checkCharset();
+		long allocatedBefore = allocatedSoFar();
+		long start = System.nanoTime();
+		brightnessNanos = 0;
+		int tileWidth = ImageProcessor.getPaddedWidth(originalImage) / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		boolean fromGrid = brightnessGrid != null && matchMode == MatchMode.BRIGHTNESS && !color;
+		boolean needPixels = matchMode != MatchMode.BRIGHTNESS || color;
+		for (int row = 0; row < rows && !needPixels && !fromGrid; row++) {
+			for (int col = 0; col < columns && !needPixels; col++) {
+				needPixels = Double.isNaN(tiles.get(firstRow + row, firstColumn + col));
+			}
+		}
+		Image region = null;
+		if (needPixels) {
+			region = context.getPixelBuffer(columns * tileWidth, rows * tileHeight);
+			ImageProcessor.fillRegion(originalImage, firstRow * tileHeight, firstColumn * tileWidth,
+					columns * tileWidth, rows * tileHeight, context.getPixels());
+		}
+		tileColors = color ? context.getTileColors(rows, columns) : null;
+		if (matchMode != MatchMode.BRIGHTNESS) {
+			char[][] ascii = drawEdges(matchShapes(region, firstRow, firstColumn, tileWidth, rows, columns,
+					progress, null, tiles), firstRow, firstColumn);
+			matchNanos = System.nanoTime() - start;
+			allocatedBytes = allocatedSince(allocatedBefore);
+			return ascii;
+		}
+
+		BrightnessGrid window = context.getWindow(rows, columns);
+		progress.start(rows);
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				double brightness = fromGrid ? brightnessGrid.get(firstRow + row, firstColumn + col)
+						: tiles.get(firstRow + row, firstColumn + col);
+				int uniform = uniformColor((firstRow + row) * tileHeight, (firstColumn + col) * tileWidth,
+						tileWidth);
+				if (uniform != UniformRegions.NOT_UNIFORM && (color || Double.isNaN(brightness))) {
+					brightness = ImageProcessor.computeColorBrightness(uniform,
+							ImageProcessor.DEFAULT_BRIGHTNESS);
+					if (color) {
+						tileColors[row][col] = uniform;
+					}
+				} else if (color) {
+					brightness = ImageProcessor.computeBrightnessAndColor(region, row * tileHeight,
+							col * tileWidth, tileWidth, tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS,
+							tileColors[row], col);
+				} else if (Double.isNaN(brightness)) {
+					brightness = ImageProcessor.computeBrightness(region, row * tileHeight,
+							col * tileWidth, tileWidth, tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS);
+				}
+				tiles.set(firstRow + row, firstColumn + col, brightness);
+				window.set(row, col, brightness);
+			}
+			progress.rowCompleted();
+		}
+		brightnessNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		char[][] ascii = drawEdges(mapToChars(window, progress), firstRow, firstColumn);
+		matchNanos = System.nanoTime() - start;
+		allocatedBytes = allocatedSince(allocatedBefore);
+		return ascii;
+	}
+
+	/**
+	 * Runs the algorithm as a single fused pass that streams the art to the given output one tile row
+	 * at a time: each row's pixels are padded, reduced to brightness (and shape), mapped to characters
+	 * and written before the next row is touched. Only one row of tiles is held in memory, so neither
+	 * the padded image nor the brightness grid is created; a cached brightness grid is still used if
+	 * one is available, but a newly computed one is not cached. Uniform regions are used if set, so the
+	 * caller should only set regions that were found already, since finding them pads the whole image.
+	 * Contrast adjustment needs the histogram of the whole grid before the first row is mapped, so with
+	 * contrast on, brightness matching computes (and caches) the grid first, and then streams from it.
+	 * Streaming renders are not colored, so tile colors are never kept.
+	 *
+	 * @param progress receives completed rows and signals cancellation
+	 * @param output   receives the rows of the art
+	 * @throws IllegalStateException                       if charset is too small
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled, in which case
+	 *                                                    the output is ended after the last full row
+	 */
+	public void runStreaming(RenderProgress progress, AsciiRowOutput output) {
+		checkCharset();
+		int tileWidth = ImageProcessor.getPaddedWidth(originalImage) / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		int rows = ImageProcessor.getPaddedHeight(originalImage) / tileHeight;
+		if (brightnessGrid == null && matchMode == MatchMode.BRIGHTNESS && contrast != ContrastMode.OFF) {
+			brightnessGrid = computeBrightnessGrid(progress, true);
+			if (cacheCallback != null) {
+				cacheCallback.accept(brightnessGrid);
+			}
+		}
+		ContrastCurve curve = matchMode == MatchMode.BRIGHTNESS && brightnessGrid != null
+				? ContrastCurve.of(contrast, brightnessGrid) : null;
+		boolean fromGrid = brightnessGrid != null && matchMode == MatchMode.BRIGHTNESS;
+		int maskResolution = charset.getPixelResolution();
+		long[] mask = context.getMask(CharConverter.maskLength(maskResolution));
+		double[] cells = context.getCells(subCells != null ? subCells.getCellCount()
+				: maskResolution * maskResolution);
+		char[] asciiRow = context.getArt(1, resolution)[0];
+		// brightness of the row and the error it receives and sends down, when dithering
+		boolean diffuse = dither && matchMode == MatchMode.BRIGHTNESS;
+		double[] rowBrightness = diffuse ? context.getRowValues(resolution) : null;
+		float[][] errors = diffuse ? context.getErrors(1, resolution) : null;
+		float[] incoming = diffuse ? errors[0] : null;
+		float[] outgoing = diffuse ? errors[1] : null;
+
+		output.begin(rows, resolution);
+		progress.start(rows);
+		try {
+			for (int row = 0; row < rows; row++) {
+				Image band = null;
+				if (!fromGrid) {
+					band = context.getPixelBuffer(ImageProcessor.getPaddedWidth(originalImage), tileHeight);
+					ImageProcessor.fillBand(originalImage, row * tileHeight, tileHeight,
+							context.getPixels());
+				}
+				for (int col = 0; col < resolution; col++) {
+					int uniform = fromGrid ? UniformRegions.NOT_UNIFORM
+							: uniformColor(row * tileHeight, col * tileWidth, tileWidth);
+					double brightness;
+					if (fromGrid) {
+						brightness = brightnessGrid.get(row, col);
+						if (curve != null) {
+							brightness = curve.apply(brightness);
+						}
+					} else if (uniform != UniformRegions.NOT_UNIFORM) {
+						brightness = fillUniformTile(uniform, maskResolution, mask, cells);
+					} else if (matchMode == MatchMode.SHAPE) {
+						brightness = ImageProcessor.computeBrightnessAndMask(band, 0, col * tileWidth,
+								tileWidth, tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS, maskResolution,
+								mask, cells, null, 0);
+					} else if (subCells != null) {
+						brightness = ImageProcessor.computeCellBrightness(band, 0, col * tileWidth,
+								tileWidth, tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS,
+								subCells.getCellColumns(), subCells.getCellRows(), cells, null, 0);
+					} else {
+						brightness = ImageProcessor.computeBrightness(band, 0, col * tileWidth, tileWidth,
+								tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS);
+					}
+					if (!fromGrid) {
+						//rounded as a grid stores it, so the tile matches as it would from the grid
+						brightness = BrightnessGrid.round(brightness);
+					}
+					if (reverseBrightness) {
+						brightness = 1.0 - brightness;
+					}
+					if (subCells != null) {
+						asciiRow[col] = subCells.match(cells, reverseBrightness);
+					} else if (matchMode == MatchMode.SHAPE) {
+						if (reverseBrightness) {
+							invertMask(mask, maskResolution * maskResolution);
+						}
+						asciiRow[col] = charset.getCharByShape(brightness, mask);
+					} else if (diffuse) {
+						rowBrightness[col] = brightness;
+					} else {
+						asciiRow[col] = charset.getCharByImageBrightness(brightness);
+					}
+				}
+				if (diffuse) {
+					diffusion.mapRow(rowBrightness, incoming, outgoing, asciiRow);
+					float[] swap = incoming;
+					incoming = outgoing;
+					outgoing = swap;
+				}
+				if (edgeGlyphs != null) {
+					drawEdges(asciiRow, edgeGlyphs[row], 0);
+				}
+				output.writeRow(asciiRow);
+				progress.rowCompleted();
+			}
+		} finally {
+			output.end();
+		}
+	}
+
+	// Helper: maps a brightness grid to characters by brightness, adjusting its contrast and reversing
+	// it on the fly if needed
+	private char[][] mapToChars(BrightnessGrid grid, RenderProgress progress) {
+		ContrastCurve curve = context.getCurve(contrast, grid);
+		if (dither) {
+			return diffusion.map(grid, curve, reverseBrightness, progress, context);
+		}
+		// Reuse the output ASCII matrix of the last render of this size
+		char[][] ascii = context.getArt(grid.getRows(), grid.getColumns());
+		progress.start(grid.getRows());
+
+		// Map brightness to characters, a run of equal tiles (a flat area) looking its character up once
+		double previous = Double.NaN;
+		char previousChar = 0;
+		for (int row = 0; row < grid.getRows(); row++) {
+			for (int col = 0; col < grid.getColumns(); col++) {
+				double value = grid.get(row, col);
+				if (value != previous) {
+					double brightness = curve == null ? value : curve.apply(value);
+					previousChar = charset.getCharByImageBrightness(
+							reverseBrightness ? 1.0 - brightness : brightness);
+					previous = value;
+				}
+				ascii[row][col] = previousChar;
+			}
+			progress.rowCompleted();
+		}
+
+		return ascii;
+	}
+
+	// Helper: draws the edge characters over art whose first tile is at the given row and column of this
+	// resolution, returning the art
+	private char[][] drawEdges(char[][] ascii, int firstRow, int firstColumn) {
+		if (edgeGlyphs != null) {
+			for (int row = 0; row < ascii.length; row++) {
+				drawEdges(ascii[row], edgeGlyphs[firstRow + row], firstColumn);
+			}
+		}
+		return ascii;
+	}
+
+	private static void drawEdges(char[] asciiRow, char[] edgeRow, int firstColumn) {
+		for (int col = 0; col < asciiRow.length; col++) {
+			char edge = edgeRow[firstColumn + col];
+			if (edge != EdgeGlyphs.NO_EDGE) {
+				asciiRow[col] = edge;
+			}
 		}
+	}
 
-		// Determine brightness source (normal or reversed)
-		double[][] source = brightnessGrid;
+	// Helper: the tiles per row of the pyramid resolution whose tiles are as large as the narrower side
+	// of the cells of a preview in a sub-cell mode
+	private int cellLevelTiles(int preview) {
+		return Math.max(preview * subCells.getCellColumns(),
+				preview * subCells.getCellRows() / tileAspect);
+	}
 
-		if (reverseBrightness) {
-			double[][] reversed = new double[source.length][source[0].length];
-			for (int r = 0; r < source.length; r++) {
-				for (int c = 0; c < source[r].length; c++) {
-					reversed[r][c] = 1.0 - source[r][c];
+	// Helper: maps a preview in a sub-cell mode from the square tiles of its cellLevelTiles resolution,
+	// averaging the runs of those tiles that make up longer sides
+	private char[][] mapSubCells(BrightnessGrid level, int preview, RenderProgress progress) {
+		int cellColumns = subCells.getCellColumns();
+		int cellRows = subCells.getCellRows();
+		int levelTiles = level.getColumns();
+		int spanX = levelTiles / (preview * cellColumns); // level tiles per cell, across and down
+		int spanY = levelTiles * tileAspect / (preview * cellRows);
+		int rows = level.getRows() / (cellRows * spanY);
+		double[] cells = context.getCells(subCells.getCellCount());
+		char[][] ascii = context.getArt(rows, preview);
+		progress.start(rows);
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < preview; col++) {
+				for (int cy = 0; cy < cellRows; cy++) {
+					for (int cx = 0; cx < cellColumns; cx++) {
+						double sum = 0.0;
+						for (int ky = 0; ky < spanY; ky++) {
+							for (int kx = 0; kx < spanX; kx++) {
+								sum += level.get((row * cellRows + cy) * spanY + ky,
+										(col * cellColumns + cx) * spanX + kx);
+							}
+						}
+						cells[cy * cellColumns + cx] = sum / (spanX * spanY);
+					}
 				}
+				ascii[row][col] = subCells.match(cells, reverseBrightness);
 			}
-			source = reversed;
+			progress.rowCompleted();
 		}
+		return ascii;
+	}
 
-		// Allocate output ASCII matrix
-		char[][] ascii = new char[source.length][source[0].length];
+	// Helper: maps every tile by its shape, computing tile masks and brightness in a single pass
+	private char[][] runShapeMatching(RenderProgress progress) {
+		Image image = getPaddedImage();
+		int tileWidth = image.getWidth() / resolution;
+		int rows = image.getHeight() / (tileWidth * tileAspect);
+		// the brightness grid falls out of the same pass, so cache it if it is missing
+		BrightnessGrid grid = brightnessGrid == null ? new BrightnessGrid(rows, resolution) : null;
+		tileColors = color ? context.getTileColors(rows, resolution) : null;
 
-		// Map brightness to characters — clean, no branching inside loop
-		for (int row = 0; row < source.length; row++) {
-			for (int col = 0; col < source[row].length; col++) {
-				ascii[row][col] = matcher.getCharByImageBrightness(source[row][col]);
+		char[][] ascii = matchShapes(image, 0, 0, tileWidth, rows, resolution, progress, grid, null);
+
+		if (grid != null) {
+			brightnessGrid = grid;
+			if (cacheCallback != null) {
+				cacheCallback.accept(brightnessGrid);
 			}
 		}
+		return ascii;
+	}
 
+	// Helper: maps the tiles of an image by their shape, or by their sub-cells in the sub-cell modes,
+	// writing the brightness of every tile to the grid or the sparse tiles given, if any, and filling the
+	// tile colors in color mode. The image starts at the given tile row and column of the padded image,
+	// which is where the tiles are written in the sparse tiles; the grid holds the image alone.
+	private char[][] matchShapes(Image image, int firstRow, int firstColumn, int tileWidth, int rows,
+								 int columns, RenderProgress progress, BrightnessGrid grid,
+								 SparseBrightnessGrid tiles) {
+		int tileHeight = tileWidth * tileAspect;
+		int maskResolution = charset.getPixelResolution();
+		long[] mask = context.getMask(CharConverter.maskLength(maskResolution));
+		double[] cells = context.getCells(subCells != null ? subCells.getCellCount()
+				: maskResolution * maskResolution);
+		char[][] ascii = context.getArt(rows, columns);
+		// the last uniform tile, whose character the next tile of the same color reuses
+		int lastUniform = UniformRegions.NOT_UNIFORM;
+		double lastUniformBrightness = 0.0;
+		char lastUniformChar = 0;
+		progress.start(rows);
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < columns; col++) {
+				int uniform = uniformColor((firstRow + row) * tileHeight, (firstColumn + col) * tileWidth,
+						tileWidth);
+				if (uniform != UniformRegions.NOT_UNIFORM && uniform == lastUniform) {
+					putBrightness(grid, tiles, firstRow, firstColumn, row, col, lastUniformBrightness);
+					if (color) {
+						tileColors[row][col] = uniform;
+					}
+					ascii[row][col] = lastUniformChar;
+					continue;
+				}
+				double brightness;
+				if (uniform != UniformRegions.NOT_UNIFORM) {
+					brightness = fillUniformTile(uniform, maskResolution, mask, cells);
+					if (color) {
+						tileColors[row][col] = uniform;
+					}
+				} else if (subCells != null) {
+					brightness = ImageProcessor.computeCellBrightness(
+							image, row * tileHeight, col * tileWidth, tileWidth, tileHeight,
+							ImageProcessor.DEFAULT_BRIGHTNESS, subCells.getCellColumns(),
+							subCells.getCellRows(), cells, color ? tileColors[row] : null, col);
+				} else {
+					brightness = ImageProcessor.computeBrightnessAndMask(
+							image, row * tileHeight, col * tileWidth, tileWidth, tileHeight,
+							ImageProcessor.DEFAULT_BRIGHTNESS, maskResolution, mask, cells,
+							color ? tileColors[row] : null, col);
+				}
+				brightness = BrightnessGrid.round(brightness);
+				putBrightness(grid, tiles, firstRow, firstColumn, row, col, brightness);
+				if (subCells != null) {
+					ascii[row][col] = subCells.match(cells, reverseBrightness);
+				} else if (reverseBrightness) {
+					invertMask(mask, maskResolution * maskResolution);
+					ascii[row][col] = charset.getCharByShape(1.0 - brightness, mask);
+				} else {
+					ascii[row][col] = charset.getCharByShape(brightness, mask);
+				}
+				if (uniform != UniformRegions.NOT_UNIFORM) {
+					lastUniform = uniform;
+					lastUniformBrightness = brightness;
+					lastUniformChar = ascii[row][col];
+				}
+			}
+			progress.rowCompleted();
+		}
 		return ascii;
 	}
 
-	// Helper: recomputes brightness grid based on current resolution
-	private double[][] computeBrightnessGrid() {
+	private static void putBrightness(BrightnessGrid grid, SparseBrightnessGrid tiles, int firstRow,
+									  int firstColumn, int row, int col, double brightness) {
+		if (grid != null) {
+			grid.set(row, col, brightness);
+		}
+		if (tiles != null) {
+			tiles.set(firstRow + row, firstColumn + col, brightness);
+		}
+	}
+
+	// Helper: the single color of a tile of the padded image, or NOT_UNIFORM
+	private int uniformColor(int startY, int startX, int tileWidth) {
+		return uniformRegions == null ? UniformRegions.NOT_UNIFORM
+				: uniformRegions.getUniformColor(startY, startX, tileWidth, tileWidth * tileAspect);
+	}
+
+	// Helper: fills the mask and cells as reading a tile of a single color would, every cell being as
+	// bright as the tile's average, and returns the tile's brightness
+	private static double fillUniformTile(int rgb, int maskResolution, long[] mask, double[] cells) {
+		double brightness = ImageProcessor.computeColorBrightness(rgb, ImageProcessor.DEFAULT_BRIGHTNESS);
+		Arrays.fill(cells, brightness);
+		Arrays.fill(mask, 0L);
+		invertMask(mask, maskResolution * maskResolution);
+		return brightness;
+	}
+
+	// Helper: flips the first bitCount bits of a mask
+	private static void invertMask(long[] mask, int bitCount) {
+		for (int i = 0; i < mask.length; i++) {
+			int bitsInWord = Math.min(Long.SIZE, bitCount - i * Long.SIZE);
+			long used = bitsInWord == Long.SIZE ? -1L : (1L << bitsInWord) - 1;
+			mask[i] = ~mask[i] & used;
+		}
+	}
+
+	// Helper: recomputes brightness grid based on current resolution, and the tile colors in the same pass
+	// in color mode. When the grid is cached already, only the colors are kept and null is returned.
+	private BrightnessGrid computeBrightnessGrid(RenderProgress progress, boolean keepBrightness) {
+		Image image = getPaddedImage();
 		int tilesPerRow = resolution;
-		int tileDimension = image.getWidth() / tilesPerRow;
-		// square tiles
+		int tileWidth = image.getWidth() / tilesPerRow;
+		// tiles are square unless an aspect is set
+		int tileHeight = tileWidth * tileAspect;
 
-		int rows = image.getHeight() / tileDimension;
-		double[][] grid = new double[rows][tilesPerRow];
+		int rows = image.getHeight() / tileHeight;
+		BrightnessGrid grid = keepBrightness ? new BrightnessGrid(rows, tilesPerRow) : null;
+		tileColors = color ? context.getTileColors(rows, tilesPerRow) : null;
 
+		progress.start(rows);
 		for (int row = 0; row < rows; row++) {
 			for (int col = 0; col < tilesPerRow; col++) {
-				int startX = col * tileDimension;
-				int startY = row * tileDimension;
-				grid[row][col] = ImageProcessor.computeBrightness(
-						image, startY, startX, tileDimension,
-						ImageProcessor.DEFAULT_BRIGHTNESS);
+				int startX = col * tileWidth;
+				int startY = row * tileHeight;
+				int uniform = uniformColor(startY, startX, tileWidth);
+				double brightness;
+				if (uniform != UniformRegions.NOT_UNIFORM) {
+					brightness = ImageProcessor.computeColorBrightness(uniform,
+							ImageProcessor.DEFAULT_BRIGHTNESS);
+					if (color) {
+						tileColors[row][col] = uniform;
+					}
+				} else {
+					brightness = color
+							? ImageProcessor.computeBrightnessAndColor(image, startY, startX, tileWidth,
+									tileHeight, ImageProcessor.DEFAULT_BRIGHTNESS, tileColors[row], col)
+							: ImageProcessor.computeBrightness(image, startY, startX, tileWidth, tileHeight,
+									ImageProcessor.DEFAULT_BRIGHTNESS);
+				}
+				if (grid != null) {
+					grid.set(row, col, brightness);
+				}
 			}
+			progress.rowCompleted();
 		}
 		return grid;
 	}
+
+	// Helper: pads the image to power-of-two dimensions the first time pixels are needed, keeping the
+	// padded image in the context for the renders after this one
+	private Image getPaddedImage() {
+		return context.getPaddedImage(originalImage);
+	}
 }
@@ -0,0 +1,150 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+import image.ImageDecoders;
+import image.ImageProcessor;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the brightness grid of an image file in several local worker processes, for images too
+ * large to render comfortably in one JVM. The tile rows are split into consecutive bands, one per
+ * {@link BandWorker}; every worker decodes only the rows of the image its band covers, so no process
+ * ever holds the whole image, and each runs in its own JVM with its own heap, which the operating
+ * system is free to place on any core, socket or NUMA node. The workers are started together and
+ * their brightness rows are read back over their standard output pipes, band by band, into one grid.
+ * <p>
+ * Only brightness is sharded: the grid is then mapped to characters in-process like any cached grid,
+ * so contrast and error diffusion still see the whole image.
+ */
+public final class BandCoordinator {
+	/**
+	 * Most worker processes an image is split among.
+	 */
+	public static final int MAX_WORKERS = 64;
+
+	// How often a wait for a worker checks for cancellation
+	private static final long POLL_MILLIS = 20;
+	private static final String WORKER_FAILED_ERROR = "Render worker failed: ";
+	private static final String WORKER_EXIT_ERROR = "exit status ";
+
+	private BandCoordinator() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Computes the brightness grid of an image file with the given number of worker processes, fewer
+	 * if the grid has fewer rows. The progress is started with the rows of the grid, which are completed
+	 * as the bands are read back.
+	 *
+	 * @param path       path of the image file
+	 * @param resolution number of tiles per row
+	 * @param tileAspect tile height in tile widths
+	 * @param workers    number of worker processes, at most {@link #MAX_WORKERS}
+	 * @param progress   receives completed rows and signals cancellation
+	 * @return the brightness grid of the padded image
+	 * @throws IOException                                if the image cannot be read or a worker fails
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled; the workers are
+	 *                                                    stopped
+	 */
+	public static BrightnessGrid computeBrightnessGrid(String path, int resolution, int tileAspect,
+													   int workers, RenderProgress progress)
+			throws IOException {
+		Dimension size = ImageDecoders.readDimensions(path);
+		int tileWidth = ImageProcessor.getPaddedDimension(size.width) / resolution;
+		int rows = ImageProcessor.getPaddedDimension(size.height) / (tileWidth * tileAspect);
+		int bands = Math.max(1, Math.min(Math.min(workers, MAX_WORKERS), rows));
+
+		List<Process> processes = new ArrayList<>(bands);
+		BrightnessGrid grid = new BrightnessGrid(rows, resolution);
+		boolean complete = false;
+		try {
+			for (int band = 0; band < bands; band++) {
+				int firstRow = bandStart(band, bands, rows);
+				processes.add(startWorker(path, resolution, tileAspect, firstRow,
+						bandStart(band + 1, bands, rows) - firstRow));
+			}
+			progress.start(rows);
+			for (int band = 0; band < bands; band++) {
+				readBand(processes.get(band), grid, bandStart(band, bands, rows),
+						bandStart(band + 1, bands, rows), progress);
+			}
+			complete = true;
+			return grid;
+		} finally {
+			for (Process process : processes) {
+				process.destroyForcibly();
+			}
+			if (!complete) {
+				grid.close();
+			}
+		}
+	}
+
+	// Helper: the first tile row of a band, bands splitting the rows as evenly as possible
+	private static int bandStart(int band, int bands, int rows) {
+		return (int) ((long) band * rows / bands);
+	}
+
+	// Helper: starts a worker on a band, in a JVM with the class path of this one
+	private static Process startWorker(String path, int resolution, int tileAspect, int firstRow, int rows)
+			throws IOException {
+		String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+		return new ProcessBuilder(java, "-Djava.awt.headless=true",
+				"-cp", System.getProperty("java.class.path"),
+				BandWorker.class.getName(), path, String.valueOf(resolution), String.valueOf(tileAspect),
+				String.valueOf(firstRow), String.valueOf(rows)).start();
+	}
+
+	// Helper: reads the rows of a band from its worker into the grid, once the worker starts writing
+	private static void readBand(Process worker, BrightnessGrid grid, int firstRow, int endRow,
+								 RenderProgress progress) throws IOException {
+		InputStream output = worker.getInputStream();
+		// a worker writes nothing until its whole band is computed
+		try {
+			while (output.available() == 0 && !worker.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				progress.checkCancelled();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+		DataInputStream input = new DataInputStream(new BufferedInputStream(output));
+		try {
+			for (int row = firstRow; row < endRow; row++) {
+				for (int col = 0; col < grid.getColumns(); col++) {
+					grid.set(row, col, input.readFloat());
+				}
+				progress.rowCompleted();
+				progress.checkCancelled();
+			}
+		} catch (EOFException e) {
+			throw new IOException(WORKER_FAILED_ERROR + failureOf(worker), e);
+		}
+	}
+
+	// Helper: the reason a worker stopped writing early, from its standard error or exit status
+	private static String failureOf(Process worker) throws IOException {
+		String message = new String(worker.getErrorStream().readAllBytes(), StandardCharsets.UTF_8).strip();
+		if (!message.isEmpty()) {
+			return message;
+		}
+		try {
+			return WORKER_EXIT_ERROR + worker.waitFor();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package ascii_art;
+
+import image.Image;
+import image.ImageDecoders;
+import image.ImageProcessor;
+
+import java.awt.*;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The worker process of a band-sharded render, started by {@link BandCoordinator}. It decodes only the
+ * rows of the image file its band of tile rows covers, computes the brightness of every tile of the
+ * band, and writes them to its standard output, row by row, as big-endian floats. Nothing else is
+ * written to standard output; a failure is reported on standard error with a non-zero exit status.
+ * <p>
+ * The whole band is computed before anything is written, so a worker never waits for the coordinator
+ * to read the bands before its own.
+ * <p>
+ * Usage: BandWorker imageFile resolution tileAspect firstRow rows
+ */
+public final class BandWorker {
+	private static final int ARG_COUNT = 5;
+	private static final int FAILURE_STATUS = 1;
+	private static final String USAGE_MSG = "Usage: BandWorker imageFile resolution tileAspect " +
+			"firstRow rows";
+
+	private BandWorker() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Runs the worker.
+	 *
+	 * @param args the image file, the number of tiles per row, the tile height in tile widths, the first
+	 *             tile row of the band and its number of tile rows
+	 */
+	public static void main(String[] args) {
+		if (args.length != ARG_COUNT) {
+			System.err.println(USAGE_MSG);
+			System.exit(FAILURE_STATUS);
+		}
+		try {
+			float[] brightness = computeBand(args[0], Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+					Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(FileDescriptor.out)));
+			for (float value : brightness) {
+				out.writeFloat(value);
+			}
+			out.flush();
+		} catch (IOException | RuntimeException e) {
+			System.err.println(e.getMessage());
+			System.exit(FAILURE_STATUS);
+		}
+	}
+
+	/**
+	 * Computes the brightness of the tiles of a band of tile rows, decoding only the rows of the image
+	 * the band covers.
+	 *
+	 * @param path       path of the image file
+	 * @param resolution number of tiles per row
+	 * @param tileAspect tile height in tile widths
+	 * @param firstRow   first tile row of the band
+	 * @param rows       number of tile rows in the band
+	 * @return the brightness of every tile of the band, row by row
+	 * @throws IOException if the image cannot be read
+	 */
+	static float[] computeBand(String path, int resolution, int tileAspect, int firstRow, int rows)
+			throws IOException {
+		Dimension size = ImageDecoders.readDimensions(path);
+		int tileWidth = ImageProcessor.getPaddedDimension(size.width) / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		int startY = firstRow * tileHeight;
+		int bandHeight = rows * tileHeight;
+
+		// the image rows under the band, which may be none if the band lies in the padding
+		int offsetY = (ImageProcessor.getPaddedDimension(size.height) - size.height) / 2;
+		int firstImageRow = Math.max(0, Math.min(startY - offsetY, size.height));
+		int lastImageRow = Math.max(0, Math.min(startY + bandHeight - offsetY, size.height)); // exclusive
+		Image imageRows = lastImageRow > firstImageRow
+				? ImageDecoders.decodeRows(path, firstImageRow, lastImageRow - firstImageRow)
+				: new Image(new int[0], size.width, 0);
+		Image band = ImageProcessor.padBand(imageRows, firstImageRow, size.height, startY, bandHeight);
+
+		float[] brightness = new float[rows * resolution];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < resolution; col++) {
+				brightness[row * resolution + col] = (float) ImageProcessor.computeBrightness(band,
+						row * tileHeight, col * tileWidth, tileWidth, tileHeight,
+						ImageProcessor.DEFAULT_BRIGHTNESS);
+			}
+		}
+		return brightness;
+	}
+}
@@ -0,0 +1,353 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+import image.BrightnessPyramid;
+import image.GradientField;
+import image.Image;
+import image.ImageDecoders;
+import image.ImageProcessor;
+import image.SparseBrightnessGrid;
+import image.UniformRegions;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * An image of the session together with everything derived from it: its dimensions, the brightness
+ * grids of every resolution and tile aspect rendered so far, the tiles computed for zoomed views, its
+ * brightness pyramid, its uniform regions, and its gradient field with the edge characters found from it.
+ * The image never changes, so the derived data stays valid for as long as the image is kept;
+ * {@link #close()} releases it.
+ */
+public class CachedImage implements AutoCloseable {
+	// Loading work runs on its own daemon threads, so it never delays exit or queues behind renders
+	private static final Executor LOADER = runnable -> {
+		Thread thread = new Thread(runnable, "ascii-load");
+		thread.setDaemon(true);
+		thread.start();
+	};
+
+	private final String name;
+	private final CompletableFuture<Image> image;
+	private final CompletableFuture<Dimension> imageSize; // read from the header, ahead of the pixels
+	// Brightness grids of every resolution and tile aspect rendered so far, by gridKey
+	private final Map<Long, BrightnessGrid> brightnessGrids = new HashMap<>();
+	// Tiles computed so far by zoomed views of every resolution and tile aspect, by gridKey
+	private final Map<Long, SparseBrightnessGrid> viewportGrids = new HashMap<>();
+	// Brightness of the padded image at every power-of-two tile size, each level built on first use
+	private final Object pyramidLock = new Object();
+	private BrightnessPyramid brightnessPyramid = null;
+	// Gradient of the padded image, built on first use, and the edge characters of every
+	// resolution and tile aspect
+	private final Object edgeLock = new Object();
+	private GradientField gradientField = null;
+	private final Map<Long, char[][]> edgeGlyphs = new HashMap<>();
+	// Tiles of a single color in the padded image, at every power-of-two size, found on first use
+	private final Object uniformLock = new Object();
+	private UniformRegions uniformRegions = null;
+
+	private CachedImage(String name, CompletableFuture<Image> image,
+						CompletableFuture<Dimension> imageSize) {
+		this.name = name;
+		this.image = image;
+		this.imageSize = imageSize;
+	}
+
+	/**
+	 * Wraps an image that is already decoded.
+	 *
+	 * @param name  the name the image is cached under
+	 * @param image the image
+	 * @return the cached image
+	 */
+	public static CachedImage of(String name, Image image) {
+		return new CachedImage(name, CompletableFuture.completedFuture(image),
+				CompletableFuture.completedFuture(new Dimension(image.getWidth(), image.getHeight())));
+	}
+
+	/**
+	 * Starts decoding an image file and reading its dimensions, concurrently in the background.
+	 * A failure is reported by {@link #getLoadFailure()} and by the getters needing the image.
+	 *
+	 * @param path the file path of the image
+	 * @return the cached image, possibly still loading
+	 */
+	public static CachedImage startLoading(String path) {
+		return new CachedImage(path, CompletableFuture.supplyAsync(() -> {
+			try {
+				return new Image(path);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, LOADER), CompletableFuture.supplyAsync(() -> {
+			try {
+				return ImageDecoders.readDimensions(path);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, LOADER));
+	}
+
+	/**
+	 * Decodes an image file before returning.
+	 *
+	 * @param path the file path of the image
+	 * @return the cached image
+	 * @throws IOException if the image cannot be read
+	 */
+	public static CachedImage load(String path) throws IOException {
+		return of(path, new Image(path));
+	}
+
+	/**
+	 * Runs a task on a background loader thread.
+	 *
+	 * @param task the task
+	 * @param <T>  the type of the task's result
+	 * @return the future result of the task
+	 */
+	static <T> CompletableFuture<T> runInBackground(Supplier<T> task) {
+		return CompletableFuture.supplyAsync(task, LOADER);
+	}
+
+	/**
+	 * Gets the name the image is cached under.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the image, waiting for it to be decoded if needed.
+	 *
+	 * @return the image
+	 * @throws CompletionException if the image could not be read
+	 */
+	public Image getImage() {
+		return image.join();
+	}
+
+	/**
+	 * Gets the dimensions of the image, waiting for them to be read if needed.
+	 *
+	 * @return width and height in pixels
+	 * @throws CompletionException if the image could not be read
+	 */
+	public Dimension getSize() {
+		return imageSize.join();
+	}
+
+	/**
+	 * Checks whether loading the image failed, without waiting for it.
+	 *
+	 * @return the reason the image could not be read, or null if it was read or is still being read
+	 */
+	public String getLoadFailure() {
+		if (!image.isCompletedExceptionally() && !imageSize.isCompletedExceptionally()) {
+			return null;
+		}
+		try {
+			image.join();
+			imageSize.join();
+			return null;
+		} catch (CompletionException e) {
+			return ShellState.failureMessage(e);
+		}
+	}
+
+	/**
+	 * Gets the cached brightness grid of the given resolution and tile aspect.
+	 *
+	 * @param resolution the resolution of the grid
+	 * @param tileAspect the tile height in tile widths of the grid
+	 * @return the cached brightness grid, or null if this resolution was not computed yet
+	 */
+	public synchronized BrightnessGrid getBrightnessGrid(int resolution, int tileAspect) {
+		return brightnessGrids.get(gridKey(resolution, tileAspect));
+	}
+
+	/**
+	 * Caches the brightness grid of the given resolution and tile aspect, unless one is cached already.
+	 *
+	 * @param resolution     the resolution the grid was computed for
+	 * @param tileAspect     the tile height in tile widths the grid was computed with
+	 * @param brightnessGrid the grid
+	 */
+	public synchronized void putBrightnessGrid(int resolution, int tileAspect,
+											   BrightnessGrid brightnessGrid) {
+		brightnessGrids.putIfAbsent(gridKey(resolution, tileAspect), brightnessGrid);
+	}
+
+	/**
+	 * Gets the sparse brightness grid zoomed views of the given resolution and tile aspect fill, creating
+	 * it on first use.
+	 *
+	 * @param resolution the resolution of the grid
+	 * @param tileAspect the tile height in tile widths
+	 * @param rows       number of tile rows at this resolution and aspect
+	 * @return the sparse brightness grid
+	 */
+	public synchronized SparseBrightnessGrid getViewportGrid(int resolution, int tileAspect, int rows) {
+		return viewportGrids.computeIfAbsent(gridKey(resolution, tileAspect),
+				key -> new SparseBrightnessGrid(rows, resolution));
+	}
+
+	// Helper: the key of the data derived for a resolution and tile aspect
+	private static long gridKey(int resolution, int tileAspect) {
+		return (long) resolution << Integer.SIZE | tileAspect;
+	}
+
+	/**
+	 * Gets the brightness pyramid of the image, creating it on first use. Its levels are built as they
+	 * are first asked for, and kept with the image.
+	 *
+	 * @return the brightness pyramid of the padded image
+	 */
+	public BrightnessPyramid getBrightnessPyramid() {
+		synchronized (pyramidLock) {
+			if (brightnessPyramid == null) {
+				brightnessPyramid = new BrightnessPyramid(getImage(), ImageProcessor.DEFAULT_BRIGHTNESS);
+			}
+			return brightnessPyramid;
+		}
+	}
+
+	/**
+	 * Gets the uniform regions of the image, finding them on first use.
+	 * Finding them compares every pixel once, reporting each pixel row to the given progress.
+	 *
+	 * @param progress progress of the render that needs the regions
+	 * @return the uniform regions of the padded image
+	 * @throws java.util.concurrent.CancellationException if the render was cancelled while building
+	 */
+	public UniformRegions getUniformRegions(RenderProgress progress) {
+		synchronized (uniformLock) {
+			if (uniformRegions == null) {
+				Image padded = ImageProcessor.padToPowerOfTwo(getImage());
+				progress.start(padded.getHeight());
+				uniformRegions = new UniformRegions(padded, progress::rowCompleted);
+			}
+			return uniformRegions;
+		}
+	}
+
+	/**
+	 * Gets the uniform regions of the image if they were found already, without finding them.
+	 *
+	 * @return the uniform regions of the padded image, or null if no render found them yet
+	 */
+	public UniformRegions getCachedUniformRegions() {
+		synchronized (uniformLock) {
+			return uniformRegions;
+		}
+	}
+
+	/**
+	 * Gets the edge character of every tile of the given resolution, building the gradient field of the
+	 * image on first use and finding the edges of each resolution once. Both passes report their rows to
+	 * the given progress.
+	 *
+	 * @param resolution number of tiles per row
+	 * @param tileAspect tile height in tile widths
+	 * @param progress   progress of the render that needs the edges
+	 * @return the edge character of every tile, 0 where there is no edge
+	 * @throws java.util.concurrent.CancellationException if the render was cancelled while building
+	 */
+	public char[][] getEdgeGlyphs(int resolution, int tileAspect, RenderProgress progress) {
+		synchronized (edgeLock) {
+			char[][] glyphs = edgeGlyphs.get(gridKey(resolution, tileAspect));
+			if (glyphs == null) {
+				if (gradientField == null) {
+					Image padded = ImageProcessor.padToPowerOfTwo(getImage());
+					progress.start(padded.getHeight());
+					gradientField = new GradientField(padded, progress::rowCompleted);
+				}
+				int tileWidth = gradientField.getWidth() / resolution;
+				glyphs = EdgeGlyphs.of(gradientField, tileWidth, tileWidth * tileAspect, progress);
+				edgeGlyphs.put(gridKey(resolution, tileAspect), glyphs);
+			}
+			return glyphs;
+		}
+	}
+
+	/**
+	 * Gets the memory held by the image and its derived data, on and off the heap. An image that is
+	 * still loading counts for nothing until it is decoded.
+	 *
+	 * @return size in bytes
+	 */
+	public long getByteSize() {
+		Image decoded = image.getNow(null);
+		long size = decoded == null ? 0 : (long) decoded.getWidth() * decoded.getHeight() * Integer.BYTES;
+		synchronized (this) {
+			for (BrightnessGrid grid : brightnessGrids.values()) {
+				size += grid.getByteSize();
+			}
+			for (SparseBrightnessGrid grid : viewportGrids.values()) {
+				size += grid.getByteSize();
+			}
+		}
+		synchronized (pyramidLock) {
+			if (brightnessPyramid != null) {
+				size += brightnessPyramid.getByteSize();
+			}
+		}
+		synchronized (uniformLock) {
+			if (uniformRegions != null) {
+				size += uniformRegions.getByteSize();
+			}
+		}
+		synchronized (edgeLock) {
+			if (gradientField != null) {
+				size += gradientField.getByteSize();
+			}
+			for (char[][] glyphs : edgeGlyphs.values()) {
+				size += (long) glyphs.length * glyphs[0].length * Character.BYTES;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Releases the brightness grids, viewport tiles, pyramid, uniform regions and gradient field.
+	 * Must be called once no render uses the image.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			for (BrightnessGrid grid : brightnessGrids.values()) {
+				grid.close();
+			}
+			brightnessGrids.clear();
+			for (SparseBrightnessGrid grid : viewportGrids.values()) {
+				grid.close();
+			}
+			viewportGrids.clear();
+		}
+		synchronized (pyramidLock) {
+			if (brightnessPyramid != null) {
+				brightnessPyramid.close();
+				brightnessPyramid = null;
+			}
+		}
+		synchronized (edgeLock) {
+			if (gradientField != null) {
+				gradientField.close();
+				gradientField = null;
+			}
+			edgeGlyphs.clear();
+		}
+		synchronized (uniformLock) {
+			uniformRegions = null;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+
+/**
+ * A brightness transfer curve built from the histogram of a brightness grid, applied to every tile
+ * before it is matched to a character, so an image that only uses part of the brightness range still
+ * uses the whole charset.
+ * <p>
+ * The curve is a lookup table with one knot per histogram bin edge, interpolated linearly between
+ * knots. Stretching maps the range the tiles actually use (ignoring the darkest and brightest
+ * {@value #STRETCH_CLIP_PERCENT}% of them) onto [0,1]; equalizing maps every tile to the fraction of
+ * tiles darker than it, so every character ends up used about equally often.
+ */
+final class ContrastCurve {
+	private static final double STRETCH_CLIP_PERCENT = 0.5;
+
+	// knots[k] is the adjusted brightness of k / HISTOGRAM_BINS
+	private final double[] knots;
+
+	private ContrastCurve(double[] knots) {
+		this.knots = knots;
+	}
+
+	/**
+	 * Builds the curve of a contrast mode from the histogram of a grid.
+	 *
+	 * @param mode the contrast mode
+	 * @param grid the brightness grid the curve applies to
+	 * @return the curve, or null if the mode leaves brightness unchanged
+	 */
+	static ContrastCurve of(ContrastMode mode, BrightnessGrid grid) {
+		if (mode == ContrastMode.OFF) {
+			return null;
+		}
+		int[] histogram = grid.getHistogram();
+		int bins = histogram.length;
+		long total = 0;
+		for (int count : histogram) {
+			total += count;
+		}
+		if (total == 0) {
+			return null;
+		}
+		double[] knots = new double[bins + 1];
+		if (mode == ContrastMode.EQUALIZE) {
+			long below = 0;
+			for (int k = 0; k < bins; k++) {
+				knots[k] = (double) below / total;
+				below += histogram[k];
+			}
+			knots[bins] = 1.0;
+			return new ContrastCurve(knots);
+		}
+
+		long clip = (long) (total * STRETCH_CLIP_PERCENT / 100);
+		// the darkest and brightest bins are skipped for as long as they hold no more than the clipped
+		// tiles
+		int low = 0;
+		long below = histogram[low];
+		while (below <= clip && low < bins - 1) {
+			below += histogram[++low];
+		}
+		int high = bins - 1;
+		long above = histogram[high];
+		while (above <= clip && high > low) {
+			above += histogram[--high];
+		}
+		double lowEdge = (double) low / bins;
+		double highEdge = (double) (high + 1) / bins;
+		for (int k = 0; k <= bins; k++) {
+			double stretched = ((double) k / bins - lowEdge) / (highEdge - lowEdge);
+			knots[k] = Math.min(1.0, Math.max(0.0, stretched));
+		}
+		return new ContrastCurve(knots);
+	}
+
+	/**
+	 * Applies the curve.
+	 *
+	 * @param brightness normalized brightness
+	 * @return adjusted brightness in [0,1]
+	 */
+	double apply(double brightness) {
+		int bins = knots.length - 1;
+		double position = Math.min(1.0, Math.max(0.0, brightness)) * bins;
+		int bin = Math.min(bins - 1, (int) position);
+		return knots[bin] + (knots[bin + 1] - knots[bin]) * (position - bin);
+	}
+}
@@ -0,0 +1,7 @@
+package ascii_art;
+
+public enum ContrastMode {
+	OFF,
+	STRETCH,
+	EQUALIZE
+}
@@ -0,0 +1,99 @@
+package ascii_art;
+
+import image.GradientField;
+
+import java.util.stream.IntStream;
+
+/**
+ * Finds the tiles crossed by a strong, straight edge and the directional character drawing it, for
+ * line art and diagrams, where matching by brightness alone blurs lines away.
+ * <p>
+ * Every tile sums the structure tensor of its gradients. A tile holds an edge when its gradients are
+ * strong, summing to at least {@value #MIN_STRENGTH} per pixel of tile width (a step of contrast c
+ * crossing a tile sums to 2c), and coherent, pointing mostly one way. The dominant gradient
+ * orientation then picks one of {@code | / - \} with the edge running across it, and a horizontal
+ * edge in the bottom of its tile is drawn as {@code _}.
+ */
+final class EdgeGlyphs {
+	/**
+	 * Marks tiles without an edge.
+	 */
+	static final char NO_EDGE = 0;
+
+	// Summed gradient magnitude a tile needs per pixel of its width
+	private static final double MIN_STRENGTH = 0.25;
+	// Share of the gradient energy that must lie along the dominant orientation, in [0,1]
+	private static final double MIN_COHERENCE = 0.6;
+	// Gradient orientations within this many degrees of an axis draw the axis-aligned characters
+	private static final double AXIS_TOLERANCE_DEGREES = 22.5;
+	// Horizontal edges whose gradients center below this fraction of the tile height draw an underscore
+	private static final double UNDERSCORE_CENTROID = 0.75;
+
+	private EdgeGlyphs() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Finds the edge character of every tile, classifying tile rows in parallel.
+	 *
+	 * @param field      the gradient field of the padded image
+	 * @param tileWidth  width of a tile in pixels
+	 * @param tileHeight height of a tile in pixels, at least its width
+	 * @param progress   receives completed rows and signals cancellation
+	 * @return the edge character of every tile, or {@link #NO_EDGE}, indexed by tile row and column
+	 * @throws java.util.concurrent.CancellationException if the progress was cancelled
+	 */
+	static char[][] of(GradientField field, int tileWidth, int tileHeight, RenderProgress progress) {
+		int rows = field.getHeight() / tileHeight;
+		int columns = field.getWidth() / tileWidth;
+		char[][] glyphs = new char[rows][columns];
+		progress.start(rows);
+		IntStream.range(0, rows).parallel().forEach(row -> {
+			for (int col = 0; col < columns; col++) {
+				glyphs[row][col] = classify(field, row * tileHeight, col * tileWidth, tileWidth,
+						tileHeight);
+			}
+			progress.rowCompleted();
+		});
+		return glyphs;
+	}
+
+	// Helper: the edge character of one tile, from the sums of its structure tensor
+	private static char classify(GradientField field, int startY, int startX, int tileWidth,
+								 int tileHeight) {
+		double xx = 0.0;
+		double yy = 0.0;
+		double xy = 0.0;
+		double magnitude = 0.0;
+		double weightedY = 0.0; // magnitude times the row, for the centroid
+		for (int y = 0; y < tileHeight; y++) {
+			for (int x = 0; x < tileWidth; x++) {
+				double gx = field.getGx(startY + y, startX + x);
+				double gy = field.getGy(startY + y, startX + x);
+				xx += gx * gx;
+				yy += gy * gy;
+				xy += gx * gy;
+				double length = Math.sqrt(gx * gx + gy * gy);
+				magnitude += length;
+				weightedY += length * (y + 0.5);
+			}
+		}
+		double energy = xx + yy;
+		if (magnitude < MIN_STRENGTH * tileWidth || energy == 0.0) {
+			return NO_EDGE;
+		}
+		double anisotropy = Math.sqrt((xx - yy) * (xx - yy) + 4 * xy * xy);
+		if (anisotropy < MIN_COHERENCE * energy) {
+			return NO_EDGE;
+		}
+		// orientation of the gradient, with y pointing down; the edge runs across it
+		double degrees = Math.toDegrees(0.5 * Math.atan2(2 * xy, xx - yy));
+		if (Math.abs(degrees) <= AXIS_TOLERANCE_DEGREES) {
+			return '|';
+		}
+		if (Math.abs(degrees) >= 90 - AXIS_TOLERANCE_DEGREES) {
+			return weightedY / magnitude >= UNDERSCORE_CENTROID * tileHeight ? '_' : '-';
+		}
+		return degrees > 0 ? '/' : '\\';
+	}
+}
@@ -0,0 +1,343 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+import image_char_matching.CharMatcherSnapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Maps brightness to characters with Floyd-Steinberg error diffusion: the difference between a tile's
+ * brightness and the brightness of its character is carried to the tiles not mapped yet (7/16 to the
+ * right, 3/16 below left, 5/16 below and 1/16 below right), so small charsets shade smoothly instead
+ * of banding.
+ * <p>
+ * Diffusion is sequential along a row and from a row to the next, but a tile only depends on the row
+ * above up to one column to its right. Whole grids are therefore mapped as a row-lagged pipeline:
+ * every worker takes the next unmapped row and follows the row above two columns behind it, so all
+ * cores work on consecutive rows at once. The workers are the calling thread and helper threads kept
+ * with the rest of the pipeline in the render context, so mapping a grid allocates nothing.
+ */
+class ErrorDiffusion {
+	private static final double RIGHT_WEIGHT = 7.0 / 16;
+	private static final double BELOW_LEFT_WEIGHT = 3.0 / 16;
+	private static final double BELOW_WEIGHT = 5.0 / 16;
+	private static final double BELOW_RIGHT_WEIGHT = 1.0 / 16;
+	// Grids with fewer tiles than this are not worth starting workers for
+	private static final int MIN_PARALLEL_TILES = 1 << 14;
+	// Busy-wait this many times for the row above before yielding the core
+	private static final int SPINS_BEFORE_YIELD = 64;
+
+	private final CharMatcherSnapshot charset;
+
+	/**
+	 * Constructs an error diffusion over the given charset.
+	 *
+	 * @param charset the charset to map to, with at least one character
+	 */
+	ErrorDiffusion(CharMatcherSnapshot charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Maps a whole brightness grid, in parallel when it is large enough and the context has helpers.
+	 *
+	 * @param grid              normalized tile brightness
+	 * @param curve             contrast curve applied to the brightness first, or null
+	 * @param reverseBrightness true if brightness must be reversed before mapping
+	 * @param progress          receives completed rows and signals cancellation
+	 * @param context           holds the characters, errors and row values, reused between renders
+	 * @return the characters of every tile
+	 * @throws CancellationException if the progress was cancelled
+	 */
+	char[][] map(BrightnessGrid grid, ContrastCurve curve, boolean reverseBrightness,
+				 RenderProgress progress, RenderContext context) {
+		int rows = grid.getRows();
+		int columns = grid.getColumns();
+		char[][] ascii = context.getArt(rows, columns);
+		// errors[r] collects the error row r - 1 sends down, and is only ever written by that row
+		float[][] errors = context.getErrors(rows, columns);
+		progress.start(rows);
+
+		int workers = Math.min(rows, Runtime.getRuntime().availableProcessors());
+		Wavefront wavefront = context.getWavefront();
+		if (wavefront == null || workers < 2 || (long) rows * columns < MIN_PARALLEL_TILES) {
+			double[] values = context.getRowValues(columns);
+			for (int row = 0; row < rows; row++) {
+				readRow(grid, row, curve, reverseBrightness, values);
+				diffuseRow(values, errors[row], errors[row + 1], ascii[row], row, null);
+				progress.rowCompleted();
+			}
+			return ascii;
+		}
+
+		wavefront.map(this, grid, curve, reverseBrightness, progress, ascii, errors, workers);
+		return ascii;
+	}
+
+	/**
+	 * Maps a single row, for renders that produce the grid one row at a time.
+	 *
+	 * @param values   brightness of the row's tiles, already adjusted and reversed if needed
+	 * @param incoming error sent down by the previous row, all zeros for the first row
+	 * @param outgoing overwritten with the error this row sends down
+	 * @param ascii    receives the row's characters
+	 */
+	void mapRow(double[] values, float[] incoming, float[] outgoing, char[] ascii) {
+		Arrays.fill(outgoing, 0f);
+		diffuseRow(values, incoming, outgoing, ascii, 0, null);
+	}
+
+	// Helper: maps one row, waiting for the row above as it goes when running in a wavefront
+	private void diffuseRow(double[] values, float[] incoming, float[] outgoing, char[] ascii, int row,
+							Wavefront wavefront) {
+		int columns = values.length;
+		double carry = 0.0; // error sent right, kept local since no other row touches it
+		for (int col = 0; col < columns; col++) {
+			if (wavefront != null && row > 0) {
+				wavefront.awaitColumns(row - 1, Math.min(col + 2, columns));
+			}
+			double value = Math.min(1.0, Math.max(0.0, values[col] + incoming[col] + carry));
+			int level = charset.getNearestLevel(value);
+			ascii[col] = charset.getLevelChar(level);
+			double error = value - charset.getLevelBrightness(level);
+
+			carry = error * RIGHT_WEIGHT;
+			if (col > 0) {
+				outgoing[col - 1] += (float) (error * BELOW_LEFT_WEIGHT);
+			}
+			outgoing[col] += (float) (error * BELOW_WEIGHT);
+			if (col + 1 < columns) {
+				outgoing[col + 1] += (float) (error * BELOW_RIGHT_WEIGHT);
+			}
+			if (wavefront != null) {
+				wavefront.publish(row, col + 1);
+			}
+		}
+	}
+
+	// Helper: reads and maps one row of a grid, following the row above in the given wavefront
+	private void mapGridRow(BrightnessGrid grid, int row, ContrastCurve curve, boolean reverseBrightness,
+							double[] values, float[][] errors, char[] ascii, Wavefront wavefront) {
+		readRow(grid, row, curve, reverseBrightness, values);
+		diffuseRow(values, errors[row], errors[row + 1], ascii, row, wavefront);
+	}
+
+	private static void readRow(BrightnessGrid grid, int row, ContrastCurve curve,
+								boolean reverseBrightness, double[] values) {
+		for (int col = 0; col < values.length; col++) {
+			double brightness = curve == null ? grid.get(row, col) : curve.apply(grid.get(row, col));
+			values[col] = reverseBrightness ? 1.0 - brightness : brightness;
+		}
+	}
+
+	// Helper: busy-waits for the first few spins, then yields the core
+	private static int pause(int spins) {
+		if (spins < SPINS_BEFORE_YIELD) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+		return spins + 1;
+	}
+
+	/**
+	 * The progress of every row of a grid mapped as a wavefront, and the helper threads mapping its rows
+	 * with the calling thread. A wavefront is kept in a render context, so mapping a grid allocates
+	 * nothing once the context holds one: helpers are started by the first grid and park between grids,
+	 * each with its own row of values. A grid waits for the rows helpers claimed, never for a helper to
+	 * wake, so a late helper only leaves its share to the others. Helpers stop once idle for
+	 * {@value #IDLE_SECONDS} seconds, or when the context is cleared, and the next grid starts them
+	 * again.
+	 */
+	static final class Wavefront {
+		private static final long IDLE_SECONDS = 30;
+		private static final String HELPER_NAME = "dither-helper";
+		// A claim holds the number of the grid above these bits and the next row to claim in them
+		private static final int ROW_BITS = Integer.SIZE;
+		private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+		// The row of a closed grid, which no thread can claim
+		private static final long CLOSED = ROW_MASK;
+
+		private final RenderContext context;
+		private final Thread[] helpers;
+		private final AtomicLong claims = new AtomicLong();
+		private final AtomicInteger settledRows = new AtomicInteger(); // rows mapped or abandoned
+		private volatile RuntimeException failure = null;
+		private volatile boolean stopped = false;
+		// columnsDone[r] is the number of tiles of row r already mapped
+		private AtomicIntegerArray columnsDone = new AtomicIntegerArray(0);
+		private double[][] values; // a row of values for every helper, and the calling thread's last
+		// the grid being mapped, set before its number is published
+		private ErrorDiffusion diffusion;
+		private BrightnessGrid grid;
+		private ContrastCurve curve;
+		private boolean reverseBrightness;
+		private RenderProgress progress;
+		private char[][] ascii;
+		private float[][] errors;
+		private int rows;
+
+		/**
+		 * Constructs a wavefront without starting its helpers.
+		 *
+		 * @param context     the render context holding the wavefront, counting what helpers allocate
+		 * @param helperCount the most helpers a grid may use
+		 */
+		Wavefront(RenderContext context, int helperCount) {
+			this.context = context;
+			this.helpers = new Thread[helperCount];
+			this.values = new double[helperCount + 1][0];
+		}
+
+		/**
+		 * Maps a whole grid with the calling thread and as many helpers as there are other workers.
+		 *
+		 * @param workers number of threads to map with, the calling thread included
+		 * @throws CancellationException if the progress was cancelled
+		 */
+		void map(ErrorDiffusion diffusion, BrightnessGrid grid, ContrastCurve curve,
+				 boolean reverseBrightness, RenderProgress progress, char[][] ascii, float[][] errors,
+				 int workers) {
+			rows = grid.getRows();
+			if (columnsDone.length() != rows) {
+				columnsDone = new AtomicIntegerArray(rows);
+			} else {
+				for (int row = 0; row < rows; row++) {
+					columnsDone.set(row, 0);
+				}
+			}
+			if (values[0].length != grid.getColumns()) {
+				for (int i = 0; i < values.length; i++) {
+					values[i] = new double[grid.getColumns()];
+				}
+			}
+			this.diffusion = diffusion;
+			this.grid = grid;
+			this.curve = curve;
+			this.reverseBrightness = reverseBrightness;
+			this.progress = progress;
+			this.ascii = ascii;
+			this.errors = errors;
+			settledRows.set(0);
+			failure = null;
+			long number = (claims.get() >>> ROW_BITS) + 1;
+			claims.set(number << ROW_BITS); // publishes the grid to the helpers
+			for (int i = 0; i < Math.min(workers - 1, helpers.length); i++) {
+				wake(i);
+			}
+
+			mapRows(number, values[helpers.length], false);
+			// rows are claimed in order, so once none can be claimed, only the claimed ones are awaited
+			long claimed = claims.getAndSet(number << ROW_BITS | CLOSED) & ROW_MASK;
+			int spins = 0;
+			while (settledRows.get() < claimed) {
+				spins = pause(spins);
+			}
+			this.diffusion = null;
+			this.grid = null;
+			this.curve = null;
+			this.progress = null;
+			this.ascii = null;
+			this.errors = null;
+			if (failure != null) {
+				throw failure;
+			}
+		}
+
+		/**
+		 * Stops the helpers, once they finish the grid they are mapping.
+		 */
+		void stop() {
+			stopped = true;
+			for (Thread helper : helpers) {
+				if (helper != null) {
+					LockSupport.unpark(helper);
+				}
+			}
+		}
+
+		// Helper: claims and maps rows of the given grid until none is left or a row failed
+		private void mapRows(long number, double[] rowValues, boolean helper) {
+			while (failure == null) {
+				long claim = claims.get();
+				long row = claim & ROW_MASK;
+				if (claim >>> ROW_BITS != number || row >= rows) {
+					return;
+				}
+				if (!claims.compareAndSet(claim, claim + 1)) {
+					continue;
+				}
+				long allocatedBefore = helper && context.isCountingAllocations()
+						? RenderContext.threadAllocatedBytes() : -1;
+				try {
+					diffusion.mapGridRow(grid, (int) row, curve, reverseBrightness, rowValues, errors,
+							ascii[(int) row], this);
+					progress.rowCompleted();
+				} catch (RuntimeException e) {
+					if (failure == null) {
+						failure = e;
+					}
+					progress.cancel(); //release the rows waiting on a row that will not finish
+				} finally {
+					if (allocatedBefore >= 0) {
+						context.countHelperAllocation(
+								RenderContext.threadAllocatedBytes() - allocatedBefore);
+					}
+					settledRows.incrementAndGet();
+				}
+			}
+		}
+
+		// Helper: starts a helper, or unparks it if it is running
+		private void wake(int index) {
+			Thread helper = helpers[index];
+			if (helper != null && helper.isAlive()) {
+				LockSupport.unpark(helper);
+				return;
+			}
+			helper = new Thread(() -> help(index), HELPER_NAME);
+			helper.setDaemon(true);
+			helpers[index] = helper;
+			helper.start();
+		}
+
+		// Helper: the loop of a helper, mapping rows of every grid it sees published and parking between
+		// grids
+		private void help(int index) {
+			long seen = 0;
+			long idleSince = System.nanoTime();
+			long idleNanos = TimeUnit.SECONDS.toNanos(IDLE_SECONDS);
+			while (!stopped) {
+				long number = claims.get() >>> ROW_BITS;
+				if (number != seen) {
+					seen = number;
+					mapRows(number, values[index], true);
+					idleSince = System.nanoTime();
+				} else if (System.nanoTime() - idleSince < idleNanos) {
+					LockSupport.parkNanos(this, idleNanos);
+				} else {
+					return;
+				}
+			}
+		}
+
+		// the release store makes the row's error writes visible to the row below
+		void publish(int row, int columns) {
+			columnsDone.lazySet(row, columns);
+		}
+
+		void awaitColumns(int row, int columns) {
+			int spins = 0;
+			while (columnsDone.get(row) < columns) {
+				progress.checkCancelled();
+				spins = pause(spins);
+			}
+		}
+	}
+}
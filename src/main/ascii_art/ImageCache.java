@@ -0,0 +1,121 @@
+package ascii_art;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A session-wide cache of decoded images and their brightness data, keyed by file path and bounded by
+ * a memory budget. When the images held exceed the budget, the least recently used ones are evicted
+ * and released explicitly, except for the image the shell is working on, which is never evicted.
+ */
+public class ImageCache implements AutoCloseable {
+	private static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+	// in access order, so iteration starts from the least recently used image
+	private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+	private long budget = DEFAULT_BUDGET;
+
+	/**
+	 * Gets the key an image file is cached under, so different spellings of a path share one entry.
+	 *
+	 * @param path the file path of the image
+	 * @return the normalized absolute path
+	 */
+	public static String keyOf(String path) {
+		return Path.of(path).toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	 * Gets the cached image of the given file, marking it as the most recently used.
+	 *
+	 * @param path the file path of the image
+	 * @return the cached image, or null if it is not cached
+	 */
+	public synchronized CachedImage get(String path) {
+		return images.get(keyOf(path));
+	}
+
+	/**
+	 * Caches an image under the given file path, as the most recently used.
+	 *
+	 * @param path  the file path of the image
+	 * @param image the image to cache
+	 */
+	public synchronized void put(String path, CachedImage image) {
+		CachedImage replaced = images.put(keyOf(path), image);
+		if (replaced != null && replaced != image) {
+			replaced.close();
+		}
+	}
+
+	/**
+	 * Evicts the least recently used images until the cache fits its budget or only the given image is
+	 * left. Evicted images are released, so no render may be using them.
+	 *
+	 * @param keep the image that must stay cached, may be null
+	 */
+	public synchronized void trim(CachedImage keep) {
+		long size = getByteSize();
+		Iterator<CachedImage> iterator = images.values().iterator();
+		while (size > budget && iterator.hasNext()) {
+			CachedImage image = iterator.next();
+			if (image != keep) {
+				size -= image.getByteSize();
+				iterator.remove();
+				image.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the memory budget.
+	 *
+	 * @return the budget in bytes
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget. Call {@link #trim(CachedImage)} to apply it.
+	 *
+	 * @param budget the budget in bytes
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Gets the memory held by all cached images.
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getByteSize() {
+		long size = 0;
+		for (CachedImage image : images.values()) {
+			size += image.getByteSize();
+		}
+		return size;
+	}
+
+	/**
+	 * Gets the number of cached images.
+	 *
+	 * @return number of images
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+
+	/**
+	 * Releases every cached image. Must be called once no render is running.
+	 */
+	@Override
+	public synchronized void close() {
+		for (CachedImage image : images.values()) {
+			image.close();
+		}
+		images.clear();
+	}
+}
@@ -0,0 +1,8 @@
+package ascii_art;
+
+public enum MatchMode {
+	BRIGHTNESS,
+	SHAPE,
+	BRAILLE,
+	BLOCKS
+}
@@ -2,5 +2,6 @@ package ascii_art;
 
 public enum OutputMode {
 	CONSOLE,
-	HTML
+	HTML,
+	FRAMES
 }
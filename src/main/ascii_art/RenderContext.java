@@ -0,0 +1,344 @@
+package ascii_art;
+
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The buffers renders write into, kept from one render to the next so that a render at an unchanged
+ * resolution allocates nothing: the character grids handed to the output, the tile colors, the scratch
+ * arrays of shape and sub-cell matching and of error diffusion, the wavefront and helper threads that
+ * diffuse large grids, the pixels copied out of the image, the window grid of zoomed views, the padded
+ * image and the contrast curve of the last grid.
+ * <p>
+ * A buffer is handed out again, overwritten, by the next request of the same dimensions, and is only
+ * reallocated when the dimensions change. Whatever a render returns is therefore valid until the next
+ * render using the same context, so a context is used by one render at a time, as the render scheduler
+ * runs them.
+ */
+public final class RenderContext {
+	// Character grids of this many sizes are kept, enough for the previews of a progressive render
+	private static final int MAX_ART_BUFFERS = 8;
+
+	private final List<char[][]> artBuffers = new ArrayList<>();
+	private int[][] tileColors = new int[0][0];
+	private float[][] errors = new float[0][0];
+	private double[] rowValues = new double[0];
+	private long[] mask = new long[0];
+	private double[] cells = new double[0];
+	private int[] pixels = new int[0];
+	private Image pixelImage = null;        // wraps pixels with the dimensions last asked for
+	private BrightnessGrid window = null;
+	private Image paddedSource = null;      // the image the padded image was made from
+	private Image padded = null;
+	private BrightnessGrid curveGrid = null; // the grid and mode the curve was built for
+	private ContrastMode curveMode = null;
+	private ContrastCurve curve = null;
+	private final boolean diffusingWithHelpers;
+	private ErrorDiffusion.Wavefront wavefront = null;
+	private volatile boolean countingAllocations = false;
+	private final AtomicLong helperAllocatedBytes = new AtomicLong(); // allocated by helper threads
+
+	/**
+	 * Constructs an empty context that diffuses large grids with helper threads, for an owner that
+	 * clears it once it is done rendering, which stops them.
+	 */
+	public RenderContext() {
+		this(true);
+	}
+
+	/**
+	 * Constructs an empty context.
+	 *
+	 * @param diffusingWithHelpers true to diffuse large grids with helper threads, false to diffuse them
+	 *                             on the rendering thread alone, as a context nobody clears must, since
+	 *                             its helpers would outlive it
+	 */
+	RenderContext(boolean diffusingWithHelpers) {
+		this.diffusingWithHelpers = diffusingWithHelpers;
+	}
+
+	/**
+	 * Gets a character grid of the given dimensions, reusing the one handed out for them before.
+	 *
+	 * @param rows    number of rows
+	 * @param columns number of columns
+	 * @return the grid, holding whatever was written to it last
+	 */
+	char[][] getArt(int rows, int columns) {
+		for (int i = 0; i < artBuffers.size(); i++) {
+			char[][] art = artBuffers.get(i);
+			if (art.length == rows && art[0].length == columns) {
+				return art;
+			}
+		}
+		if (artBuffers.size() == MAX_ART_BUFFERS) {
+			artBuffers.remove(0);
+		}
+		char[][] art = new char[rows][columns];
+		artBuffers.add(art);
+		return art;
+	}
+
+	/**
+	 * Gets a tile color grid of the given dimensions.
+	 *
+	 * @param rows    number of rows
+	 * @param columns number of columns
+	 * @return the grid, holding whatever was written to it last
+	 */
+	int[][] getTileColors(int rows, int columns) {
+		if (tileColors.length != rows || tileColors[0].length != columns) {
+			tileColors = new int[rows][columns];
+		}
+		return tileColors;
+	}
+
+	/**
+	 * Gets the rows of error that error diffusion sends down, one more than the rows of the grid it maps.
+	 *
+	 * @param rows    number of rows of the grid
+	 * @param columns number of columns of the grid
+	 * @return rows + 1 rows of zeros
+	 */
+	float[][] getErrors(int rows, int columns) {
+		if (errors.length != rows + 1 || errors[0].length != columns) {
+			errors = new float[rows + 1][columns];
+		} else {
+			for (float[] row : errors) {
+				Arrays.fill(row, 0f);
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Gets a row of brightness values.
+	 *
+	 * @param columns number of columns
+	 * @return the row, holding whatever was written to it last
+	 */
+	double[] getRowValues(int columns) {
+		if (rowValues.length != columns) {
+			rowValues = new double[columns];
+		}
+		return rowValues;
+	}
+
+	/**
+	 * Gets the wavefront large grids are diffused in, its helper threads started by the first grid.
+	 *
+	 * @return the wavefront, or null if the context diffuses without helpers
+	 */
+	ErrorDiffusion.Wavefront getWavefront() {
+		if (wavefront == null && diffusingWithHelpers) {
+			int helpers = Runtime.getRuntime().availableProcessors() - 1;
+			wavefront = new ErrorDiffusion.Wavefront(this, helpers);
+		}
+		return wavefront;
+	}
+
+	/**
+	 * Gets a tile mask of the given length.
+	 *
+	 * @param length number of longs
+	 * @return the mask, holding whatever was written to it last
+	 */
+	long[] getMask(int length) {
+		if (mask.length != length) {
+			mask = new long[length];
+		}
+		return mask;
+	}
+
+	/**
+	 * Gets the scratch array of the cells of a tile.
+	 *
+	 * @param length number of cells
+	 * @return the cells, holding whatever was written to them last
+	 */
+	double[] getCells(int length) {
+		if (cells.length != length) {
+			cells = new double[length];
+		}
+		return cells;
+	}
+
+	/**
+	 * Gets an image to copy a band or region of pixels into.
+	 *
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 * @return the image, holding whatever was copied to it last
+	 */
+	Image getPixelBuffer(int width, int height) {
+		if (pixelImage == null || pixelImage.getWidth() != width || pixelImage.getHeight() != height) {
+			if (pixels.length < width * height) {
+				pixels = new int[width * height];
+			}
+			pixelImage = new Image(pixels, width, height);
+		}
+		return pixelImage;
+	}
+
+	/**
+	 * Gets the pixels of the image {@link #getPixelBuffer} returned last, for copying into it.
+	 *
+	 * @return the packed pixels, row by row
+	 */
+	int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Gets an empty brightness grid for the window of a zoomed view. The contrast curve of the window
+	 * handed out before is forgotten, since its values are about to change.
+	 *
+	 * @param rows    number of rows
+	 * @param columns number of columns
+	 * @return the grid, its histogram empty
+	 */
+	BrightnessGrid getWindow(int rows, int columns) {
+		if (window == null || window.getRows() != rows || window.getColumns() != columns) {
+			if (window != null) {
+				window.close();
+			}
+			window = new BrightnessGrid(rows, columns);
+		} else {
+			window.clearHistogram();
+		}
+		if (curveGrid == window) {
+			curveGrid = null;
+		}
+		return window;
+	}
+
+	/**
+	 * Gets an image padded to power-of-two dimensions, padding it only if it is not the image padded
+	 * last.
+	 *
+	 * @param image the image
+	 * @return the padded image
+	 */
+	Image getPaddedImage(Image image) {
+		if (paddedSource != image) {
+			padded = ImageProcessor.padToPowerOfTwo(image);
+			paddedSource = image;
+		}
+		return padded;
+	}
+
+	/**
+	 * Drops the padded image, once the image it was padded from is no longer rendered, so that it does
+	 * not outlive that image in the image cache. Must be called while no render uses the context.
+	 */
+	void dropPaddedImage() {
+		paddedSource = null;
+		padded = null;
+	}
+
+	/**
+	 * Gets the contrast curve of a grid, building it only if it is not the grid and mode of last time.
+	 * The values of a grid other than the window never change once it is filled.
+	 *
+	 * @param mode the contrast mode
+	 * @param grid the brightness grid the curve applies to
+	 * @return the curve, or null if the mode leaves brightness unchanged
+	 */
+	ContrastCurve getCurve(ContrastMode mode, BrightnessGrid grid) {
+		if (curveGrid != grid || curveMode != mode) {
+			curve = ContrastCurve.of(mode, grid);
+			curveGrid = grid;
+			curveMode = mode;
+		}
+		return curve;
+	}
+
+	/**
+	 * Sets whether renders using this context count the bytes they allocate, as load drivers do to
+	 * check that steady renders allocate nothing.
+	 *
+	 * @param countingAllocations true to count allocations
+	 */
+	public void setCountingAllocations(boolean countingAllocations) {
+		this.countingAllocations = countingAllocations;
+	}
+
+	/**
+	 * Checks whether renders using this context count the bytes they allocate.
+	 *
+	 * @return true if allocations are counted
+	 */
+	public boolean isCountingAllocations() {
+		return countingAllocations;
+	}
+
+	/**
+	 * Gets the bytes allocated so far on the calling thread and, for renders using this context, on the
+	 * helper threads of error diffusion, so a render counts its allocations as the difference.
+	 *
+	 * @return size in bytes, or -1 if the context does not count allocations
+	 */
+	long getAllocatedBytes() {
+		return countingAllocations ? threadAllocatedBytes() + helperAllocatedBytes.get() : -1;
+	}
+
+	/**
+	 * Counts bytes a helper thread allocated while working for a render using this context.
+	 *
+	 * @param allocatedBytes size in bytes
+	 */
+	void countHelperAllocation(long allocatedBytes) {
+		helperAllocatedBytes.addAndGet(allocatedBytes);
+	}
+
+	/**
+	 * Gets the bytes the calling thread allocated so far.
+	 *
+	 * @return size in bytes
+	 */
+	static long threadAllocatedBytes() {
+		return AllocationCounter.THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Releases the buffers. The context can still be used afterwards, allocating them again.
+	 */
+	public void clear() {
+		artBuffers.clear();
+		tileColors = new int[0][0];
+		errors = new float[0][0];
+		rowValues = new double[0];
+		mask = new long[0];
+		cells = new double[0];
+		pixels = new int[0];
+		pixelImage = null;
+		if (window != null) {
+			window.close();
+			window = null;
+		}
+		if (wavefront != null) {
+			wavefront.stop();
+			wavefront = null;
+		}
+		paddedSource = null;
+		padded = null;
+		curveGrid = null;
+		curveMode = null;
+		curve = null;
+	}
+
+	/**
+	 * Holds the thread bean, so the management beans are only loaded once allocations are counted.
+	 */
+	private static final class AllocationCounter {
+		static final com.sun.management.ThreadMXBean THREADS =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	}
+}
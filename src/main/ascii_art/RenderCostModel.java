@@ -0,0 +1,368 @@
+package ascii_art;
+
+import ascii_output.AsciiFrameWriter;
+import ascii_output.HtmlAsciiOutput;
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image_char_matching.CharConverter;
+import image_char_matching.CharMatcherSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The RenderCostModel class predicts how long a render takes, so a resolution can be chosen to fit a
+ * time budget.
+ * A render is split into stages whose cost grows linearly with a unit of work: brightness with the
+ * pixels of the padded image, brightness matching and output with the tiles, and shape matching with
+ * the pixel samples it reads. The sub-cell modes read every pixel once, like the brightness stage, and
+ * then only look their glyphs up, which is counted as matching by brightness. The cost of a unit of
+ * every stage is first measured on a small sample of the actual image and charset, then refined with
+ * the timings of every real render. Only standard renders without color, edges or zoom are
+ * modelled, since those add passes of their own.
+ */
+public class RenderCostModel {
+	/**
+	 * The stages of a render, each with the unit its cost is measured in.
+	 */
+	public enum Stage {
+		/** building the brightness grid, per pixel of the padded image */
+		BRIGHTNESS,
+		/** matching by brightness, per tile */
+		MATCH,
+		/** matching by brightness with error diffusion, per tile */
+		DITHER,
+		/** matching by shape, brightness included, per pixel sample */
+		SHAPE,
+		/** console output, per tile */
+		CONSOLE_OUTPUT,
+		/** HTML output, per tile */
+		HTML_OUTPUT,
+		/** frame file output, per tile */
+		FRAME_OUTPUT
+	}
+
+	// Weight of a new measurement against the current estimate
+	private static final double SMOOTHING = 0.5;
+	// Calibration samples: pixel rows of the image, and tiles of synthetic art
+	private static final int SAMPLE_PIXEL_ROWS = 32;
+	private static final int SAMPLE_TILE_DIMENSION = 8;
+	private static final int SAMPLE_ROWS = 32;
+	private static final int SAMPLE_COLUMNS = 256;
+	// Every sample is timed this many times and the fastest run is kept, so the code is compiled by then
+	private static final int SAMPLE_RUNS = 5;
+	private static final String SAMPLE_FILE_PREFIX = "ascii-calibration";
+	private static final String SAMPLE_FILE_SUFFIX = ".html";
+	private static final String SAMPLE_FONT_NAME = "Courier New";
+
+	// nanoseconds per unit of every stage measured so far
+	private final Map<Stage, Double> nanosPerUnit = new EnumMap<>(Stage.class);
+	// the charset the matching stages were measured with
+	private CharMatcherSnapshot calibratedCharset = null;
+
+	/**
+	 * Measures the stages of the given render that have no estimate yet. Matching stages are measured
+	 * again whenever the charset changes.
+	 *
+	 * @param image      the original image
+	 * @param charset    the charset to render with, with at least two characters
+	 * @param matchMode  how tiles are matched
+	 * @param dither     true if brightness matching diffuses its error
+	 * @param outputMode where the art is written
+	 */
+	public synchronized void calibrate(Image image, CharMatcherSnapshot charset, MatchMode matchMode,
+									   boolean dither, OutputMode outputMode) {
+		if (charset != calibratedCharset) {
+			nanosPerUnit.remove(Stage.MATCH);
+			nanosPerUnit.remove(Stage.DITHER);
+			nanosPerUnit.remove(Stage.SHAPE);
+			calibratedCharset = charset;
+		}
+		int bandHeight = Math.min(SAMPLE_PIXEL_ROWS, ImageProcessor.getPaddedHeight(image));
+		if (matchMode == MatchMode.SHAPE) {
+			if (!nanosPerUnit.containsKey(Stage.SHAPE)) {
+				Image band = ImageProcessor.padBand(image, 0, bandHeight);
+				int tileDimension = Math.min(SAMPLE_TILE_DIMENSION, bandHeight);
+				int tiles = (band.getWidth() / tileDimension) * (bandHeight / tileDimension);
+				long samples = shapeSamples(tiles, tileDimension, tileDimension,
+						charset.getPixelResolution());
+				nanosPerUnit.put(Stage.SHAPE,
+						(double) timeShape(band, tileDimension, charset) / samples);
+			}
+		} else {
+			if (!nanosPerUnit.containsKey(Stage.BRIGHTNESS)) {
+				Image band = ImageProcessor.padBand(image, 0, bandHeight);
+				nanosPerUnit.put(Stage.BRIGHTNESS,
+						(double) timeBrightness(band) / ((long) band.getWidth() * bandHeight));
+			}
+			Stage match = dither ? Stage.DITHER : Stage.MATCH;
+			if (!nanosPerUnit.containsKey(match)) {
+				nanosPerUnit.put(match,
+						(double) timeMatching(charset, dither) / (SAMPLE_ROWS * SAMPLE_COLUMNS));
+			}
+		}
+		Stage output = outputStage(outputMode);
+		if (!nanosPerUnit.containsKey(output)) {
+			char[][] sample = sampleArt(charset);
+			long nanos;
+			if (outputMode == OutputMode.HTML) {
+				nanos = timeHtmlOutput(sample);
+			} else if (outputMode == OutputMode.FRAMES) {
+				nanos = timeFrameOutput(sample);
+			} else {
+				nanos = timeConsoleOutput(sample);
+			}
+			nanosPerUnit.put(output, (double) nanos / (SAMPLE_ROWS * SAMPLE_COLUMNS));
+		}
+	}
+
+	/**
+	 * Refines the estimate of a stage with the timing of a real render.
+	 *
+	 * @param stage the measured stage
+	 * @param units the units of work the stage did
+	 * @param nanos the time the stage took
+	 */
+	public synchronized void observe(Stage stage, long units, long nanos) {
+		if (units <= 0) {
+			return;
+		}
+		double measured = (double) nanos / units;
+		nanosPerUnit.merge(stage, measured, (old, sample) -> (1 - SMOOTHING) * old + SMOOTHING * sample);
+	}
+
+	/**
+	 * Refines the estimates of every stage of a real render with its timings.
+	 *
+	 * @param image           the original image
+	 * @param resolution      number of characters per row
+	 * @param tileAspect      tile height in tile widths
+	 * @param matchMode       how tiles were matched
+	 * @param pixelResolution side of the square raster of the charset's glyphs
+	 * @param dither          true if brightness matching diffused its error
+	 * @param outputMode      where the art was written
+	 * @param brightnessNanos time spent computing the brightness grid, 0 if it was cached
+	 * @param matchNanos      time spent matching, pixels included in shape mode
+	 * @param outputNanos     time spent writing the art
+	 */
+	public synchronized void observeRender(Image image, int resolution, int tileAspect,
+										   MatchMode matchMode, int pixelResolution, boolean dither,
+										   OutputMode outputMode, long brightnessNanos, long matchNanos,
+										   long outputNanos) {
+		int paddedWidth = ImageProcessor.getPaddedWidth(image);
+		int paddedHeight = ImageProcessor.getPaddedHeight(image);
+		int tileWidth = paddedWidth / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		long tiles = (long) resolution * (paddedHeight / tileHeight);
+
+		observe(outputStage(outputMode), tiles, outputNanos);
+		if (matchMode == MatchMode.SHAPE) {
+			observe(Stage.SHAPE, shapeSamples(tiles, tileWidth, tileHeight, pixelResolution),
+					matchNanos);
+		} else if (SubCellGlyphs.of(matchMode) != null) {
+			// the glyph lookups are a small part of a pass that reads every pixel
+			observe(Stage.BRIGHTNESS, (long) paddedWidth * paddedHeight, matchNanos);
+		} else {
+			if (brightnessNanos > 0) {
+				observe(Stage.BRIGHTNESS, (long) paddedWidth * paddedHeight, brightnessNanos);
+			}
+			observe(dither ? Stage.DITHER : Stage.MATCH, tiles, matchNanos);
+		}
+	}
+
+	/**
+	 * Estimates how long a render takes, from the stages measured so far.
+	 *
+	 * @param image            the original image
+	 * @param resolution       number of characters per row
+	 * @param tileAspect       tile height in tile widths
+	 * @param matchMode        how tiles are matched
+	 * @param pixelResolution  side of the square raster of the charset's glyphs
+	 * @param dither           true if brightness matching diffuses its error
+	 * @param outputMode       where the art is written
+	 * @param brightnessCached true if the brightness grid of this resolution is already cached, which
+	 *                         only helps matching by brightness
+	 * @return estimated time in milliseconds
+	 * @throws IllegalStateException if a stage of the render was not calibrated
+	 */
+	public synchronized double estimateMillis(Image image, int resolution, int tileAspect,
+											  MatchMode matchMode, int pixelResolution, boolean dither,
+											  OutputMode outputMode, boolean brightnessCached) {
+		int paddedWidth = ImageProcessor.getPaddedWidth(image);
+		int paddedHeight = ImageProcessor.getPaddedHeight(image);
+		int tileWidth = paddedWidth / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		long tiles = (long) resolution * (paddedHeight / tileHeight);
+
+		double nanos = tiles * cost(outputStage(outputMode));
+		if (matchMode == MatchMode.SHAPE) {
+			nanos += shapeSamples(tiles, tileWidth, tileHeight, pixelResolution) * cost(Stage.SHAPE);
+		} else {
+			if (!brightnessCached || matchMode != MatchMode.BRIGHTNESS) {
+				nanos += (double) paddedWidth * paddedHeight * cost(Stage.BRIGHTNESS);
+			}
+			nanos += tiles * cost(dither ? Stage.DITHER : Stage.MATCH);
+		}
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Gets the number of pixel samples shape matching reads: every pixel of a tile, or one per mask
+	 * cell when tiles are smaller than the mask.
+	 *
+	 * @param tiles          number of tiles
+	 * @param tileWidth      width of a tile in pixels
+	 * @param tileHeight     height of a tile in pixels
+	 * @param maskResolution side of the square mask, the pixel resolution of the charset
+	 * @return number of samples
+	 */
+	public static long shapeSamples(long tiles, int tileWidth, int tileHeight, int maskResolution) {
+		return tiles * Math.max((long) tileWidth * tileHeight, (long) maskResolution * maskResolution);
+	}
+
+	/**
+	 * Gets the output stage of an output mode.
+	 *
+	 * @param outputMode where the art is written
+	 * @return the matching stage
+	 */
+	public static Stage outputStage(OutputMode outputMode) {
+		if (outputMode == OutputMode.HTML) {
+			return Stage.HTML_OUTPUT;
+		}
+		return outputMode == OutputMode.FRAMES ? Stage.FRAME_OUTPUT : Stage.CONSOLE_OUTPUT;
+	}
+
+	private double cost(Stage stage) {
+		Double cost = nanosPerUnit.get(stage);
+		if (cost == null) {
+			throw new IllegalStateException("Stage " + stage + " was not calibrated");
+		}
+		return cost;
+	}
+
+	private static long timeBrightness(Image band) {
+		long best = Long.MAX_VALUE;
+		int tileDimension = Math.min(SAMPLE_TILE_DIMENSION, band.getHeight());
+		for (int run = 0; run < SAMPLE_RUNS; run++) {
+			long start = System.nanoTime();
+			for (int y = 0; y + tileDimension <= band.getHeight(); y += tileDimension) {
+				for (int x = 0; x + tileDimension <= band.getWidth(); x += tileDimension) {
+					ImageProcessor.computeBrightness(band, y, x, tileDimension,
+							ImageProcessor.DEFAULT_BRIGHTNESS);
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static long timeShape(Image band, int tileDimension, CharMatcherSnapshot charset) {
+		int maskResolution = charset.getPixelResolution();
+		long[] mask = new long[CharConverter.maskLength(maskResolution)];
+		double[] cells = new double[maskResolution * maskResolution];
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < SAMPLE_RUNS; run++) {
+			long start = System.nanoTime();
+			for (int y = 0; y + tileDimension <= band.getHeight(); y += tileDimension) {
+				for (int x = 0; x + tileDimension <= band.getWidth(); x += tileDimension) {
+					double brightness = ImageProcessor.computeBrightnessAndMask(band, y, x, tileDimension,
+							ImageProcessor.DEFAULT_BRIGHTNESS, maskResolution, mask, cells);
+					charset.getCharByShape(brightness, mask);
+				}
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static long timeMatching(CharMatcherSnapshot charset, boolean dither) {
+		try (BrightnessGrid grid = new BrightnessGrid(SAMPLE_ROWS, SAMPLE_COLUMNS)) {
+			for (int row = 0; row < SAMPLE_ROWS; row++) {
+				for (int col = 0; col < SAMPLE_COLUMNS; col++) {
+					grid.set(row, col, (double) ((row * SAMPLE_COLUMNS + col) * 31 % 257) / 256);
+				}
+			}
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < SAMPLE_RUNS; run++) {
+				long start = System.nanoTime();
+				if (dither) {
+					new ErrorDiffusion(charset).map(grid, null, false, new RenderProgress(),
+							new RenderContext(false));
+				} else {
+					for (int row = 0; row < SAMPLE_ROWS; row++) {
+						for (int col = 0; col < SAMPLE_COLUMNS; col++) {
+							charset.getCharByImageBrightness(grid.get(row, col));
+						}
+					}
+				}
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			return best;
+		}
+	}
+
+	// formats the art exactly as the console output does, into a stream that discards it
+	private static long timeConsoleOutput(char[][] sample) {
+		PrintStream sink = new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream()));
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < SAMPLE_RUNS; run++) {
+			long start = System.nanoTime();
+			for (char[] row : sample) {
+				for (char c : row) {
+					sink.print(c + " ");
+				}
+				sink.println();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static long timeHtmlOutput(char[][] sample) {
+		try {
+			File file = File.createTempFile(SAMPLE_FILE_PREFIX, SAMPLE_FILE_SUFFIX);
+			try {
+				HtmlAsciiOutput output = new HtmlAsciiOutput(file.getPath(), SAMPLE_FONT_NAME);
+				long best = Long.MAX_VALUE;
+				for (int run = 0; run < SAMPLE_RUNS; run++) {
+					long start = System.nanoTime();
+					output.out(sample);
+					best = Math.min(best, System.nanoTime() - start);
+				}
+				return best;
+			} finally {
+				file.delete();
+			}
+		} catch (IOException e) {
+			return 0; //no temporary file, leave it to the real renders to measure
+		}
+	}
+
+	// encodes the art as the frame output does, leaving out the append to the file
+	private static long timeFrameOutput(char[][] sample) {
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < SAMPLE_RUNS; run++) {
+			long start = System.nanoTime();
+			AsciiFrameWriter.encodeFrame(sample);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static char[][] sampleArt(CharMatcherSnapshot charset) {
+		char[][] sample = new char[SAMPLE_ROWS][SAMPLE_COLUMNS];
+		for (int row = 0; row < SAMPLE_ROWS; row++) {
+			for (int col = 0; col < SAMPLE_COLUMNS; col++) {
+				sample[row][col] = charset.getCharByImageBrightness((double) ((row + col) % 16) / 15);
+			}
+		}
+		return sample;
+	}
+}
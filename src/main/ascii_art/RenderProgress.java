@@ -0,0 +1,113 @@
+package ascii_art;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The RenderProgress class tracks a single render: how many tile rows are completed out of how many,
+ * and whether the render was asked to stop. A render may make several passes over rows, such as
+ * building a brightness grid and then matching it, or mapping every preview of a progressive render;
+ * the rows are counted per pass, and the passes are numbered so a restarted count reads as progress.
+ * The render thread reports rows and polls for cancellation, while the shell thread may read the
+ * progress or cancel at any time, so cancellation is cooperative and takes effect at the next row.
+ */
+public class RenderProgress {
+	private static final String CANCELLED_MSG = "Render cancelled.";
+
+	private final AtomicInteger completedRows = new AtomicInteger();
+	private volatile int pass = 0;
+	private volatile int totalRows = 0;
+	private volatile boolean cancelled = false;
+	private volatile boolean finished = false;
+
+	/**
+	 * Starts counting a new pass over the given number of rows.
+	 *
+	 * @param totalRows number of rows the pass will report
+	 */
+	public void start(int totalRows) {
+		completedRows.set(0);
+		this.totalRows = totalRows;
+		pass++; // only the render thread starts passes
+	}
+
+	/**
+	 * Reports one more completed row, and stops the render if it was cancelled.
+	 *
+	 * @throws CancellationException if the render was cancelled
+	 */
+	public void rowCompleted() {
+		completedRows.incrementAndGet();
+		checkCancelled();
+	}
+
+	/**
+	 * Stops the render if it was cancelled.
+	 *
+	 * @throws CancellationException if the render was cancelled
+	 */
+	public void checkCancelled() {
+		if (cancelled) {
+			throw new CancellationException(CANCELLED_MSG);
+		}
+	}
+
+	/**
+	 * Asks the render to stop at the next row.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Marks the render as finished, whether it completed, failed or was cancelled.
+	 */
+	public void finish() {
+		finished = true;
+	}
+
+	/**
+	 * gets whether the render was cancelled
+	 *
+	 * @return true if the render was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * gets whether the render finished
+	 *
+	 * @return true if the render is no longer running
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * gets the number of completed rows
+	 *
+	 * @return completed rows
+	 */
+	public int getCompletedRows() {
+		return completedRows.get();
+	}
+
+	/**
+	 * gets the number of the current pass
+	 *
+	 * @return the pass, counted from 1, 0 if the render did not start yet
+	 */
+	public int getPass() {
+		return pass;
+	}
+
+	/**
+	 * gets the number of rows the current pass will report
+	 *
+	 * @return total rows, 0 if the render did not start yet
+	 */
+	public int getTotalRows() {
+		return totalRows;
+	}
+}
@@ -0,0 +1,105 @@
+package ascii_art;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The RenderScheduler class runs renders in the background, one at a time, so the shell prompt stays
+ * responsive while a render is running.
+ * Submitting a new render cancels the running one; renders are executed in submission order on a
+ * single daemon thread. A render that fails prints why, since nothing waits for it to report.
+ */
+public class RenderScheduler {
+	private static final String THREAD_NAME = "ascii-render";
+	private static final String RENDER_FAILED_MSG = "Did not render: %s.";
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, THREAD_NAME);
+		thread.setDaemon(true);
+		return thread;
+	});
+	private RenderProgress current = null;
+	private Future<?> currentFuture = null;
+
+	/**
+	 * Cancels the running render, if any, and schedules the given one.
+	 *
+	 * @param progress progress of the new render, polled by the render for cancellation
+	 * @param render   the render itself; a CancellationException thrown by it ends it silently, and the
+	 *                 message of any other runtime exception is printed
+	 */
+	public synchronized void submit(RenderProgress progress, Runnable render) {
+		cancel();
+		current = progress;
+		currentFuture = executor.submit(() -> {
+			try {
+				render.run();
+			} catch (CancellationException e) {
+				// the render was cancelled, nothing to output
+			} catch (IllegalStateException e) {
+				System.out.println(e.getMessage()); // already worded for the user, as renders word them
+			} catch (RuntimeException e) {
+				System.out.println(String.format(RENDER_FAILED_MSG,
+						e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+			} finally {
+				progress.finish();
+			}
+		});
+	}
+
+	/**
+	 * Cancels the running render, if any.
+	 *
+	 * @return true if a running render was cancelled, false if there was none
+	 */
+	public synchronized boolean cancel() {
+		RenderProgress running = getRunning();
+		if (running == null) {
+			return false;
+		}
+		running.cancel();
+		return true;
+	}
+
+	/**
+	 * Gets the progress of the running render.
+	 *
+	 * @return progress of the running render, or null if no render is running
+	 */
+	public synchronized RenderProgress getRunning() {
+		if (current == null || current.isFinished() || current.isCancelled()) {
+			return null;
+		}
+		return current;
+	}
+
+	/**
+	 * Waits until the last submitted render is finished.
+	 */
+	public void awaitIdle() {
+		Future<?> last;
+		synchronized (this) {
+			last = currentFuture;
+		}
+		if (last == null) {
+			return;
+		}
+		try {
+			last.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// only errors reach here, runtime exceptions were printed by the render's task
+		}
+	}
+
+	/**
+	 * Stops accepting renders. A render that is already running is allowed to finish.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
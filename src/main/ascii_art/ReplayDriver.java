@@ -0,0 +1,286 @@
+package ascii_art;
+
+import image.Image;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A load driver that replays a recorded shell transcript through the shell's command dispatch, many
+ * times concurrently and in-process, against generated images, and reports the latency of every
+ * command (p50, p99 and max), the overall throughput and the time spent in garbage collection.
+ * For commands that render, it also reports the bytes the render allocated outside of writing its
+ * output (p50 and max), which stays at 0 once a replay renders again at a resolution it rendered before.
+ * <p>
+ * Every replay has its own shell state, so replays share nothing but the JVM. A command's latency
+ * includes the render it starts, since the driver waits for renders to finish before the next command.
+ * Console output of the replays is discarded and HTML output goes to temporary files, so only the
+ * report is printed.
+ * <p>
+ * Usage: ReplayDriver transcript [replays] [threads] [WIDTHxHEIGHT,...]
+ * <br>
+ * The transcript holds one command per line, as typed at the prompt; a leading prompt is ignored, as
+ * are blank lines and lines starting with #.
+ */
+public class ReplayDriver {
+	private static final String PROMPT = ">>> ";
+	private static final String COMMENT = "#";
+	private static final String EXIT = "exit";
+	private static final String SIZE_SEPARATOR = "x";
+	private static final String LIST_SEPARATOR = ",";
+	private static final int DEFAULT_REPLAYS = 32;
+	private static final String DEFAULT_IMAGE_SIZES = "640x480,1920x1080,3000x2000";
+	private static final String USAGE_MSG = "Usage: ReplayDriver transcript [replays] [threads] " +
+			"[WIDTHxHEIGHT,...]";
+	private static final String SUMMARY_MSG = "Replayed %d transcripts (%d commands) on %d threads in " +
+			"%.2f s: %.1f commands/s.";
+	private static final String GC_MSG = "GC: %d collections, %d ms.";
+	private static final String HEADER_FORMAT = "%-12s %8s %10s %10s %10s %12s %12s";
+	private static final String ROW_FORMAT = "%-12s %8d %10.2f %10.2f %10.2f %12s %12s";
+	private static final String NOT_MEASURED = "-";
+
+	private final List<String> transcript;
+	private final Image[] images;
+	private final Path outputDirectory;
+
+	/**
+	 * Constructs a driver.
+	 *
+	 * @param transcript      the command lines to replay, without the exit command
+	 * @param images          the images replays run against, in turn
+	 * @param outputDirectory where the replays write HTML output
+	 */
+	public ReplayDriver(List<String> transcript, Image[] images, Path outputDirectory) {
+		this.transcript = transcript;
+		this.images = images;
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * Runs the driver from the command line.
+	 *
+	 * @param args the transcript file, then optionally the number of replays, of threads, and the
+	 *             comma separated sizes of the generated images
+	 * @throws IOException          if the transcript cannot be read
+	 * @throws InterruptedException if interrupted while waiting for the replays
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.out.println(USAGE_MSG);
+			return;
+		}
+		int replays = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REPLAYS;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		String[] sizes = (args.length > 3 ? args[3] : DEFAULT_IMAGE_SIZES).split(LIST_SEPARATOR);
+
+		Image[] images = new Image[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			String[] size = sizes[i].split(SIZE_SEPARATOR);
+			images[i] = generateImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), i);
+		}
+		Path outputDirectory = Files.createTempDirectory("ascii-replay");
+		try {
+			ReplayDriver driver = new ReplayDriver(readTranscript(Path.of(args[0])), images,
+					outputDirectory);
+			driver.run(replays, threads, System.out);
+		} finally {
+			File[] outputs = outputDirectory.toFile().listFiles();
+			if (outputs != null) {
+				for (File output : outputs) {
+					output.delete();
+				}
+			}
+			Files.deleteIfExists(outputDirectory);
+		}
+	}
+
+	/**
+	 * Reads a transcript, dropping prompts, blank lines, comments and everything from exit on.
+	 *
+	 * @param file the transcript file
+	 * @return the command lines
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<String> readTranscript(Path file) throws IOException {
+		List<String> lines = new ArrayList<>();
+		for (String line : Files.readAllLines(file)) {
+			while (line.startsWith(PROMPT)) {
+				line = line.substring(PROMPT.length());
+			}
+			line = line.trim();
+			if (line.equals(EXIT)) {
+				break;
+			}
+			if (!line.isEmpty() && !line.startsWith(COMMENT)) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Generates a deterministic test image: smooth gradients overlaid with sharp-edged shapes and
+	 * noise, so every resolution and match mode has work to do.
+	 *
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 * @param seed   varies the pattern between images
+	 * @return the generated image
+	 */
+	public static Image generateImage(int width, int height, int seed) {
+		int[] pixels = new int[width * height];
+		long random = 0x9E3779B97F4A7C15L * (seed + 1);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				random = random * 6364136223846793005L + 1442695040888963407L;
+				int noise = (int) (random >>> 59); // 0 to 31
+				int red = x * 255 / width;
+				int green = y * 255 / height;
+				int blue = ((x / 32 + y / 32 + seed) % 2) * 200 + noise;
+				pixels[y * width + x] = 0xFF000000 | red << 16 | green << 8 | Math.min(255, blue);
+			}
+		}
+		return new Image(pixels, width, height);
+	}
+
+	/**
+	 * Replays the transcript the given number of times and prints the report.
+	 *
+	 * @param replays number of replays
+	 * @param threads number of replays running at once
+	 * @param report  where the report is printed
+	 * @throws InterruptedException if interrupted while waiting for the replays
+	 */
+	public void run(int replays, int threads, PrintStream report) throws InterruptedException {
+		long gcCountBefore = gcCount();
+		long gcMillisBefore = gcMillis();
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream())));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Map<String, List<Long>> latencies = new TreeMap<>();
+		Map<String, List<Long>> allocations = new HashMap<>();
+		long start = System.nanoTime();
+		try {
+			List<Future<ReplayResult>> results = new ArrayList<>();
+			for (int i = 0; i < replays; i++) {
+				int replay = i;
+				results.add(executor.submit(() -> replay(replay)));
+			}
+			for (Future<ReplayResult> result : results) {
+				result.get().latencies.forEach((command, samples) ->
+						latencies.computeIfAbsent(command, c -> new ArrayList<>()).addAll(samples));
+				result.get().allocations.forEach((command, samples) ->
+						allocations.computeIfAbsent(command, c -> new ArrayList<>()).addAll(samples));
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdown();
+			System.setOut(console);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long commands = 0;
+		for (List<Long> samples : latencies.values()) {
+			commands += samples.size();
+		}
+		report.println(String.format(SUMMARY_MSG, replays, commands, threads, seconds, commands / seconds));
+		report.println(String.format(GC_MSG, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore));
+		report.println(String.format(HEADER_FORMAT, "command", "count", "p50 ms", "p99 ms", "max ms",
+				"p50 alloc B", "max alloc B"));
+		for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+			long[] sorted = sortedSamples(entry.getValue());
+			long[] allocated = sortedSamples(allocations.getOrDefault(entry.getKey(), List.of()));
+			boolean measured = allocated.length > 0;
+			report.println(String.format(ROW_FORMAT, entry.getKey(), sorted.length,
+					percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+					sorted[sorted.length - 1] / 1e6,
+					measured ? String.valueOf(percentile(allocated, 50)) : NOT_MEASURED,
+					measured ? String.valueOf(allocated[allocated.length - 1]) : NOT_MEASURED));
+		}
+	}
+
+	// Helper: replays the transcript once on a fresh state, returning the latencies of every command and
+	// the allocations of every render
+	private ReplayResult replay(int replay) {
+		ReplayResult result = new ReplayResult();
+		ShellState shellState = new ShellState(images[replay % images.length]);
+		shellState.setHtmlFileName(outputDirectory.resolve("replay-" + replay + ".html").toString());
+		shellState.setFrameFileName(outputDirectory.resolve("replay-" + replay + ".frames").toString());
+		shellState.getRenderContext().setCountingAllocations(true);
+		Shell shell = new Shell(shellState);
+		try {
+			for (String line : transcript) {
+				long start = System.nanoTime();
+				boolean keepGoing = shell.executeLine(line);
+				shellState.getRenderScheduler().awaitIdle();
+				long latency = System.nanoTime() - start;
+				String command = line.split("\\s+")[0];
+				result.latencies.computeIfAbsent(command, c -> new ArrayList<>()).add(latency);
+				long allocated = shellState.pollRenderAllocation();
+				if (allocated >= 0) {
+					result.allocations.computeIfAbsent(command, c -> new ArrayList<>()).add(allocated);
+				}
+				if (!keepGoing) {
+					break;
+				}
+			}
+		} finally {
+			shellState.getRenderScheduler().awaitIdle();
+			shellState.getRenderScheduler().shutdown();
+			shellState.close();
+		}
+		return result;
+	}
+
+	private static long[] sortedSamples(List<Long> samples) {
+		return samples.stream().mapToLong(Long::longValue).sorted().toArray();
+	}
+
+	// Helper: nearest-rank percentile of sorted samples
+	private static long percentile(long[] sorted, int percent) {
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * The samples one replay took, by command.
+	 */
+	private static final class ReplayResult {
+		private final Map<String, List<Long>> latencies = new HashMap<>();
+		private final Map<String, List<Long>> allocations = new HashMap<>();
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long gcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, gc.getCollectionTime());
+		}
+		return millis;
+	}
+}
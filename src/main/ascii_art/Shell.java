@@ -1,12 +1,10 @@
 package ascii_art;
 
 import ascii_art.shell_commands.*;
-import image.Image;
-
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionException;
 
 /**
  * The Shell class represents a command-line interface for processing images into ASCII art.
@@ -21,6 +19,24 @@ public class Shell {
 	private static final String RES = "res";
 	private static final String OUTPUT = "output";
 	private static final String REVERSE = "reverse";
+	private static final String DITHER = "dither";
+	private static final String COLOR = "color";
+	private static final String MATCH = "match";
+	private static final String CANCEL = "cancel";
+	private static final String PROGRESS = "progress";
+	private static final String RENDER = "render";
+	private static final String TIMING = "timing";
+	private static final String SWEEP = "sweep";
+	private static final String LOAD = "load";
+	private static final String CONTRAST = "contrast";
+	private static final String ZOOM = "zoom";
+	private static final String PAN = "pan";
+	private static final String FONT = "font";
+	private static final String EDGES = "edges";
+	private static final String CACHE = "cache";
+	private static final String ASPECT = "aspect";
+	private static final String SHARDS = "shards";
+	private static final String PLAY = "play";
 	private static final String ASCII_ART = "asciiArt";
 	private static final String EXIT = "exit";
 
@@ -33,6 +49,17 @@ public class Shell {
 	public Shell() {
 	}
 
+	/**
+	 * Constructs a Shell over an existing state, to be driven one line at a time through
+	 * {@link #executeLine(String)} instead of reading the keyboard.
+	 *
+	 * @param shellState the state the commands act on
+	 */
+	public Shell(ShellState shellState) {
+		this.shellState = shellState;
+		initializeCommandsMap();
+	}
+
 	/**
 	 * The main method to start the shell.
 	 * main is public static to be the entry point of the program.
@@ -50,49 +77,72 @@ public class Shell {
 	 * @param imageName the file path of the image to be processed
 	 */
 	public void run(String imageName) {
-		//try to load the image and create the shell state
-		try {
-			initializeShellState(imageName);
-		} catch (IOException e) {
-			System.out.println(e.getMessage());
-			return;
-		}
+		//start loading the image in the background and create the shell state
+		initializeShellState(imageName);
 		//initialize the commands map
 		initializeCommandsMap();
 		//start the shell loop
 		while (true) {
+			//stop as soon as the image turns out to be unreadable
+			String loadFailure = shellState.getLoadFailure();
+			if (loadFailure != null) {
+				System.out.println(loadFailure);
+				break;
+			}
 			System.out.print(">>> ");
+			shellState.recordPromptShown();
 			String line;
 			try {
 				line = KeyboardInput.readLine();
 			} catch (NoSuchElementException e) {
 				break;
 			}
-			line = line.trim();
-			String[] tokens = line.split("\\s+");
-			String commandName = tokens[0];
-			//exit shortcut
-			if (commandName.equals(EXIT)) {
+			if (!executeLine(line)) {
 				break;
 			}
-			//check if command exists
-			ShellCommand command = commands.get(commandName);
-			if (command == null) {
-				System.out.println("Did not execute due to incorrect command.");
-				continue;
-			}
-			try {
-				//passes the String[] tokens where tokens[0] is the command name
-				command.execute(tokens, shellState);
-			} catch (ShellException e) {
-				System.out.println(e.getMessage());
-			}
 		}
+		//let a render that is still running finish its output before leaving
+		shellState.getRenderScheduler().awaitIdle();
+		shellState.getRenderScheduler().shutdown();
+		shellState.close();
+	}
+
+	/**
+	 * Executes a single command line, printing its result or error as the shell loop does.
+	 *
+	 * @param line the command line, as typed
+	 * @return false if the shell should stop: the line is the exit command, or the image could not be
+	 * read; true otherwise
+	 */
+	public boolean executeLine(String line) {
+		line = line.trim();
+		String[] tokens = line.split("\\s+");
+		String commandName = tokens[0];
+		//exit shortcut
+		if (commandName.equals(EXIT)) {
+			return false;
+		}
+		//check if command exists
+		ShellCommand command = commands.get(commandName);
+		if (command == null) {
+			System.out.println("Did not execute due to incorrect command.");
+			return true;
+		}
+		try {
+			//passes the String[] tokens where tokens[0] is the command name
+			command.execute(tokens, shellState);
+		} catch (ShellException e) {
+			System.out.println(e.getMessage());
+		} catch (CompletionException e) {
+			//the command needed the image, which could not be read
+			System.out.println(ShellState.failureMessage(e));
+			return false;
+		}
+		return true;
 	}
 
-	private void initializeShellState(String imageName) throws IOException {
-		Image image = new Image(imageName);
-		this.shellState = new ShellState(image);
+	private void initializeShellState(String imageName) {
+		this.shellState = new ShellState(imageName);
 	}
 
 	private void initializeCommandsMap() {
@@ -103,6 +153,24 @@ public class Shell {
 		commands.put(RES, new ResCommand());
 		commands.put(OUTPUT, new OutputCommand());
 		commands.put(REVERSE, new ReverseCommand());
+		commands.put(DITHER, new DitherCommand());
+		commands.put(COLOR, new ColorCommand());
+		commands.put(MATCH, new MatchCommand());
+		commands.put(CANCEL, new CancelCommand());
+		commands.put(PROGRESS, new ProgressCommand());
+		commands.put(RENDER, new RenderCommand());
+		commands.put(TIMING, new TimingCommand());
+		commands.put(SWEEP, new SweepCommand());
+		commands.put(LOAD, new LoadCommand());
+		commands.put(CONTRAST, new ContrastCommand());
+		commands.put(ZOOM, new ZoomCommand());
+		commands.put(PAN, new PanCommand());
+		commands.put(FONT, new FontCommand());
+		commands.put(EDGES, new EdgesCommand());
+		commands.put(CACHE, new CacheCommand());
+		commands.put(ASPECT, new AspectCommand());
+		commands.put(SHARDS, new ShardsCommand());
+		commands.put(PLAY, new PlayCommand());
 		commands.put(ASCII_ART, new AsciiArtCommand());
 	}
 }
@@ -1,74 +1,246 @@
 package ascii_art;
 
+import image.BrightnessGrid;
+import image.BrightnessPyramid;
 import image.Image;
+import image.SparseBrightnessGrid;
+import image.UniformRegions;
+import image_char_matching.CharConverter;
 import image_char_matching.SubImgCharMatcher;
 
+import java.awt.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * The ShellState class represents the state of the shell for ASCII art generation.
  * It holds the image to be processed, character matching settings, resolution,
- * output mode, reverse mode, and cached brightness grid for optimization.
+ * output mode, reverse mode, and cached brightness grids for optimization.
+ * The cached grids are off-heap and live as long as their image stays in the session's image cache:
+ * images loaded by the load command are kept there until the cache exceeds its memory budget, and
+ * {@link #close()} releases them all.
+ * The image and the glyphs of the charset are prepared in the background, so the shell can prompt
+ * right away; every getter waits only for what it returns.
  *
  * @author ron.stein
  */
-public class ShellState {
+public class ShellState implements AutoCloseable {
 	//Default settings
 	private static final int DEFAULT_RESOLUTION = 2;
+	private static final int DEFAULT_TILE_ASPECT = 1;
+	private static final int DEFAULT_SHARDS = 1;
 	private static final char[] DEFAULT_CHARSET = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
 	private static final OutputMode DEFAULT_OUTPUT_MODE = OutputMode.CONSOLE;
+	private static final MatchMode DEFAULT_MATCH_MODE = MatchMode.BRIGHTNESS;
+	private static final RenderMode DEFAULT_RENDER_MODE = RenderMode.STANDARD;
+	private static final ContrastMode DEFAULT_CONTRAST_MODE = ContrastMode.OFF;
+	private static final String DEFAULT_HTML_FILE_NAME = "out.html";
+	private static final String DEFAULT_FRAME_FILE_NAME = "out.frames";
+	private static final String IN_MEMORY_IMAGE_NAME = "(in-memory image)";
+	private static final long NOT_YET = -1;
 
-	private final Image image;
-	private final int maxCharsInRow;
-	private final int minCharsInRow;
-	private final SubImgCharMatcher subImgCharMatcher = new SubImgCharMatcher(DEFAULT_CHARSET);
+	private final ImageCache imageCache = new ImageCache();
+	private volatile CachedImage image; // the image commands work on, with its cached brightness data
+	private final CompletableFuture<SubImgCharMatcher> subImgCharMatcher;
 	private int resolution = DEFAULT_RESOLUTION;
+	private int tileAspect = DEFAULT_TILE_ASPECT; // tile height in tile widths
+	private int shards = DEFAULT_SHARDS; // worker processes brightness grids are computed in, 1 for none
+	// The visible part of the image: 1/zoom of its padded width and height, from the given top-left
+	// pixel of the padded image, so the view keeps its place when the resolution changes
+	private int zoom = 1;
+	private int viewportX = 0;
+	private int viewportY = 0;
 	private boolean reverseMode = false; //true if reverse mode is on, false otherwise and by default
+	private boolean ditherMode = false; //true if brightness matching diffuses its error, off by default
+	private boolean colorMode = false; //true if characters take their tile's color, off by default
+	private boolean edgeMode = false; //true if tiles on strong edges are drawn with directional characters
 	private OutputMode outputMode = DEFAULT_OUTPUT_MODE;
-	private double[][] cachedBrightnessGrid = null;
+	private MatchMode matchMode = DEFAULT_MATCH_MODE;
+	private RenderMode renderMode = DEFAULT_RENDER_MODE;
+	private ContrastMode contrastMode = DEFAULT_CONTRAST_MODE;
+	private String htmlFileName = DEFAULT_HTML_FILE_NAME;
+	private String frameFileName = DEFAULT_FRAME_FILE_NAME;
+	private final RenderScheduler renderScheduler = new RenderScheduler();
+	// Buffers renders write into, reused from one render to the next
+	private final RenderContext renderContext = new RenderContext();
+	private volatile long renderAllocatedBytes = NOT_YET; // allocated by the last render not polled yet
+	// Stage costs of renders, per pixel or tile, measured for res auto
+	private final RenderCostModel renderCostModel = new RenderCostModel();
+	// Startup milestones, as System.nanoTime values
+	private volatile long firstPromptNanos = NOT_YET;
+	private volatile long firstRenderNanos = NOT_YET;
 
 	/**
 	 * Constructs a ShellState with the given image and default settings.
+	 * The glyphs of the default charset are still prepared in the background.
 	 *
 	 * @param image the image to be processed
 	 */
 	public ShellState(Image image) {
-		this.image = image;
-		maxCharsInRow = calculateMaxCharsInRow();
-		minCharsInRow = calculateMinCharsInRow();
+		this.image = CachedImage.of(IN_MEMORY_IMAGE_NAME, image);
+		this.subImgCharMatcher = CachedImage.runInBackground(() -> new SubImgCharMatcher(DEFAULT_CHARSET));
 	}
 
-	private int calculateMaxCharsInRow() {
-		return image.getWidth();
+	/**
+	 * Constructs a ShellState with default settings, and starts decoding the given image file, reading
+	 * its dimensions and preparing the glyphs of the default charset, all concurrently in the background.
+	 * A failure to read the image is reported by {@link #getLoadFailure()} and by the getters needing it.
+	 *
+	 * @param imageName the file path of the image to be processed
+	 */
+	public ShellState(String imageName) {
+		this.image = CachedImage.startLoading(imageName);
+		imageCache.put(imageName, this.image);
+		this.subImgCharMatcher = CachedImage.runInBackground(() -> new SubImgCharMatcher(DEFAULT_CHARSET));
 	}
 
-	private int calculateMinCharsInRow() {
-		return Math.max(1, image.getWidth() / image.getHeight());
+	/**
+	 * Makes the given image file the image commands work on. An image still in the cache is reused
+	 * with all its brightness data; otherwise the file is decoded before returning, and images that
+	 * no longer fit the cache's budget are evicted. If the resolution is out of the new image's bounds
+	 * it is reset to the default, and the view is zoomed out. Must be called while no render is running.
+	 *
+	 * @param path the file path of the image
+	 * @return the dimensions of the image
+	 * @throws IOException if the image cannot be read
+	 */
+	public Dimension loadImage(String path) throws IOException {
+		CachedImage loaded = imageCache.get(path);
+		if (loaded == null || loaded.getLoadFailure() != null) {
+			loaded = CachedImage.load(path);
+			imageCache.put(path, loaded);
+		}
+		Dimension size;
+		try {
+			loaded.getImage(); //an image from the start of the session may still be decoding
+			size = loaded.getSize();
+		} catch (CompletionException e) {
+			throw new IOException(failureMessage(e), e);
+		}
+		CachedImage previous = image;
+		image = loaded;
+		if (previous != loaded) {
+			renderContext.dropPaddedImage(); //it would stay out of the image cache's budget
+		}
+		if (previous != loaded && imageCache.get(previous.getName()) != previous) {
+			//not cached, as an in-memory or failed image, so nothing can switch back to it
+			previous.close();
+		}
+		imageCache.trim(loaded);
+		synchronized (this) {
+			if (resolution < getMinCharsInRow() || resolution > getMaxCharsInRow()) {
+				resolution = DEFAULT_RESOLUTION;
+			}
+			zoom = 1;
+			viewportX = 0;
+			viewportY = 0;
+		}
+		return size;
 	}
 
 	/**
-	 * Gets the max chars in row.
+	 * Gets the max chars in row, waiting for the image dimensions if needed.
 	 *
 	 * @return the max chars in row
+	 * @throws CompletionException if the image could not be read
 	 */
 	public int getMaxCharsInRow() {
-		return maxCharsInRow;
+		return image.getSize().width;
 	}
 
 	/**
-	 * Gets the min chars in row.
+	 * Gets the min chars in row, waiting for the image dimensions if needed.
 	 *
 	 * @return the min chars in row
+	 * @throws CompletionException if the image could not be read
 	 */
 	public int getMinCharsInRow() {
-		return minCharsInRow;
+		return getMinCharsInRow(getTileAspect());
+	}
+
+	/**
+	 * Gets the min chars in row with tiles of the given aspect, fewer of which fit in the image height
+	 * the taller they are, waiting for the image dimensions if needed.
+	 *
+	 * @param tileAspect tile height in tile widths
+	 * @return the min chars in row
+	 * @throws CompletionException if the image could not be read
+	 */
+	public int getMinCharsInRow(int tileAspect) {
+		Dimension size = image.getSize();
+		int minChars = Math.max(1, size.width / size.height);
+		if (tileAspect > 1) {
+			// a tile must fit in the padded height
+			int paddedWidth = Integer.highestOneBit(Math.max(1, size.width * 2 - 1));
+			int paddedHeight = Integer.highestOneBit(Math.max(1, size.height * 2 - 1));
+			minChars = Math.max(minChars, paddedWidth * tileAspect / paddedHeight);
+		}
+		return minChars;
 	}
 
 	/**
-	 * Gets the SubImgCharMatcher.
+	 * Gets the SubImgCharMatcher, waiting for its glyphs to be prepared if needed.
 	 *
 	 * @return the SubImgCharMatcher
 	 */
 	public SubImgCharMatcher getSubImgCharMatcher() {
-		return subImgCharMatcher;
+		return subImgCharMatcher.join();
+	}
+
+	/**
+	 * Gets the current charset. Until the matcher is ready no command could have changed it, so the
+	 * default charset is returned without waiting for the glyphs.
+	 *
+	 * @return the characters of the charset, sorted
+	 */
+	public TreeSet<Character> getCharset() {
+		SubImgCharMatcher matcher = subImgCharMatcher.getNow(null);
+		if (matcher != null) {
+			return matcher.getCharset();
+		}
+		TreeSet<Character> charset = new TreeSet<>();
+		for (char c : DEFAULT_CHARSET) {
+			charset.add(c);
+		}
+		return charset;
+	}
+
+	/**
+	 * Gets the font the glyphs are rendered in, which HTML output uses as well. Until the matcher is
+	 * ready no command could have changed it, so the default font is returned without waiting.
+	 *
+	 * @return the font family
+	 */
+	public String getFontName() {
+		SubImgCharMatcher matcher = subImgCharMatcher.getNow(null);
+		return matcher != null ? matcher.getFontName() : CharConverter.DEFAULT_FONT_NAME;
+	}
+
+	/**
+	 * Checks whether loading the image failed, without waiting for it.
+	 *
+	 * @return the reason the image could not be read, or null if it was read or is still being read
+	 */
+	public String getLoadFailure() {
+		return image.getLoadFailure();
+	}
+
+	/**
+	 * Gets the message of a background loading failure, as the shell reports it.
+	 *
+	 * @param e the exception thrown while waiting for the image or matcher
+	 * @return the message of the underlying cause
+	 */
+	public static String failureMessage(CompletionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof UncheckedIOException) {
+			cause = cause.getCause();
+		}
+		return cause == null ? e.getMessage() : cause.getMessage();
 	}
 
 	/**
@@ -76,7 +248,7 @@ public class ShellState {
 	 *
 	 * @return the resolution
 	 */
-	public int getResolution() {
+	public synchronized int getResolution() {
 		return resolution;
 	}
 
@@ -85,16 +257,90 @@ public class ShellState {
 	 *
 	 * @param resolution the resolution to set
 	 */
-	public void setResolution(int resolution) {
-
+	public synchronized void setResolution(int resolution) {
 		this.resolution = resolution;
-		this.cachedBrightnessGrid = null; // invalidate cache
+	}
+
+	/**
+	 * gets the height of the tiles in tile widths
+	 *
+	 * @return the tile aspect, 1 for square tiles
+	 */
+	public synchronized int getTileAspect() {
+		return tileAspect;
+	}
+
+	/**
+	 * sets the height of the tiles in tile widths
+	 *
+	 * @param tileAspect the tile aspect, a power of two
+	 */
+	public synchronized void setTileAspect(int tileAspect) {
+		this.tileAspect = tileAspect;
+	}
+
+	/**
+	 * gets the number of worker processes missing brightness grids of an image file are computed in
+	 *
+	 * @return the number of shards, 1 if grids are computed in-process
+	 */
+	public synchronized int getShards() {
+		return shards;
+	}
+
+	/**
+	 * sets the number of worker processes missing brightness grids of an image file are computed in
+	 *
+	 * @param shards the number of shards, 1 to compute grids in-process
+	 */
+	public synchronized void setShards(int shards) {
+		this.shards = shards;
+	}
+
+	/**
+	 * gets the zoom factor
+	 *
+	 * @return how many times the view is magnified, 1 if the whole image is in view
+	 */
+	public synchronized int getZoom() {
+		return zoom;
+	}
+
+	/**
+	 * gets the left edge of the view
+	 *
+	 * @return the first column of the view, in pixels of the padded image
+	 */
+	public synchronized int getViewportX() {
+		return viewportX;
+	}
+
+	/**
+	 * gets the top edge of the view
+	 *
+	 * @return the first row of the view, in pixels of the padded image
+	 */
+	public synchronized int getViewportY() {
+		return viewportY;
+	}
+
+	/**
+	 * sets the zoom factor and the top-left corner of the view
+	 *
+	 * @param zoom      how many times the view is magnified, a power of two
+	 * @param viewportX the first column of the view, in pixels of the padded image
+	 * @param viewportY the first row of the view, in pixels of the padded image
+	 */
+	public synchronized void setViewport(int zoom, int viewportX, int viewportY) {
+		this.zoom = zoom;
+		this.viewportX = viewportX;
+		this.viewportY = viewportY;
 	}
 
 	/**
 	 * gets the output mode
 	 *
-	 * @return the output mode (enum OutputMode) console or HTML
+	 * @return the output mode (enum OutputMode) console, HTML or frames
 	 */
 	public OutputMode getOutputMode() {
 		return outputMode;
@@ -103,13 +349,68 @@ public class ShellState {
 	/**
 	 * sets the output mode
 	 *
-	 * @param outputMode the output mode to set (enum OutputMode) console or HTML
+	 * @param outputMode the output mode to set (enum OutputMode) console, HTML or frames
 	 */
 	public void setOutputMode(OutputMode outputMode) {
 		this.outputMode = outputMode;
 	}
 
 
+	/**
+	 * gets the match mode
+	 *
+	 * @return the match mode (enum MatchMode) brightness, shape, braille or blocks
+	 */
+	public MatchMode getMatchMode() {
+		return matchMode;
+	}
+
+	/**
+	 * sets the match mode
+	 *
+	 * @param matchMode the match mode to set (enum MatchMode) brightness, shape, braille or blocks
+	 */
+	public void setMatchMode(MatchMode matchMode) {
+		this.matchMode = matchMode;
+	}
+
+
+	/**
+	 * gets the render mode
+	 *
+	 * @return the render mode (enum RenderMode) standard, progressive or streaming
+	 */
+	public RenderMode getRenderMode() {
+		return renderMode;
+	}
+
+	/**
+	 * sets the render mode
+	 *
+	 * @param renderMode the render mode to set (enum RenderMode) standard, progressive or streaming
+	 */
+	public void setRenderMode(RenderMode renderMode) {
+		this.renderMode = renderMode;
+	}
+
+	/**
+	 * gets the contrast mode
+	 *
+	 * @return the contrast mode (enum ContrastMode) off, stretch or equalize
+	 */
+	public ContrastMode getContrastMode() {
+		return contrastMode;
+	}
+
+	/**
+	 * sets the contrast mode
+	 *
+	 * @param contrastMode the contrast mode to set (enum ContrastMode) off, stretch or equalize
+	 */
+	public void setContrastMode(ContrastMode contrastMode) {
+		this.contrastMode = contrastMode;
+	}
+
 	/**
 	 * sets the reverse mode
 	 *
@@ -129,31 +430,335 @@ public class ShellState {
 	}
 
 	/**
-	 * gets the image
+	 * gets the name of the file HTML output is written to
+	 *
+	 * @return the HTML file name, out.html by default
+	 */
+	public String getHtmlFileName() {
+		return htmlFileName;
+	}
+
+	/**
+	 * sets the name of the file HTML output is written to, so several states can render side by side
+	 *
+	 * @param htmlFileName the HTML file name
+	 */
+	public void setHtmlFileName(String htmlFileName) {
+		this.htmlFileName = htmlFileName;
+	}
+
+	/**
+	 * gets the name of the file frames output appends its frames to, and play reads them from
+	 *
+	 * @return the frame file name, out.frames by default
+	 */
+	public String getFrameFileName() {
+		return frameFileName;
+	}
+
+	/**
+	 * sets the name of the file frames output appends its frames to, so several states can record
+	 * side by side
+	 *
+	 * @param frameFileName the frame file name
+	 */
+	public void setFrameFileName(String frameFileName) {
+		this.frameFileName = frameFileName;
+	}
+
+	/**
+	 * sets the dither mode
+	 *
+	 * @param ditherMode true to diffuse the brightness error between tiles, false to match every tile alone
+	 */
+	public void setDitherMode(boolean ditherMode) {
+		this.ditherMode = ditherMode;
+	}
+
+	/**
+	 * gets the dither mode
+	 *
+	 * @return the dither mode
+	 */
+	public boolean getDitherMode() {
+		return ditherMode;
+	}
+
+	/**
+	 * sets the color mode
+	 *
+	 * @param colorMode true to tint every character with the average color of its tile, false for plain
+	 *                  characters
+	 */
+	public void setColorMode(boolean colorMode) {
+		this.colorMode = colorMode;
+	}
+
+	/**
+	 * gets the color mode
+	 *
+	 * @return the color mode
+	 */
+	public boolean getColorMode() {
+		return colorMode;
+	}
+
+	/**
+	 * sets the edge mode
+	 *
+	 * @param edgeMode true to draw tiles on strong edges with directional characters
+	 */
+	public void setEdgeMode(boolean edgeMode) {
+		this.edgeMode = edgeMode;
+	}
+
+	/**
+	 * gets the edge mode
+	 *
+	 * @return the edge mode
+	 */
+	public boolean getEdgeMode() {
+		return edgeMode;
+	}
+
+	/**
+	 * gets the image, waiting for it to be decoded if needed
 	 *
 	 * @return the image
+	 * @throws CompletionException if the image could not be read
 	 */
 	public Image getImg() {
-		return image;
+		return image.getImage();
+	}
+
+	/**
+	 * gets the path of the image file, which worker processes can decode on their own
+	 *
+	 * @return the file path, or null if the image was given in memory
+	 */
+	public String getImagePath() {
+		CachedImage current = image;
+		return current.getName().equals(IN_MEMORY_IMAGE_NAME) ? null : current.getName();
+	}
+
+	/**
+	 * gets the cache of the images loaded in this session
+	 *
+	 * @return the image cache
+	 */
+	public ImageCache getImageCache() {
+		return imageCache;
+	}
+
+	/**
+	 * evicts images from the image cache until it fits its budget, keeping the current image.
+	 * Must be called while no render is running.
+	 */
+	public void trimImageCache() {
+		imageCache.trim(image);
 	}
 
 	/**
-	 * gets the cached brightness grid
+	 * gets the cached brightness grid of the given resolution and tile aspect
 	 *
-	 * @return the cached brightness grid
+	 * @param resolution the resolution of the grid
+	 * @param tileAspect the tile height in tile widths of the grid
+	 * @return the cached brightness grid, or null if this resolution was not computed yet
 	 */
-	public double[][] getCachedBrightnessGrid() {
-		return cachedBrightnessGrid;
+	public BrightnessGrid getCachedBrightnessGrid(int resolution, int tileAspect) {
+		return image.getBrightnessGrid(resolution, tileAspect);
 	}
 
 	/**
-	 * sets the cached brightness grid
+	 * sets the cached brightness grid of the given resolution and tile aspect
+	 * (renders run in the background, so a grid may arrive after a res command), evicting other images
+	 * if the image cache grows over its budget
 	 *
+	 * @param resolution           the resolution the grid was computed for
+	 * @param tileAspect           the tile height in tile widths the grid was computed with
 	 * @param cachedBrightnessGrid the cached brightness grid to set
 	 */
-	public void setCachedBrightnessGrid(double[][] cachedBrightnessGrid) {
-		this.cachedBrightnessGrid = cachedBrightnessGrid;
+	public void setCachedBrightnessGrid(int resolution, int tileAspect,
+										BrightnessGrid cachedBrightnessGrid) {
+		CachedImage current = image;
+		current.putBrightnessGrid(resolution, tileAspect, cachedBrightnessGrid);
+		imageCache.trim(current);
+	}
+
+	/**
+	 * gets the tiles zoomed views computed so far at the given resolution and tile aspect, evicting other
+	 * images if the image cache grows over its budget
+	 *
+	 * @param resolution the number of tiles per row of the whole image
+	 * @param tileAspect the tile height in tile widths
+	 * @param rows       the number of tile rows of the whole image
+	 * @return the sparse brightness grid of the resolution
+	 */
+	public SparseBrightnessGrid getViewportGrid(int resolution, int tileAspect, int rows) {
+		CachedImage current = image;
+		SparseBrightnessGrid grid = current.getViewportGrid(resolution, tileAspect, rows);
+		imageCache.trim(current);
+		return grid;
 	}
 
+	/**
+	 * gets the brightness pyramid of the image, creating it on first use; its levels are built as
+	 * renders ask for them, and kept as long as the image stays cached, evicting other images if the
+	 * cache has grown over its budget since the last call.
+	 *
+	 * @return the brightness pyramid of the padded image
+	 */
+	public BrightnessPyramid getBrightnessPyramid() {
+		CachedImage current = image;
+		BrightnessPyramid pyramid = current.getBrightnessPyramid();
+		imageCache.trim(current);
+		return pyramid;
+	}
+
+	/**
+	 * gets the uniform regions of the image, finding them on first use; they are kept as long as the image
+	 * stays cached
+	 *
+	 * @param progress progress of the render that needs the regions
+	 * @return the uniform regions of the padded image
+	 * @throws java.util.concurrent.CancellationException if the render was cancelled while building
+	 */
+	public UniformRegions getUniformRegions(RenderProgress progress) {
+		CachedImage current = image;
+		UniformRegions regions = current.getUniformRegions(progress);
+		imageCache.trim(current);
+		return regions;
+	}
+
+	/**
+	 * gets the uniform regions of the image if a render found them already, for renders that would
+	 * rather read every tile than find the regions first
+	 *
+	 * @return the uniform regions of the padded image, or null if they were not found yet
+	 */
+	public UniformRegions getCachedUniformRegions() {
+		return image.getCachedUniformRegions();
+	}
+
+	/**
+	 * gets the edge character of every tile of the given resolution, computing the gradient of the image
+	 * once and the edges of each resolution once; both are kept as long as the image stays cached
+	 *
+	 * @param resolution number of tiles per row
+	 * @param tileAspect tile height in tile widths
+	 * @param progress   progress of the render that needs the edges
+	 * @return the edge character of every tile, 0 where there is no edge
+	 * @throws java.util.concurrent.CancellationException if the render was cancelled while building
+	 */
+	public char[][] getEdgeGlyphs(int resolution, int tileAspect, RenderProgress progress) {
+		CachedImage current = image;
+		char[][] glyphs = current.getEdgeGlyphs(resolution, tileAspect, progress);
+		imageCache.trim(current);
+		return glyphs;
+	}
+
+	/**
+	 * gets the render scheduler that runs asciiArt renders in the background
+	 *
+	 * @return the render scheduler
+	 */
+	public RenderScheduler getRenderScheduler() {
+		return renderScheduler;
+	}
+
+	/**
+	 * gets the buffers renders write into, kept across renders and resized when the resolution changes
+	 *
+	 * @return the render context, used by the render scheduler's thread
+	 */
+	public RenderContext getRenderContext() {
+		return renderContext;
+	}
+
+	/**
+	 * records the bytes a render allocated, when the render context counts allocations
+	 *
+	 * @param allocatedBytes size in bytes, or -1 if not counted
+	 */
+	public void recordRenderAllocation(long allocatedBytes) {
+		renderAllocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * gets the bytes the last render allocated, and forgets them so the next call reports a newer render
+	 *
+	 * @return size in bytes, or -1 if no render recorded its allocations since the last call
+	 */
+	public long pollRenderAllocation() {
+		long allocatedBytes = renderAllocatedBytes;
+		renderAllocatedBytes = NOT_YET;
+		return allocatedBytes;
+	}
+
+	/**
+	 * gets the model of render costs, calibrated per pixel and tile so it holds for every image
+	 *
+	 * @return the render cost model
+	 */
+	public RenderCostModel getRenderCostModel() {
+		return renderCostModel;
+	}
+
+	/**
+	 * records that the shell showed its prompt, only the first call counts
+	 */
+	public void recordPromptShown() {
+		if (firstPromptNanos == NOT_YET) {
+			firstPromptNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * records that a render finished writing its output, only the first call counts
+	 */
+	public synchronized void recordRenderFinished() {
+		if (firstRenderNanos == NOT_YET) {
+			firstRenderNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * gets the time from the start of the JVM to the first prompt
+	 *
+	 * @return time in milliseconds, or -1 if no prompt was shown yet
+	 */
+	public long getTimeToFirstPrompt() {
+		return sinceJvmStart(firstPromptNanos);
+	}
+
+	/**
+	 * gets the time from the start of the JVM until the first render finished writing its output
+	 *
+	 * @return time in milliseconds, or -1 if no render finished yet
+	 */
+	public long getTimeToFirstRender() {
+		return sinceJvmStart(firstRenderNanos);
+	}
+
+	// Helper: converts a recorded instant to time since the JVM started. The management beans are only
+	// loaded here, when timings are asked for, so measuring does not slow down the start itself.
+	private long sinceJvmStart(long nanos) {
+		if (nanos == NOT_YET) {
+			return NOT_YET;
+		}
+		long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		return uptimeMillis - (System.nanoTime() - nanos) / 1_000_000;
+	}
+
+	/**
+	 * Releases the cached images with their brightness grids and pyramids. Must be called once no render
+	 * is running.
+	 */
+	@Override
+	public void close() {
+		image.close();
+		imageCache.close();
+		renderContext.clear();
+	}
 
 }
@@ -0,0 +1,116 @@
+package ascii_art;
+
+/**
+ * Lookup tables for the match modes that draw several sub-tiles per character: Unicode Braille
+ * patterns, with 2x4 dots per character, and quadrant block elements, with 2x2 blocks. Every tile is
+ * divided into cells, each cell is thresholded to ink or paper, and the resulting bit pattern indexes
+ * a table of the glyph drawing exactly those cells, so no brightness search takes place.
+ * <p>
+ * Cells are numbered row by row, so bit (y * columns + x) of a pattern stands for cell (x, y). A cell is
+ * inked when it is darker than {@value #INK_THRESHOLD}, like the dark pixels of a glyph drawn on white.
+ */
+final class SubCellGlyphs {
+	/**
+	 * Braille patterns, two dots wide and four high.
+	 */
+	static final SubCellGlyphs BRAILLE = new SubCellGlyphs(2, 4, brailleTable());
+	/**
+	 * Quadrant block elements, two blocks wide and two high.
+	 */
+	static final SubCellGlyphs QUADRANTS = new SubCellGlyphs(2, 2,
+			(" \u2598\u259d\u2580\u2596\u258c\u259e\u259b"
+					+ "\u2597\u259a\u2590\u259c\u2584\u2599\u259f\u2588").toCharArray());
+
+	// Normalized brightness below which a cell is inked
+	private static final double INK_THRESHOLD = 0.5;
+	private static final char BRAILLE_BLANK = '\u2800';
+
+	private final int cellColumns;
+	private final int cellRows;
+	private final char[] glyphs; // indexed by pattern
+
+	private SubCellGlyphs(int cellColumns, int cellRows, char[] glyphs) {
+		this.cellColumns = cellColumns;
+		this.cellRows = cellRows;
+		this.glyphs = glyphs;
+	}
+
+	/**
+	 * Gets the tables of a match mode.
+	 *
+	 * @param matchMode the match mode
+	 * @return the tables, or null if the mode matches whole tiles
+	 */
+	static SubCellGlyphs of(MatchMode matchMode) {
+		switch (matchMode) {
+			case BRAILLE:
+				return BRAILLE;
+			case BLOCKS:
+				return QUADRANTS;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Gets the number of cells per character row.
+	 *
+	 * @return cells per row
+	 */
+	int getCellColumns() {
+		return cellColumns;
+	}
+
+	/**
+	 * Gets the number of cells per character column.
+	 *
+	 * @return cells per column
+	 */
+	int getCellRows() {
+		return cellRows;
+	}
+
+	/**
+	 * Gets the number of cells per character.
+	 *
+	 * @return number of cells
+	 */
+	int getCellCount() {
+		return cellColumns * cellRows;
+	}
+
+	/**
+	 * Maps the cells of a tile to the glyph drawing its inked cells.
+	 *
+	 * @param cells             normalized brightness of every cell, row by row
+	 * @param reverseBrightness true if brightness must be reversed
+	 * @return the glyph
+	 */
+	char match(double[] cells, boolean reverseBrightness) {
+		int pattern = 0;
+		for (int bit = 0; bit < getCellCount(); bit++) {
+			if (cells[bit] < INK_THRESHOLD != reverseBrightness) {
+				pattern |= 1 << bit;
+			}
+		}
+		return glyphs[pattern];
+	}
+
+	// Helper: Braille numbers the dots of the left column 1-3 and 7, and of the right column 4-6 and 8,
+	// so the bits of a row-major pattern are moved to the bits of their dots
+	private static char[] brailleTable() {
+		char[] table = new char[1 << 8];
+		for (int pattern = 0; pattern < table.length; pattern++) {
+			int dots = 0;
+			for (int bit = 0; bit < 8; bit++) {
+				if ((pattern & 1 << bit) != 0) {
+					int x = bit % 2;
+					int y = bit / 2;
+					dots |= 1 << (y < 3 ? x * 3 + y : 6 + x);
+				}
+			}
+			table[pattern] = (char) (BRAILLE_BLANK + dots);
+		}
+		return table;
+	}
+}
@@ -49,17 +49,13 @@ public class AddCommand implements ShellCommand {
 	}
 
 	private void addRange(String cmd, SubImgCharMatcher matcher) throws IllegalArgumentException {
-		char start = cmd.charAt(0);
-		char end = cmd.charAt(2);
-		if (start <= end) {
-			for (char c = start; c <= end; c++) {
-				matcher.addChar(c);
-			}
-		} else {
-			for (char c = end; c <= start; c++) {
-				matcher.addChar(c);
-			}
+		char start = (char) Math.min(cmd.charAt(0), cmd.charAt(2));
+		char end = (char) Math.max(cmd.charAt(0), cmd.charAt(2));
+		char[] range = new char[end - start + 1];
+		for (char c = start; c <= end; c++) {
+			range[c - start] = c;
 		}
+		matcher.addChars(range);
 	}
 
 	/**
@@ -73,9 +69,11 @@ public class AddCommand implements ShellCommand {
 	}
 
 	private void addAllChars(SubImgCharMatcher matcher) {
+		char[] all = new char[126 - 32 + 1];
 		for (char c = 32; c <= 126; c++) {
-			matcher.addChar(c);
+			all[c - 32] = c;
 		}
+		matcher.addChars(all);
 	}
 
 }
\ No newline at end of file
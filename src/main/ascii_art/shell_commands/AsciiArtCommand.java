@@ -1,22 +1,61 @@
 package ascii_art.shell_commands;
 
 import ascii_art.AsciiArtAlgorithm;
+import ascii_art.BandCoordinator;
+import ascii_art.MatchMode;
 import ascii_art.OutputMode;
+import ascii_art.RenderMode;
+import ascii_art.RenderProgress;
+import ascii_output.AsciiFrameWriter;
 import ascii_output.AsciiOutput;
+import ascii_output.AsciiRowOutput;
+import ascii_output.ColorAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
+import ascii_output.ConsoleAsciiRowOutput;
+import ascii_output.ConsoleColorAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.HtmlAsciiRowOutput;
+import ascii_output.HtmlColorAsciiOutput;
+import image.BrightnessGrid;
+import image.Image;
+import image.ImageProcessor;
+import image.SparseBrightnessGrid;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 /**
  * The AsciiArtCommand class implements the ShellCommand interface to generate ASCII art from an image.
  * It uses the AsciiArtAlgorithm to process the image and outputs the result using the specified output
  * method.
+ * The render runs in the background, so the prompt returns immediately; starting a new render cancels
+ * the running one.
+ * In color mode every character is tinted with the average color of its tile. Colors need the whole
+ * grid, so color renders do not stream; progressive previews are not colored.
+ * When zoomed in, only the visible part of the image is rendered, at the resolution times the zoom,
+ * reusing the tiles earlier views computed; such renders are always standard renders.
+ * In edge mode, tiles crossed by a strong edge are drawn with directional characters; the edges of the
+ * image are found once per resolution, before the render matches its tiles.
+ * Tiles inside the uniform regions of the image, such as its padding, are filled from their single color,
+ * found once per image, rather than by reading their pixels.
+ * Renders write into the render context of the shell state, so repeated renders at the same resolution
+ * reuse its buffers rather than allocating their own.
+ * Tiles are as many times taller than wide as the tile aspect of the shell state; brightness grids,
+ * zoomed tiles and edges are cached per resolution and aspect.
+ * With more than one shard, a standard brightness render of an image file that misses its brightness
+ * grid has it computed by that many worker processes, each reading its own band of the image, and
+ * caches it like any other grid.
  *
  * @author ron.stein
  */
 public class AsciiArtCommand implements ShellCommand {
+	private static final String ZOOM_TOO_DEEP_MSG = "Did not execute. Zoom exceeds the image resolution.";
+
 	/**
 	 * Executes the ASCII art generation command.
 	 * Enables the asciiartalgorithm to use a cached brightness grid for optimization.
+	 * The shell state is captured when the command is issued, so changes made while the render is
+	 * running apply to the next render.
 	 *
 	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
 	 * @param shellState the current state of the shell
@@ -24,30 +63,197 @@ public class AsciiArtCommand implements ShellCommand {
 	 */
 	@Override
 	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
-		double[][] cachedGrid = shellState.getCachedBrightnessGrid();
+		int zoom = shellState.getZoom();
+		int resolution = shellState.getResolution() * zoom; //tiles per row of the whole image
+		if (resolution > shellState.getMaxCharsInRow()) {
+			throw new ShellException(ZOOM_TOO_DEEP_MSG);
+		}
+		int tileAspect = shellState.getTileAspect();
+		BrightnessGrid cachedGrid = shellState.getCachedBrightnessGrid(resolution, tileAspect);
+		MatchMode matchMode = shellState.getMatchMode();
+		boolean dither = shellState.getDitherMode();
+		boolean color = shellState.getColorMode();
+		//the sub-cell modes draw edges with their own cells, so their edges are never looked for
+		boolean edges = shellState.getEdgeMode()
+				&& (matchMode == MatchMode.BRIGHTNESS || matchMode == MatchMode.SHAPE);
+		//generate the ascii art algorithm with the current shell state
+		AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(shellState.getImg(),
+				shellState.getSubImgCharMatcher(),
+				resolution,
+				shellState.getReverseMode(),
+				matchMode,
+				dither,
+				shellState.getContrastMode(),
+				color,
+				cachedGrid,
+				//cache for this shape
+				grid -> shellState.setCachedBrightnessGrid(resolution, tileAspect, grid));
+		algorithm.setTileAspect(tileAspect);
+		algorithm.setRenderContext(shellState.getRenderContext());
 		try {
-			//generate the ascii art algorithm with the current shell state
-			AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(shellState.getImg(),
-					shellState.getSubImgCharMatcher(),
-					shellState.getResolution(),
-					shellState.getReverseMode(),
-					cachedGrid,
-					shellState::setCachedBrightnessGrid); //pass method reference for caching
-
-			char[][] twoDimensionArt = algorithm.run();
-
-			//use correct output method
-			AsciiOutput output;
-			if (shellState.getOutputMode() == OutputMode.HTML) {
-				output = new HtmlAsciiOutput("out.html", "Courier New");
-			} else {
-				output = new ConsoleAsciiOutput();
+			algorithm.checkCharset();
+		} catch (IllegalStateException e) {
+			throw new ShellException(e.getMessage());
+		}
+
+		RenderMode renderMode = shellState.getRenderMode();
+		OutputMode outputMode = shellState.getOutputMode();
+		int pixelResolution = shellState.getSubImgCharMatcher().getPixelResolution();
+		RenderProgress progress = new RenderProgress();
+		if (zoom > 1) {
+			AsciiOutput output = createOutput(outputMode, shellState, color);
+			submitViewport(algorithm, progress, output, color, edges, tileAspect, shellState);
+			return;
+		}
+		if (renderMode == RenderMode.STREAMING && !color) {
+			AsciiRowOutput rowOutput = createRowOutput(outputMode, shellState);
+			shellState.getRenderScheduler().submit(progress, () -> renderStreaming(algorithm, progress,
+					rowOutput, edges, tileAspect, shellState));
+			return;
+		}
+
+		// a missing grid of an image file is computed by worker processes when sharding
+		int shards = shellState.getShards();
+		String shardedPath = shards > 1 && cachedGrid == null && renderMode == RenderMode.STANDARD
+				&& matchMode == MatchMode.BRIGHTNESS && !color ? shellState.getImagePath() : null;
+		AsciiOutput output = createOutput(outputMode, shellState, color);
+		shellState.getRenderScheduler().submit(progress, () -> {
+			try {
+				if (shardedPath != null) {
+					BrightnessGrid grid = BandCoordinator.computeBrightnessGrid(shardedPath, resolution,
+							tileAspect, shards, progress);
+					shellState.setCachedBrightnessGrid(resolution, tileAspect, grid);
+					algorithm.setBrightnessGrid(grid);
+				} else if (renderMode == RenderMode.PROGRESSIVE) {
+					//previews come from the pyramid, so finding the regions first only delays them
+					algorithm.setUniformRegions(shellState.getCachedUniformRegions());
+				} else {
+					algorithm.setUniformRegions(shellState.getUniformRegions(progress));
+				}
+				if (edges) {
+					algorithm.setEdgeGlyphs(shellState.getEdgeGlyphs(resolution, tileAspect, progress));
+				}
+				char[][] twoDimensionArt;
+				if (renderMode == RenderMode.PROGRESSIVE) {
+					//output every preview as soon as it is ready, then the full resolution
+					twoDimensionArt = algorithm.runProgressive(progress,
+							shellState.getBrightnessPyramid(),
+							preview -> {
+								progress.checkCancelled();
+								output.out(preview);
+							});
+				} else {
+					twoDimensionArt = algorithm.run(progress);
+				}
+				progress.checkCancelled();
+				//generate the output with the ascii art and relevant output method
+				long outputStart = System.nanoTime();
+				if (output instanceof ColorAsciiOutput) {
+					((ColorAsciiOutput) output).out(twoDimensionArt, algorithm.getTileColors());
+				} else {
+					output.out(twoDimensionArt);
+				}
+				shellState.recordRenderFinished();
+				shellState.recordRenderAllocation(algorithm.getAllocatedBytes());
+				if (renderMode == RenderMode.STANDARD && !color) {
+					//standard renders run each stage on its own, so their timings calibrate res auto
+					shellState.getRenderCostModel().observeRender(shellState.getImg(), resolution,
+							tileAspect, matchMode, pixelResolution, dither, outputMode,
+							algorithm.getBrightnessNanos(), algorithm.getMatchNanos(),
+							System.nanoTime() - outputStart);
+				}
+			} catch (CancellationException e) {
+				throw e; //not an error, the scheduler ends the render silently
+			} catch (IllegalStateException | IOException e) {
+				System.out.println(e.getMessage());
+			}
+		});
+	}
+
+	// Helper: renders the visible window of a zoomed view. The window is as many tiles wide and high as
+	// the unzoomed view, and starts at the tile holding the top-left pixel of the view, moved inwards if
+	// the view would extend past the image
+	private void submitViewport(AsciiArtAlgorithm algorithm, RenderProgress progress, AsciiOutput output,
+								boolean color, boolean edges, int tileAspect,
+								ascii_art.ShellState shellState) {
+		Image image = shellState.getImg();
+		int columns = shellState.getResolution();
+		int resolution = columns * shellState.getZoom();
+		int tileWidth = ImageProcessor.getPaddedWidth(image) / resolution;
+		int tileHeight = tileWidth * tileAspect;
+		int allRows = ImageProcessor.getPaddedHeight(image) / tileHeight;
+		int rows = allRows / shellState.getZoom();
+		int firstColumn = Math.min(shellState.getViewportX() / tileWidth, resolution - columns);
+		int firstRow = Math.min(shellState.getViewportY() / tileHeight, allRows - rows);
+		SparseBrightnessGrid tiles = shellState.getViewportGrid(resolution, tileAspect, allRows);
+		shellState.getRenderScheduler().submit(progress, () -> {
+			try {
+				algorithm.setUniformRegions(shellState.getUniformRegions(progress));
+				if (edges) {
+					algorithm.setEdgeGlyphs(shellState.getEdgeGlyphs(resolution, tileAspect, progress));
+				}
+				char[][] art = algorithm.runViewport(progress, tiles, firstRow, firstColumn, rows, columns);
+				progress.checkCancelled();
+				if (output instanceof ColorAsciiOutput) {
+					((ColorAsciiOutput) output).out(art, algorithm.getTileColors());
+				} else {
+					output.out(art);
+				}
+				shellState.recordRenderFinished();
+				shellState.recordRenderAllocation(algorithm.getAllocatedBytes());
+			} catch (CancellationException e) {
+				throw e; //not an error, the scheduler ends the render silently
+			} catch (IllegalStateException e) {
+				System.out.println(e.getMessage());
 			}
+		});
+	}
 
-			//generate the output with the ascii art and relevant output method
-			output.out(twoDimensionArt);
+	private void renderStreaming(AsciiArtAlgorithm algorithm, RenderProgress progress,
+								 AsciiRowOutput rowOutput, boolean edges, int tileAspect,
+								 ascii_art.ShellState shellState) {
+		try {
+			//finding the regions pads the whole image before the first row, so only found ones are used
+			algorithm.setUniformRegions(shellState.getCachedUniformRegions());
+			if (edges) {
+				algorithm.setEdgeGlyphs(shellState.getEdgeGlyphs(algorithm.getResolution(), tileAspect,
+						progress));
+			}
+			algorithm.runStreaming(progress, rowOutput);
+			shellState.recordRenderFinished();
+		} catch (CancellationException e) {
+			throw e; //not an error, the scheduler ends the render silently
 		} catch (IllegalStateException e) {
-			throw new ShellException(e.getMessage());
+			System.out.println(e.getMessage());
+		}
+	}
+
+	//use correct output method, frames keeping the chars of color renders only
+	private AsciiOutput createOutput(OutputMode outputMode, ascii_art.ShellState shellState,
+									 boolean color) {
+		String htmlFileName = shellState.getHtmlFileName();
+		String fontName = shellState.getFontName();
+		if (outputMode == OutputMode.FRAMES) {
+			return new AsciiFrameWriter(shellState.getFrameFileName());
+		}
+		if (color) {
+			return outputMode == OutputMode.HTML ? new HtmlColorAsciiOutput(htmlFileName, fontName)
+					: new ConsoleColorAsciiOutput();
+		}
+		if (outputMode == OutputMode.HTML) {
+			return new HtmlAsciiOutput(htmlFileName, fontName);
+		}
+		return new ConsoleAsciiOutput();
+	}
+
+	//use correct output method, writing row by row
+	private AsciiRowOutput createRowOutput(OutputMode outputMode, ascii_art.ShellState shellState) {
+		if (outputMode == OutputMode.FRAMES) {
+			return new AsciiFrameWriter(shellState.getFrameFileName());
+		}
+		if (outputMode == OutputMode.HTML) {
+			return new HtmlAsciiRowOutput(shellState.getHtmlFileName(), shellState.getFontName());
 		}
+		return new ConsoleAsciiRowOutput();
 	}
 }
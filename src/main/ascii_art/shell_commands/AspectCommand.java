@@ -0,0 +1,56 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that sets the aspect of the tiles characters are matched to.
+ * Terminal and HTML characters are about twice as tall as they are wide, so square tiles stretch the
+ * art vertically. With an aspect of 1:2 every tile is twice as tall as it is wide, keeping the
+ * proportions of the image with half the rows, and so half the tiles to match and output.
+ * Tile heights stay powers of two, so the aspect is 1:1, 1:2 or 1:4.
+ */
+public class AspectCommand implements ShellCommand {
+	private static final String RATIO_SEPARATOR = "1:";
+	private static final int MAX_TILE_ASPECT = 4;
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not change tile aspect due to exceeding " +
+			"boundaries.";
+	private static final String BAD_ASPECT_FORMAT_MSG = "Did not change tile aspect due to incorrect " +
+			"format.";
+	private static final String ASPECT_MSG = "Tile aspect set to 1:%d.";
+
+	/**
+	 * Executes the 'aspect' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   if the second argument is not provided, simply prints the current aspect.
+	 *                   otherwise the second argument is the tile height in tile widths, 1, 2 or 4,
+	 *                   optionally written as a ratio such as "1:2"
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect or the current resolution leaves no row of tiles
+	 *                        this tall
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 1) {
+			int tileAspect = parseAspect(args[1]);
+			if (shellState.getResolution() < shellState.getMinCharsInRow(tileAspect)) {
+				throw new ShellException(EXCEED_BOUNDARIES_MSG);
+			}
+			shellState.setTileAspect(tileAspect);
+		}
+		System.out.println(String.format(ASPECT_MSG, shellState.getTileAspect()));
+	}
+
+	// Helper: parses "N" or "1:N" into a power-of-two tile aspect
+	private static int parseAspect(String arg) throws ShellException {
+		String height = arg.startsWith(RATIO_SEPARATOR) ? arg.substring(RATIO_SEPARATOR.length()) : arg;
+		int tileAspect;
+		try {
+			tileAspect = Integer.parseInt(height);
+		} catch (NumberFormatException e) {
+			throw new ShellException(BAD_ASPECT_FORMAT_MSG);
+		}
+		if (tileAspect < 1 || tileAspect > MAX_TILE_ASPECT || Integer.bitCount(tileAspect) != 1) {
+			throw new ShellException(BAD_ASPECT_FORMAT_MSG);
+		}
+		return tileAspect;
+	}
+}
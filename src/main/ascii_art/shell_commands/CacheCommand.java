@@ -0,0 +1,47 @@
+package ascii_art.shell_commands;
+
+import ascii_art.ImageCache;
+
+/**
+ * A shell command that shows the session's image cache, or sets its memory budget.
+ */
+public class CacheCommand implements ShellCommand {
+	private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+	private static final String INCORRECT_FORMAT_MSG = "Did not change cache budget due to incorrect " +
+			"format.";
+	private static final String CACHE_MSG = "Image cache: %d images, %.1f MB of %d MB.";
+
+	/**
+	 * Executes the 'cache' command.
+	 * Lowering the budget evicts the least recently used images right away, except the current one.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   The optional args[1] is the new budget in megabytes.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the budget is not a non-negative number
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 2) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		ImageCache cache = shellState.getImageCache();
+		if (args.length == 2) {
+			long megabytes;
+			try {
+				megabytes = Long.parseLong(args[1]);
+			} catch (NumberFormatException e) {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+			if (megabytes < 0) {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+			//evicted images must not be in use, so wait for the running render first
+			shellState.getRenderScheduler().awaitIdle();
+			cache.setBudget(megabytes * BYTES_PER_MEGABYTE);
+			shellState.trimImageCache();
+		}
+		System.out.println(String.format(CACHE_MSG, cache.size(),
+				(double) cache.getByteSize() / BYTES_PER_MEGABYTE, cache.getBudget() / BYTES_PER_MEGABYTE));
+	}
+}
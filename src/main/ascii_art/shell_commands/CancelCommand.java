@@ -0,0 +1,25 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that cancels the asciiArt render running in the background.
+ */
+public class CancelCommand implements ShellCommand {
+	private static final String NOTHING_TO_CANCEL_MSG = "Did not cancel since no render is running.";
+	private static final String CANCELLED_MSG = "Render cancelled.";
+
+	/**
+	 * Executes the 'cancel' command.
+	 * The render stops at its next completed row and produces no output.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if no render is running
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (!shellState.getRenderScheduler().cancel()) {
+			throw new ShellException(NOTHING_TO_CANCEL_MSG);
+		}
+		System.out.println(CANCELLED_MSG);
+	}
+}
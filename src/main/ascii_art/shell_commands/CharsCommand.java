@@ -18,7 +18,7 @@ public class CharsCommand implements ShellCommand {
 	 */
 	@Override
 	public void execute(String[] args, ascii_art.ShellState shellState) {
-		TreeSet<Character> charSet = shellState.getSubImgCharMatcher().getCharset();
+		TreeSet<Character> charSet = shellState.getCharset();
 		if (charSet.isEmpty()) {
 			return;
 		}
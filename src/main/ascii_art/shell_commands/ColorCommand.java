@@ -0,0 +1,20 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that toggles color mode for ASCII art generation.
+ */
+public class ColorCommand implements ShellCommand {
+	/**
+	 * Executes the 'color' command by toggling the color mode of the shell state.
+	 * The average color of every tile is computed by the Ascii art algorithm in the same pass as its
+	 * brightness, and written as ANSI colors to the console or as colored spans to HTML.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) {
+		//allows to change color mode state, if it was on, turn it off, and vice versa
+		shellState.setColorMode(!shellState.getColorMode());
+	}
+}
@@ -0,0 +1,41 @@
+package ascii_art.shell_commands;
+
+import ascii_art.ContrastMode;
+
+/**
+ * A shell command that changes how the brightness of the image is spread over the charset.
+ * Usage: contrast [off|stretch|equalize]
+ * Stretching maps the brightness range the image actually uses onto the whole charset; equalizing
+ * also evens out how often every character is used. Both only apply when matching by brightness.
+ */
+public class ContrastCommand implements ShellCommand {
+	private static final String OFF = "off";
+	private static final String STRETCH = "stretch";
+	private static final String EQUALIZE = "equalize";
+	private static final String BAD_CONTRAST_FORMAT_MSG = "Did not change contrast due to incorrect " +
+			"format.";
+
+	/**
+	 * Executes the 'contrast' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the contrast mode is incorrect
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 1) {
+			if (args[1].equals(OFF)) {
+				shellState.setContrastMode(ContrastMode.OFF);
+				return;
+			} else if (args[1].equals(STRETCH)) {
+				shellState.setContrastMode(ContrastMode.STRETCH);
+				return;
+			} else if (args[1].equals(EQUALIZE)) {
+				shellState.setContrastMode(ContrastMode.EQUALIZE);
+				return;
+			}
+		}
+		throw new ShellException(BAD_CONTRAST_FORMAT_MSG);
+	}
+}
@@ -0,0 +1,20 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that toggles error-diffusion dithering for ASCII art generation.
+ */
+public class DitherCommand implements ShellCommand {
+	/**
+	 * Executes the 'dither' command by toggling the dither mode of the shell state.
+	 * The actual diffusion of the brightness error is handled in the Ascii art algorithm, and only
+	 * applies when matching by brightness.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) {
+		//allows to change dither mode state, if it was on, turn it off, and vice versa
+		shellState.setDitherMode(!shellState.getDitherMode());
+	}
+}
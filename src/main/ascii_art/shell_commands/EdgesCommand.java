@@ -0,0 +1,21 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that toggles edge mode for ASCII art generation.
+ */
+public class EdgesCommand implements ShellCommand {
+	/**
+	 * Executes the 'edges' command by toggling the edge mode of the shell state.
+	 * In edge mode, tiles crossed by a strong, straight edge are drawn with one of | / - \ _ along the
+	 * edge, and the other tiles keep the character they are matched to, which suits line art and
+	 * diagrams. The gradient of the image is computed once and kept with its brightness data.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) {
+		//allows to change edge mode state, if it was on, turn it off, and vice versa
+		shellState.setEdgeMode(!shellState.getEdgeMode());
+	}
+}
@@ -0,0 +1,75 @@
+package ascii_art.shell_commands;
+
+import image_char_matching.CharConverter;
+import image_char_matching.SubImgCharMatcher;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * A shell command that changes the font characters are matched and written in.
+ * The glyphs of the charset are rendered in the new font, at the given size, and HTML output uses the
+ * same font. Glyphs are cached per font and size, so switching back to a font used before is immediate.
+ */
+public class FontCommand implements ShellCommand {
+	private static final int MIN_PIXEL_RESOLUTION = 8;
+	private static final int MAX_PIXEL_RESOLUTION = 64;
+	private static final String BAD_FONT_FORMAT_MSG = "Did not change font due to incorrect format.";
+	private static final String MISSING_FONT_MSG = "Did not change font since it is not installed.";
+	private static final String FONT_MSG = "Font set to %s at %d pixels.";
+	private static final String CURRENT_FONT_MSG = "Font is %s at %d pixels.";
+
+	/**
+	 * Executes the 'font' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   if no other argument is provided, simply prints the current font.
+	 *                   otherwise the arguments are the font family, which may contain spaces,
+	 *                   optionally followed by the glyph size in pixels, a power of two from 8 to 64
+	 *                   (the current size by default). For example: font DejaVu Sans Mono 32
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect or the font is not installed
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		SubImgCharMatcher matcher = shellState.getSubImgCharMatcher();
+		if (args.length > 1) {
+			int familyEnd = args.length;
+			int pixelResolution = matcher.getPixelResolution();
+			try {
+				pixelResolution = Integer.parseInt(args[args.length - 1]);
+				familyEnd--;
+			} catch (NumberFormatException e) {
+				// no size given, keep the current one
+			}
+			if (familyEnd < 2 || Integer.bitCount(pixelResolution) != 1
+					|| pixelResolution < MIN_PIXEL_RESOLUTION
+					|| pixelResolution > MAX_PIXEL_RESOLUTION) {
+				throw new ShellException(BAD_FONT_FORMAT_MSG);
+			}
+			String family = findFamily(String.join(" ", Arrays.copyOfRange(args, 1, familyEnd)));
+			//renders using the old glyphs keep their snapshot, the next one picks up the new font
+			matcher.setFont(family, pixelResolution);
+			System.out.println(String.format(FONT_MSG, matcher.getFontName(),
+					matcher.getPixelResolution()));
+		} else {
+			System.out.println(String.format(CURRENT_FONT_MSG, matcher.getFontName(),
+					matcher.getPixelResolution()));
+		}
+	}
+
+	// Helper: finds the installed family of the given name, ignoring case. The default font is always
+	// accepted, since AWT substitutes a font for it if it is missing.
+	private static String findFamily(String name) throws ShellException {
+		if (name.equalsIgnoreCase(CharConverter.DEFAULT_FONT_NAME)) {
+			return CharConverter.DEFAULT_FONT_NAME;
+		}
+		GraphicsEnvironment environment = GraphicsEnvironment.getLocalGraphicsEnvironment();
+		for (String family : environment.getAvailableFontFamilyNames()) {
+			if (family.equalsIgnoreCase(name)) {
+				return family;
+			}
+		}
+		throw new ShellException(MISSING_FONT_MSG);
+	}
+}
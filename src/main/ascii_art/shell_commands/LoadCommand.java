@@ -0,0 +1,42 @@
+package ascii_art.shell_commands;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A shell command that switches the shell to another image, keeping the settings.
+ * Images loaded before are kept in the session's image cache with their brightness data, so switching
+ * back to one is immediate, as long as the cache's memory budget allowed keeping it.
+ */
+public class LoadCommand implements ShellCommand {
+	private static final String INCORRECT_FORMAT_MSG = "Did not load image due to incorrect format.";
+	private static final String LOAD_FAILED_MSG = "Did not load image: %s.";
+	private static final String LOADED_MSG = "Loaded %s (%dx%d).";
+
+	/**
+	 * Executes the 'load' command.
+	 * A running render is cancelled first, since its image may be evicted from the cache.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   args[1] and on are the file path of the image, which may contain spaces.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if no path is given or the image cannot be read
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length < 2) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		String path = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+		shellState.getRenderScheduler().cancel();
+		shellState.getRenderScheduler().awaitIdle();
+		Dimension size;
+		try {
+			size = shellState.loadImage(path);
+		} catch (IOException e) {
+			throw new ShellException(String.format(LOAD_FAILED_MSG, e.getMessage()));
+		}
+		System.out.println(String.format(LOADED_MSG, path, size.width, size.height));
+	}
+}
@@ -0,0 +1,45 @@
+package ascii_art.shell_commands;
+
+import ascii_art.MatchMode;
+
+/**
+ * A shell command that changes how image tiles are matched to characters.
+ * Usage: match [brightness|shape|braille|blocks]
+ * The braille and blocks methods draw every tile with a Unicode Braille pattern (2x4 dots) or quadrant
+ * block (2x2 blocks) of its thresholded sub-tiles, for more detail at the same number of characters.
+ */
+public class MatchCommand implements ShellCommand {
+	private static final String BRIGHTNESS = "brightness";
+	private static final String SHAPE = "shape";
+	private static final String BRAILLE = "braille";
+	private static final String BLOCKS = "blocks";
+	private static final String BAD_MATCH_FORMAT_MSG = "Did not change match method due to incorrect " +
+			"format.";
+
+	/**
+	 * Executes the 'match' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the match method is incorrect
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 1) {
+			if (args[1].equals(BRIGHTNESS)) {
+				shellState.setMatchMode(MatchMode.BRIGHTNESS);
+				return;
+			} else if (args[1].equals(SHAPE)) {
+				shellState.setMatchMode(MatchMode.SHAPE);
+				return;
+			} else if (args[1].equals(BRAILLE)) {
+				shellState.setMatchMode(MatchMode.BRAILLE);
+				return;
+			} else if (args[1].equals(BLOCKS)) {
+				shellState.setMatchMode(MatchMode.BLOCKS);
+				return;
+			}
+		}
+		throw new ShellException(BAD_MATCH_FORMAT_MSG);
+	}
+}
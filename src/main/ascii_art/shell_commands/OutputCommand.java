@@ -1,25 +1,33 @@
 package ascii_art.shell_commands;
 
 import ascii_art.OutputMode;
+import ascii_output.AsciiFrameWriter;
+
+import java.io.IOException;
 
 /**
  * A shell command that changes the output method for ASCII art generation.
- * Usage: output [console|html]
+ * With frames output every render is appended as a frame to a compact frame file, which 'play' shows
+ * again without rendering; choosing frames output starts a new frame file.
+ * Usage: output [console|html|frames]
  *
  * @author ron.stein
  */
 public class OutputCommand implements ShellCommand {
 	private static final String CONSOLE = "console";
 	private static final String HTML = "html";
+	private static final String FRAMES = "frames";
 	private static final String BAD_OUTPUT_FORMAT_MSG = "Did not change output method due to incorrect " +
 			"format.";
+	private static final String FRAME_FILE_FAILED_MSG = "Did not change output method since the " +
+			"frame file could not be created.";
 
 	/**
 	 * Executes the 'output' command.
 	 *
 	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
 	 * @param shellState the current state of the shell
-	 * @throws ShellException if the output format is incorrect
+	 * @throws ShellException if the output format is incorrect or the frame file cannot be created
 	 */
 	@Override
 	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
@@ -30,6 +38,16 @@ public class OutputCommand implements ShellCommand {
 			} else if (args[1].equals(HTML)) {
 				shellState.setOutputMode(OutputMode.HTML);
 				return;
+			} else if (args[1].equals(FRAMES)) {
+				//frames of a running render must not land in the new file
+				shellState.getRenderScheduler().awaitIdle();
+				try {
+					AsciiFrameWriter.create(shellState.getFrameFileName());
+				} catch (IOException e) {
+					throw new ShellException(FRAME_FILE_FAILED_MSG);
+				}
+				shellState.setOutputMode(OutputMode.FRAMES);
+				return;
 			}
 		}
 		throw new ShellException(BAD_OUTPUT_FORMAT_MSG);
@@ -0,0 +1,58 @@
+package ascii_art.shell_commands;
+
+import image.Image;
+import image.ImageProcessor;
+
+/**
+ * A shell command that moves a zoomed-in view over the image by half a view at a time.
+ * Tiles already computed for the part of the image that stays in view are reused by the next render.
+ */
+public class PanCommand implements ShellCommand {
+	private static final String LEFT = "left";
+	private static final String RIGHT = "right";
+	private static final String UP = "up";
+	private static final String DOWN = "down";
+	private static final String NOT_ZOOMED_MSG = "Did not pan since the whole image is in view.";
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not pan due to exceeding boundaries.";
+	private static final String BAD_PAN_FORMAT_MSG = "Did not pan due to incorrect format.";
+
+	/**
+	 * Executes the 'pan' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   args[1] is the direction to move the view in: left, right, up or down.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect, the view is not zoomed in or is already at the
+	 *                        edge of the image
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length != 2) {
+			throw new ShellException(BAD_PAN_FORMAT_MSG);
+		}
+		int dx = 0;
+		int dy = 0;
+		switch (args[1]) {
+			case LEFT: dx = -1; break;
+			case RIGHT: dx = 1; break;
+			case UP: dy = -1; break;
+			case DOWN: dy = 1; break;
+			default: throw new ShellException(BAD_PAN_FORMAT_MSG);
+		}
+		int zoom = shellState.getZoom();
+		if (zoom == 1) {
+			throw new ShellException(NOT_ZOOMED_MSG);
+		}
+		Image image = shellState.getImg();
+		int viewWidth = ImageProcessor.getPaddedWidth(image) / zoom;
+		int viewHeight = ImageProcessor.getPaddedHeight(image) / zoom;
+		int viewportX = ZoomCommand.clamp(shellState.getViewportX() + dx * viewWidth / 2,
+				ImageProcessor.getPaddedWidth(image) - viewWidth);
+		int viewportY = ZoomCommand.clamp(shellState.getViewportY() + dy * viewHeight / 2,
+				ImageProcessor.getPaddedHeight(image) - viewHeight);
+		if (viewportX == shellState.getViewportX() && viewportY == shellState.getViewportY()) {
+			throw new ShellException(EXCEED_BOUNDARIES_MSG);
+		}
+		shellState.setViewport(zoom, viewportX, viewportY);
+	}
+}
@@ -0,0 +1,83 @@
+package ascii_art.shell_commands;
+
+import ascii_art.OutputMode;
+import ascii_output.AsciiFrameReader;
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * A shell command that shows again the frames recorded by frames output, without rendering and
+ * without the image they were rendered from. Frames are written to the HTML file when the output method
+ * is HTML, and to the console otherwise.
+ * Usage: play [frame|all], playing the last frame by default, frames being numbered from 1
+ */
+public class PlayCommand implements ShellCommand {
+	private static final String ALL = "all";
+	private static final String INCORRECT_FORMAT_MSG = "Did not play due to incorrect format.";
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not play due to exceeding boundaries.";
+	private static final String NO_FRAMES_MSG = "Did not play since no frames were recorded.";
+	private static final String READ_FAILED_MSG = "Did not play: %s.";
+
+	/**
+	 * Executes the 'play' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   The optional args[1] is the number of the frame to play, or "all" to play every
+	 *                   frame in the order they were recorded.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect, the frame does not exist or the frame file cannot
+	 *                        be read
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 2) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		//the frame of the running render must be recorded first, and nothing interleave with the playback
+		shellState.getRenderScheduler().awaitIdle();
+		AsciiFrameReader reader;
+		try {
+			reader = new AsciiFrameReader(shellState.getFrameFileName());
+		} catch (NoSuchFileException e) {
+			throw new ShellException(NO_FRAMES_MSG);
+		} catch (IOException e) {
+			throw new ShellException(String.format(READ_FAILED_MSG, e.getMessage()));
+		}
+		int frames = reader.getFrameCount();
+		if (frames == 0) {
+			throw new ShellException(NO_FRAMES_MSG);
+		}
+		int first = frames - 1;
+		int last = frames - 1;
+		if (args.length == 2) {
+			if (args[1].equals(ALL)) {
+				first = 0;
+			} else {
+				try {
+					first = Integer.parseInt(args[1]) - 1;
+				} catch (NumberFormatException e) {
+					throw new ShellException(INCORRECT_FORMAT_MSG);
+				}
+				if (first < 0 || first >= frames) {
+					throw new ShellException(EXCEED_BOUNDARIES_MSG);
+				}
+				last = first;
+			}
+		}
+
+		AsciiOutput output = shellState.getOutputMode() == OutputMode.HTML
+				? new HtmlAsciiOutput(shellState.getHtmlFileName(), shellState.getFontName())
+				: new ConsoleAsciiOutput();
+		try {
+			for (int frame = first; frame <= last; frame++) {
+				output.out(reader.readFrame(frame));
+			}
+		} catch (IOException e) {
+			throw new ShellException(String.format(READ_FAILED_MSG, e.getMessage()));
+		}
+	}
+}
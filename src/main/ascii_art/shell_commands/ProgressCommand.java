@@ -0,0 +1,39 @@
+package ascii_art.shell_commands;
+
+import ascii_art.RenderProgress;
+
+/**
+ * A shell command that prints how far the asciiArt render running in the background has progressed.
+ */
+public class ProgressCommand implements ShellCommand {
+	private static final String NO_RENDER_MSG = "No render is running.";
+	private static final String PREPARING_MSG = "Rendering: preparing image.";
+	private static final String PROGRESS_MSG = "Rendering pass %d: %d/%d rows (%d%%).";
+	private static final int PERCENT = 100;
+
+	/**
+	 * Executes the 'progress' command.
+	 * Prints the number of completed tile rows of the running render's current pass out of its total,
+	 * along with the number of the pass, since a render may pass over its rows several times.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) {
+		RenderProgress progress = shellState.getRenderScheduler().getRunning();
+		if (progress == null) {
+			System.out.println(NO_RENDER_MSG);
+			return;
+		}
+		int pass = progress.getPass();
+		int completed = progress.getCompletedRows();
+		int total = progress.getTotalRows();
+		if (total == 0) {
+			System.out.println(PREPARING_MSG);
+			return;
+		}
+		int percent = completed * PERCENT / total;
+		System.out.println(String.format(PROGRESS_MSG, pass, completed, total, percent));
+	}
+}
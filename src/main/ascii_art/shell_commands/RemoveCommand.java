@@ -43,23 +43,21 @@ public class RemoveCommand extends AddCommand {
 	}
 
 	private void removeRange(String cmd, SubImgCharMatcher matcher) {
-		char start = cmd.charAt(0);
-		char end = cmd.charAt(2);
-		if (start <= end) {
-			for (char c = start; c <= end; c++) {
-				matcher.removeChar(c);
-			}
-		} else {
-			for (char c = end; c <= start; c++) {
-				matcher.removeChar(c);
-			}
+		char start = (char) Math.min(cmd.charAt(0), cmd.charAt(2));
+		char end = (char) Math.max(cmd.charAt(0), cmd.charAt(2));
+		char[] range = new char[end - start + 1];
+		for (char c = start; c <= end; c++) {
+			range[c - start] = c;
 		}
+		matcher.removeChars(range);
 	}
 
 	private void removeAllChars(SubImgCharMatcher matcher) {
+		StringBuilder all = new StringBuilder();
 		for (char c : matcher.getCharset()) {
-			matcher.removeChar(c);
+			all.append(c);
 		}
+		matcher.removeChars(all.toString().toCharArray());
 	}
 
 }
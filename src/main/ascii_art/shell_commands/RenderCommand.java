@@ -0,0 +1,41 @@
+package ascii_art.shell_commands;
+
+import ascii_art.RenderMode;
+
+/**
+ * A shell command that changes how asciiArt renders are produced.
+ * Usage: render [standard|progressive|stream]
+ * In progressive mode low-resolution previews are output first, refining up to the set resolution.
+ * In stream mode the art is computed and output one row at a time, in constant memory.
+ */
+public class RenderCommand implements ShellCommand {
+	private static final String STANDARD = "standard";
+	private static final String PROGRESSIVE = "progressive";
+	private static final String STREAM = "stream";
+	private static final String BAD_RENDER_FORMAT_MSG = "Did not change render method due to incorrect " +
+			"format.";
+
+	/**
+	 * Executes the 'render' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the render method is incorrect
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 1) {
+			if (args[1].equals(STANDARD)) {
+				shellState.setRenderMode(RenderMode.STANDARD);
+				return;
+			} else if (args[1].equals(PROGRESSIVE)) {
+				shellState.setRenderMode(RenderMode.PROGRESSIVE);
+				return;
+			} else if (args[1].equals(STREAM)) {
+				shellState.setRenderMode(RenderMode.STREAMING);
+				return;
+			}
+		}
+		throw new ShellException(BAD_RENDER_FORMAT_MSG);
+	}
+}
@@ -1,18 +1,31 @@
 package ascii_art.shell_commands;
 
+import ascii_art.MatchMode;
+import ascii_art.OutputMode;
+import ascii_art.RenderCostModel;
+import ascii_art.RenderMode;
+import image_char_matching.CharMatcherSnapshot;
+
 /**
  * A shell command that manages the resolution of the ASCII art.
  * The resolution determines how many characters are used per row in the ASCII art representation.
- * Users can increase or decrease the resolution within defined boundaries.
+ * Users can increase or decrease the resolution within defined boundaries, or let it be chosen to fit
+ * a time budget.
  *
  * @author ron.stein
  */
 public class ResCommand implements ShellCommand {
 	private static final String UP = "up";
 	private static final String DOWN = "down";
+	private static final String AUTO = "auto";
 	private static final String EXCEED_BOUNDARIES_MSG = "Did not change resolution due to exceeding " +
 			"boundaries.";
 	private static final String BAD_RES_FORMAT_MSG = "Did not change resolution due to incorrect format.";
+	private static final String SMALL_CHARSET_MSG = "Did not change resolution. Charset is too small.";
+	private static final String OVER_BUDGET_MSG = "Did not change resolution since no resolution renders " +
+			"within the time budget.";
+	private static final String UNMODELLED_MSG = "Did not change resolution since auto only estimates " +
+			"standard renders without color, edges or zoom.";
 
 	/**
 	 * Executes the 'res' command.
@@ -21,12 +34,20 @@ public class ResCommand implements ShellCommand {
 	 *                   if the second argument is not provided, simply prints the current resolution.
 	 *                   if the second argument is "up" resolution is multiplied by 2
 	 *                   is the second argument is "down" resolution is divided by 2
+	 *                   if the second argument is "auto" the third argument is a time budget in
+	 *                   milliseconds, and resolution is set to the highest one estimated to render and
+	 *                   output within it, which is only estimated for standard renders without color,
+	 *                   edges or zoom
 	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect, no resolution fits or the render is not one
+	 *                        that can be estimated
 	 */
 	@Override
 	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
 		int curResolution = shellState.getResolution();
-		if (args.length > 1) {
+		if (args.length > 1 && args[1].equals(AUTO)) {
+			shellState.setResolution(chooseResolution(args, shellState));
+		} else if (args.length > 1) {
 			if (!(args[1].equals(UP) || args[1].equals(DOWN))) {
 				throw new ShellException(BAD_RES_FORMAT_MSG);
 			}
@@ -40,4 +61,50 @@ public class ResCommand implements ShellCommand {
 		}
 		System.out.println("Resolution set to " + shellState.getResolution() + ".");
 	}
+
+	// Helper: picks the highest resolution reachable by res up/down whose estimated render fits the budget
+	private int chooseResolution(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		double budgetMillis;
+		try {
+			budgetMillis = args.length == 3 ? Double.parseDouble(args[2]) : -1;
+		} catch (NumberFormatException e) {
+			throw new ShellException(BAD_RES_FORMAT_MSG);
+		}
+		if (!(budgetMillis > 0)) {
+			throw new ShellException(BAD_RES_FORMAT_MSG);
+		}
+		CharMatcherSnapshot charset = shellState.getSubImgCharMatcher().getSnapshot();
+		if (charset.size() < 2) {
+			throw new ShellException(SMALL_CHARSET_MSG);
+		}
+		//the other modes add passes the cost model does not measure, so it would under-estimate them
+		if (shellState.getRenderMode() != RenderMode.STANDARD || shellState.getColorMode()
+				|| shellState.getEdgeMode() || shellState.getZoom() > 1) {
+			throw new ShellException(UNMODELLED_MSG);
+		}
+
+		MatchMode matchMode = shellState.getMatchMode();
+		boolean dither = shellState.getDitherMode();
+		OutputMode outputMode = shellState.getOutputMode();
+		RenderCostModel model = shellState.getRenderCostModel();
+		model.calibrate(shellState.getImg(), charset, matchMode, dither, outputMode);
+
+		int resolution = shellState.getResolution();
+		int tileAspect = shellState.getTileAspect();
+		while (resolution / 2 >= shellState.getMinCharsInRow()) {
+			resolution /= 2;
+		}
+		int best = -1;
+		for (; resolution <= shellState.getMaxCharsInRow(); resolution *= 2) {
+			boolean cached = shellState.getCachedBrightnessGrid(resolution, tileAspect) != null;
+			if (model.estimateMillis(shellState.getImg(), resolution, tileAspect, matchMode,
+					charset.getPixelResolution(), dither, outputMode, cached) <= budgetMillis) {
+				best = resolution;
+			}
+		}
+		if (best < 0) {
+			throw new ShellException(OVER_BUDGET_MSG);
+		}
+		return best;
+	}
 }
@@ -0,0 +1,45 @@
+package ascii_art.shell_commands;
+
+import ascii_art.BandCoordinator;
+
+/**
+ * A shell command that sets how many local worker processes standard brightness renders of an image
+ * file compute a missing brightness grid in. Every worker decodes and reads only its own band of tile
+ * rows, so huge images are not limited by the heap of the shell's JVM. With 1 shard, grids are
+ * computed in-process.
+ */
+public class ShardsCommand implements ShellCommand {
+	private static final String INCORRECT_FORMAT_MSG = "Did not change shards due to incorrect format.";
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not change shards due to exceeding " +
+			"boundaries.";
+	private static final String SHARDS_MSG = "Shards set to %d.";
+
+	/**
+	 * Executes the 'shards' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   The optional args[1] is the number of worker processes, from 1 to
+	 *                   {@link BandCoordinator#MAX_WORKERS}.
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the number is malformed or out of range
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length > 2) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		if (args.length == 2) {
+			int shards;
+			try {
+				shards = Integer.parseInt(args[1]);
+			} catch (NumberFormatException e) {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+			if (shards < 1 || shards > BandCoordinator.MAX_WORKERS) {
+				throw new ShellException(EXCEED_BOUNDARIES_MSG);
+			}
+			shellState.setShards(shards);
+		}
+		System.out.println(String.format(SHARDS_MSG, shellState.getShards()));
+	}
+}
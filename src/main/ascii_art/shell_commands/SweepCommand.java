@@ -0,0 +1,285 @@
+package ascii_art.shell_commands;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_art.ContrastMode;
+import ascii_art.MatchMode;
+import ascii_art.RenderProgress;
+import ascii_output.HtmlAsciiOutput;
+import image.BrightnessGrid;
+import image.BrightnessPyramid;
+import image.Image;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.GlyphCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A shell command that renders every combination of several resolutions, charsets and reverse
+ * settings to its own HTML file, for side by side comparison.
+ * The work is planned so nothing is computed twice: the brightness of every resolution is read from
+ * the image's brightness pyramid, built once, stacking its square tiles when tiles are taller than
+ * wide as a progressive render does, and caching the stacked grids for asciiArt; the glyphs of all
+ * charsets are taken from the glyph cache in the current font, rasterizing missing ones in one pass,
+ * and every charset is compiled once; the combinations then only map brightness to characters, and run
+ * in parallel. The sweep runs in the background like asciiArt, and is cancelled the same way.
+ * Tiles are matched by brightness, with the current contrast mode and tile aspect, diffusing the error
+ * if dither is on.
+ * The files are named after the HTML output file, so out.html gives out_sweep_r64_c1.html, and so on.
+ */
+public class SweepCommand implements ShellCommand {
+	private static final String LIST_SEPARATOR = ",";
+	private static final String CHARSET_JOINER = "+";
+	private static final String ON = "on";
+	private static final String OFF = "off";
+	private static final String FILE_NAME_FORMAT = "%s_sweep_r%d_c%d%s%s";
+	private static final String HTML_EXTENSION = ".html";
+	private static final String REVERSE_SUFFIX = "_reverse";
+	private static final char FIRST_CHAR = 32;
+	private static final char LAST_CHAR = 126;
+	private static final String INCORRECT_FORMAT_MSG = "Did not sweep due to incorrect format.";
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not sweep due to exceeding boundaries.";
+	private static final String SMALL_CHARSET_MSG = "Did not sweep. Charset is too small.";
+	private static final String WROTE_MSG = "Wrote %s (resolution %d, chars %s, reverse %s).";
+
+	/**
+	 * Executes the 'sweep' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   args[1] is a comma separated list of resolutions, args[2] a comma separated list
+	 *                   of charsets, each made of parts joined by '+' in the forms add accepts (a
+	 *                   character, a range such as a-z, space or all), and the optional args[3] a comma
+	 *                   separated list of reverse settings, on or off (off by default).
+	 *                   For example: sweep 64,128 0-9,a-z+0-9 off,on
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect, a resolution is out of bounds or a charset is
+	 *                        too small
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		if (args.length < 3 || args.length > 4) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		String[] charsetSpecs = args[2].split(LIST_SEPARATOR);
+		List<char[]> charsets = new ArrayList<>();
+		for (String spec : charsetSpecs) {
+			charsets.add(parseCharset(spec));
+		}
+		boolean[] reverses = parseReverses(args.length == 4 ? args[3] : OFF);
+		int[] resolutions = parseResolutions(args[1], shellState);
+
+		// every combination of resolution, charset and reverse setting, by output order
+		List<Variant> variants = new ArrayList<>();
+		for (int r : resolutions) {
+			for (int c = 0; c < charsetSpecs.length; c++) {
+				for (boolean reverse : reverses) {
+					variants.add(new Variant(r, c, charsetSpecs[c], reverse));
+				}
+			}
+		}
+
+		Image image = shellState.getImg();
+		boolean dither = shellState.getDitherMode();
+		ContrastMode contrast = shellState.getContrastMode();
+		String fontName = shellState.getFontName();
+		String htmlFileName = shellState.getHtmlFileName();
+		int pixelResolution = shellState.getSubImgCharMatcher().getPixelResolution();
+		int tileAspect = shellState.getTileAspect();
+		RenderProgress progress = new RenderProgress();
+		shellState.getRenderScheduler().submit(progress, () -> {
+			BrightnessPyramid pyramid = shellState.getBrightnessPyramid();
+			for (int resolution : resolutions) {
+				if (resolution < pyramid.getMinTilesPerRow()
+						|| resolution > pyramid.getMaxTilesPerRow()) {
+					System.out.println(EXCEED_BOUNDARIES_MSG);
+					return;
+				}
+			}
+			//build the levels finest first, so only the finest reads the pixels and the rest average it
+			int[] finestFirst = Arrays.stream(resolutions).sorted().toArray();
+			for (int i = finestFirst.length - 1; i >= 0; i--) {
+				progress.start(pyramid.getRows(finestFirst[i]));
+				pyramid.getGrid(finestFirst[i], progress::rowCompleted);
+			}
+			Map<Integer, BrightnessGrid> grids = new HashMap<>();
+			for (int resolution : resolutions) {
+				grids.put(resolution,
+						brightnessGrid(shellState, pyramid, resolution, tileAspect, progress));
+			}
+			CharMatcherSnapshot[] compiled = compileCharsets(charsets, fontName, pixelResolution);
+			progress.start(variants.size());
+			variants.parallelStream().forEach(variant -> {
+				progress.checkCancelled();
+				AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image,
+						compiled[variant.charsetIndex], variant.resolution, variant.reverse,
+						MatchMode.BRIGHTNESS, dither, contrast, false, grids.get(variant.resolution),
+						null);
+				algorithm.setTileAspect(tileAspect);
+				char[][] art = algorithm.run(new RenderProgress());
+				progress.checkCancelled();
+				new HtmlAsciiOutput(variant.fileName(htmlFileName), fontName).out(art);
+				progress.rowCompleted();
+			});
+			for (Variant variant : variants) {
+				System.out.println(String.format(WROTE_MSG, variant.fileName(htmlFileName),
+						variant.resolution, variant.charsetSpec, variant.reverse ? ON : OFF));
+			}
+		});
+	}
+
+	// Helper: the brightness grid of a resolution, the pyramid level itself for square tiles, and its
+	// stacked tiles otherwise, taken from the image cache or cached once stacked
+	private static BrightnessGrid brightnessGrid(ascii_art.ShellState shellState,
+												 BrightnessPyramid pyramid, int resolution,
+												 int tileAspect, RenderProgress progress) {
+		if (tileAspect == 1) {
+			return pyramid.getGrid(resolution, progress::checkCancelled);
+		}
+		BrightnessGrid grid = shellState.getCachedBrightnessGrid(resolution, tileAspect);
+		if (grid == null) {
+			grid = AsciiArtAlgorithm.stackPyramidTiles(pyramid, resolution, tileAspect, progress);
+			shellState.setCachedBrightnessGrid(resolution, tileAspect, grid);
+		}
+		return grid;
+	}
+
+	// Helper: gets the glyphs of every character used by any charset at once, then compiles each charset
+	// from them
+	private static CharMatcherSnapshot[] compileCharsets(List<char[]> charsets, String fontName,
+														 int pixelResolution) {
+		TreeSet<Character> union = new TreeSet<>();
+		for (char[] charset : charsets) {
+			for (char c : charset) {
+				union.add(c);
+			}
+		}
+		char[] allChars = new char[union.size()];
+		int i = 0;
+		for (char c : union) {
+			allChars[i++] = c;
+		}
+		long[][] allMasks = GlyphCache.getMasks(allChars, fontName, pixelResolution);
+
+		CharMatcherSnapshot[] compiled = new CharMatcherSnapshot[charsets.size()];
+		for (int c = 0; c < compiled.length; c++) {
+			char[] charset = charsets.get(c);
+			long[][] masks = new long[charset.length][];
+			for (int j = 0; j < charset.length; j++) {
+				masks[j] = allMasks[Arrays.binarySearch(allChars, charset[j])];
+			}
+			compiled[c] = CharMatcherSnapshot.empty(pixelResolution).withChars(charset, masks);
+		}
+		return compiled;
+	}
+
+	// Helper: parses a charset made of parts joined by '+', without duplicates
+	private static char[] parseCharset(String spec) throws ShellException {
+		TreeSet<Character> chars = new TreeSet<>();
+		for (String part : spec.split("\\" + CHARSET_JOINER)) {
+			if (part.equals(AddCommand.ALL)) {
+				addRange(chars, FIRST_CHAR, LAST_CHAR);
+			} else if (part.equals(AddCommand.SPACE)) {
+				chars.add(' ');
+			} else if (part.length() == 1) {
+				addRange(chars, part.charAt(0), part.charAt(0));
+			} else if (part.length() == 3 && part.charAt(1) == '-') {
+				addRange(chars, (char) Math.min(part.charAt(0), part.charAt(2)),
+						(char) Math.max(part.charAt(0), part.charAt(2)));
+			} else {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+		}
+		if (chars.size() < 2) {
+			throw new ShellException(SMALL_CHARSET_MSG);
+		}
+		char[] charset = new char[chars.size()];
+		int i = 0;
+		for (char c : chars) {
+			charset[i++] = c;
+		}
+		return charset;
+	}
+
+	private static void addRange(TreeSet<Character> chars, char start, char end) throws ShellException {
+		if (start < FIRST_CHAR || end > LAST_CHAR) {
+			throw new ShellException(INCORRECT_FORMAT_MSG);
+		}
+		for (char c = start; c <= end; c++) {
+			chars.add(c);
+		}
+	}
+
+	// Helper: parses the resolutions, which must be ones res up and res down can reach
+	private static int[] parseResolutions(String list, ascii_art.ShellState shellState)
+			throws ShellException {
+		String[] items = list.split(LIST_SEPARATOR);
+		int[] resolutions = new int[items.length];
+		for (int i = 0; i < items.length; i++) {
+			try {
+				resolutions[i] = Integer.parseInt(items[i]);
+			} catch (NumberFormatException e) {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+			if (Integer.bitCount(resolutions[i]) != 1) {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+			if (resolutions[i] < shellState.getMinCharsInRow()
+					|| resolutions[i] > shellState.getMaxCharsInRow()) {
+				throw new ShellException(EXCEED_BOUNDARIES_MSG);
+			}
+		}
+		//a repeated value would write a file twice
+		return Arrays.stream(resolutions).distinct().toArray();
+	}
+
+	private static boolean[] parseReverses(String list) throws ShellException {
+		String[] items = list.split(LIST_SEPARATOR);
+		boolean off = false;
+		boolean on = false;
+		for (String item : items) {
+			if (item.equals(ON)) {
+				on = true;
+			} else if (item.equals(OFF)) {
+				off = true;
+			} else {
+				throw new ShellException(INCORRECT_FORMAT_MSG);
+			}
+		}
+		if (off && on) {
+			return new boolean[]{false, true};
+		}
+		return new boolean[]{on};
+	}
+
+	/**
+	 * One combination of the sweep.
+	 */
+	private static final class Variant {
+		private final int resolution;
+		private final int charsetIndex;
+		private final String charsetSpec;
+		private final boolean reverse;
+
+		Variant(int resolution, int charsetIndex, String charsetSpec, boolean reverse) {
+			this.resolution = resolution;
+			this.charsetIndex = charsetIndex;
+			this.charsetSpec = charsetSpec;
+			this.reverse = reverse;
+		}
+
+		// the HTML file name with the variant before its extension, charsets being numbered from 1 in
+		// the order they were given
+		String fileName(String htmlFileName) {
+			String base = htmlFileName;
+			if (htmlFileName.endsWith(HTML_EXTENSION)) {
+				base = htmlFileName.substring(0, htmlFileName.length() - HTML_EXTENSION.length());
+			}
+			return String.format(FILE_NAME_FORMAT, base, resolution, charsetIndex + 1,
+					reverse ? REVERSE_SUFFIX : "", HTML_EXTENSION);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package ascii_art.shell_commands;
+
+/**
+ * A shell command that reports how fast the shell started: the time from the start of the JVM to the
+ * first prompt, and to the end of the output of the first render.
+ */
+public class TimingCommand implements ShellCommand {
+	private static final String PROMPT_TIME_MSG = "Time to first prompt: %d ms.";
+	private static final String RENDER_TIME_MSG = "Time to first render: %d ms.";
+	private static final String NO_RENDER_MSG = "Time to first render: no render finished yet.";
+
+	/**
+	 * Executes the 'timing' command by printing the startup timings recorded by the shell state.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 * @param shellState the current state of the shell
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) {
+		System.out.println(String.format(PROMPT_TIME_MSG, shellState.getTimeToFirstPrompt()));
+		long renderTime = shellState.getTimeToFirstRender();
+		if (renderTime < 0) {
+			System.out.println(NO_RENDER_MSG);
+		} else {
+			System.out.println(String.format(RENDER_TIME_MSG, renderTime));
+		}
+	}
+}
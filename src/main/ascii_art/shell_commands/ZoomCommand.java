@@ -0,0 +1,66 @@
+package ascii_art.shell_commands;
+
+import image.Image;
+import image.ImageProcessor;
+
+/**
+ * A shell command that zooms the view of the image in and out.
+ * Zooming in by a factor of 2 shows half the width and height of the previous view with the same number
+ * of characters, so the visible part is rendered at twice the resolution. The center of the view stays
+ * in place; use pan to move it.
+ */
+public class ZoomCommand implements ShellCommand {
+	private static final String IN = "in";
+	private static final String OUT = "out";
+	private static final String EXCEED_BOUNDARIES_MSG = "Did not change zoom due to exceeding boundaries.";
+	private static final String BAD_ZOOM_FORMAT_MSG = "Did not change zoom due to incorrect format.";
+
+	/**
+	 * Executes the 'zoom' command.
+	 *
+	 * @param args       the arguments for the command. args[0] is the command name, usually can be ignored.
+	 *                   if the second argument is not provided, simply prints the current zoom.
+	 *                   if the second argument is "in" the zoom is multiplied by 2, as long as the
+	 *                   resolution times the zoom does not exceed the image width
+	 *                   if the second argument is "out" the zoom is divided by 2, down to 1
+	 * @param shellState the current state of the shell
+	 * @throws ShellException if the format is incorrect or the zoom would exceed its boundaries
+	 */
+	@Override
+	public void execute(String[] args, ascii_art.ShellState shellState) throws ShellException {
+		int zoom = shellState.getZoom();
+		if (args.length > 1) {
+			int newZoom;
+			if (args[1].equals(IN)) {
+				newZoom = zoom * 2;
+				if ((long) shellState.getResolution() * newZoom > shellState.getMaxCharsInRow()) {
+					throw new ShellException(EXCEED_BOUNDARIES_MSG);
+				}
+			} else if (args[1].equals(OUT)) {
+				newZoom = zoom / 2;
+				if (newZoom < 1) {
+					throw new ShellException(EXCEED_BOUNDARIES_MSG);
+				}
+			} else {
+				throw new ShellException(BAD_ZOOM_FORMAT_MSG);
+			}
+			// keep the center of the view in place
+			Image image = shellState.getImg();
+			int paddedWidth = ImageProcessor.getPaddedWidth(image);
+			int paddedHeight = ImageProcessor.getPaddedHeight(image);
+			int centerX = shellState.getViewportX() + paddedWidth / zoom / 2;
+			int centerY = shellState.getViewportY() + paddedHeight / zoom / 2;
+			int viewportWidth = paddedWidth / newZoom;
+			int viewportHeight = paddedHeight / newZoom;
+			int viewportX = clamp(centerX - viewportWidth / 2, paddedWidth - viewportWidth);
+			int viewportY = clamp(centerY - viewportHeight / 2, paddedHeight - viewportHeight);
+			shellState.setViewport(newZoom, viewportX, viewportY);
+		}
+		System.out.println("Zoom set to " + shellState.getZoom() + ".");
+	}
+
+	// Helper: clamps a coordinate to [0, max]
+	static int clamp(int value, int max) {
+		return Math.max(0, Math.min(value, max));
+	}
+}
@@ -0,0 +1,64 @@
+package ascii_output;
+
+import java.util.BitSet;
+
+/**
+ * The layout of a frame file, shared by {@link AsciiFrameWriter} and {@link AsciiFrameReader}.
+ * <p>
+ * A frame file starts with the magic bytes "ASCF" and a version byte, followed by any number of frames.
+ * A frame is its number of rows and columns, the number of distinct chars it uses and those chars in
+ * ascending order, then the length in bytes and the bytes of its cells. The cells are written row by
+ * row as a stream of packets, most significant bit first: a 0 bit and the index of a single cell's char,
+ * or a 1 bit, the index of a char and the length of its run less {@link #MIN_RUN}. Indices take
+ * {@link #indexBits(int)} bits and run lengths {@link #RUN_BITS} bits; runs continue across rows.
+ * All numbers are big-endian ints, and chars are UTF-16 code units.
+ */
+final class AsciiFrameFormat {
+    static final byte[] MAGIC = {'A', 'S', 'C', 'F'};
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = MAGIC.length + 1;
+
+    /**
+     * Shortest run written as a run packet; shorter runs are cheaper as single cells
+     */
+    static final int MIN_RUN = 3;
+
+    /**
+     * Bits of the length of a run packet
+     */
+    static final int RUN_BITS = 6;
+
+    /**
+     * Longest run a single run packet holds
+     */
+    static final int MAX_RUN = MIN_RUN + (1 << RUN_BITS) - 1;
+
+    private AsciiFrameFormat() {
+        // prevent instantiation
+    }
+
+    /**
+     * Gets the bits an index into a frame's chars takes, at least one
+     */
+    static int indexBits(int charCount) {
+        return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(charCount - 1));
+    }
+
+    /**
+     * Gets the distinct chars of a 2D array of chars, in ascending order
+     */
+    static char[] distinctChars(char[][] chars) {
+        BitSet used = new BitSet(Character.MAX_VALUE + 1);
+        for (char[] row : chars) {
+            for (char c : row) {
+                used.set(c);
+            }
+        }
+        char[] distinct = new char[used.cardinality()];
+        int count = 0;
+        for (int c = used.nextSetBit(0); c >= 0; c = used.nextSetBit(c + 1)) {
+            distinct[count++] = (char) c;
+        }
+        return distinct;
+    }
+}
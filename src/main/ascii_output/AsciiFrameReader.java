@@ -0,0 +1,155 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the frames of a frame file written by {@link AsciiFrameWriter}. The file is memory-mapped
+ * rather than read, and opening it only steps over the frame headers, so a single frame of a long
+ * file is played back without reading the others. A frame is decoded to the same 2D array of chars
+ * that was written, ready for any {@link AsciiOutput}.
+ */
+public class AsciiFrameReader {
+    private static final String NOT_A_FRAME_FILE_ERROR = "Not a frame file: ";
+    private static final String CORRUPT_ERROR = "Frame file is truncated or corrupt: ";
+    private static final String TOO_LARGE_ERROR = "Frame file is too large: ";
+
+    private final String filename;
+    private final ByteBuffer file; // the mapped file, only read through duplicates
+    private final int[] frameOffsets;
+
+    /**
+     * Maps a frame file and finds its frames
+     */
+    public AsciiFrameReader(String filename) throws IOException {
+        this.filename = filename;
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(TOO_LARGE_ERROR + filename);
+            }
+            // the mapping stays valid once the channel is closed
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        frameOffsets = indexFrames();
+    }
+
+    /**
+     * Gets the number of frames in the file
+     */
+    public int getFrameCount() {
+        return frameOffsets.length;
+    }
+
+    /**
+     * Decodes a frame of the file, the first frame being 0
+     */
+    public char[][] readFrame(int frame) throws IOException {
+        ByteBuffer data = file.duplicate().position(frameOffsets[frame]);
+        try {
+            int rows = data.getInt();
+            int columns = data.getInt();
+            char[] charset = new char[data.getInt()];
+            for (int i = 0; i < charset.length; i++) {
+                charset[i] = data.getChar();
+            }
+            int packedLength = data.getInt();
+            BitUnpacker cells = new BitUnpacker(data.slice(data.position(), packedLength));
+            int bits = AsciiFrameFormat.indexBits(charset.length);
+            // every packet takes a few bits and holds at most MAX_RUN cells, which bounds the cells a
+            // frame can hold before they are allocated
+            if ((long) rows * columns > (long) packedLength * AsciiFrameFormat.MAX_RUN * Byte.SIZE) {
+                throw new IOException(CORRUPT_ERROR + filename);
+            }
+
+            char[][] chars = new char[rows][columns];
+            int row = 0;
+            int col = 0;
+            long remaining = (long) rows * columns;
+            while (remaining > 0) {
+                boolean isRun = cells.read(1) == 1;
+                int index = cells.read(bits);
+                int length = isRun ? cells.read(AsciiFrameFormat.RUN_BITS) + AsciiFrameFormat.MIN_RUN : 1;
+                if (index >= charset.length || length > remaining) {
+                    throw new IOException(CORRUPT_ERROR + filename);
+                }
+                remaining -= length;
+                while (length > 0) {
+                    int count = Math.min(length, columns - col);
+                    Arrays.fill(chars[row], col, col + count, charset[index]);
+                    length -= count;
+                    col += count;
+                    if (col == columns) {
+                        col = 0;
+                        row++;
+                    }
+                }
+            }
+            return chars;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            throw new IOException(CORRUPT_ERROR + filename, e);
+        }
+    }
+
+    // steps over every frame, checking the file header and that every frame lies within the file
+    private int[] indexFrames() throws IOException {
+        ByteBuffer data = file.duplicate();
+        byte[] magic = new byte[AsciiFrameFormat.MAGIC.length];
+        if (data.remaining() < AsciiFrameFormat.HEADER_BYTES) {
+            throw new IOException(NOT_A_FRAME_FILE_ERROR + filename);
+        }
+        data.get(magic);
+        if (!Arrays.equals(magic, AsciiFrameFormat.MAGIC) || data.get() != AsciiFrameFormat.VERSION) {
+            throw new IOException(NOT_A_FRAME_FILE_ERROR + filename);
+        }
+        int[] offsets = new int[0];
+        int count = 0;
+        try {
+            while (data.hasRemaining()) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, Math.max(1, 2 * count));
+                }
+                offsets[count++] = data.position();
+                int rows = data.getInt();
+                int columns = data.getInt();
+                int charsetLength = data.getInt();
+                if (rows < 0 || columns < 0 || charsetLength < 0) {
+                    throw new IOException(CORRUPT_ERROR + filename);
+                }
+                data.position(data.position() + charsetLength * Character.BYTES);
+                int packedLength = data.getInt();
+                data.position(data.position() + packedLength);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException(CORRUPT_ERROR + filename, e);
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Reads the cell packets of a frame, most significant bit first
+     */
+    private static class BitUnpacker {
+        private final ByteBuffer bytes;
+        private long pending;
+        private int pendingBits;
+
+        BitUnpacker(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        int read(int bits) {
+            while (pendingBits < bits) {
+                pending = pending << Byte.SIZE | (bytes.get() & 0xFF);
+                pendingBits += Byte.SIZE;
+            }
+            pendingBits -= bits;
+            return (int) (pending >>> pendingBits) & ((1 << bits) - 1);
+        }
+    }
+}
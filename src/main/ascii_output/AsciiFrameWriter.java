@@ -0,0 +1,161 @@
+package ascii_output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to a compact binary frame file, which {@link AsciiFrameReader} plays back
+ * without rendering again. Every output appends one frame to the file, so a file holds a whole sequence
+ * of renders. A frame keeps only the distinct chars it uses and stores every cell as an index into them,
+ * at as few bits as they need, with runs of the same char packed together, so the flat regions of the
+ * art cost a few bits per run instead of several bytes per cell as in HTML.
+ * Only the chars are kept; the colors of a color render are not.
+ */
+public class AsciiFrameWriter implements AsciiOutput, AsciiRowOutput {
+    private final String filename;
+    private char[][] frame; // the frame being written row by row
+    private int nextRow;
+
+    public AsciiFrameWriter(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * Creates a frame file with no frames, replacing the file if it exists
+     */
+    public static void create(String filename) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(filename)) {
+            writeHeader(out);
+        }
+    }
+
+    /**
+     * Encodes a 2D array of chars as a frame of a frame file
+     */
+    public static byte[] encodeFrame(char[][] chars) {
+        char[] charset = AsciiFrameFormat.distinctChars(chars);
+        int bits = AsciiFrameFormat.indexBits(charset.length);
+        BitPacker cells = new BitPacker();
+        char runChar = 0;
+        int runLength = 0;
+        for (char[] row : chars) {
+            for (char c : row) {
+                if (runLength > 0 && (c != runChar || runLength == AsciiFrameFormat.MAX_RUN)) {
+                    cells.writeRun(Arrays.binarySearch(charset, runChar), runLength, bits);
+                    runLength = 0;
+                }
+                runChar = c;
+                runLength++;
+            }
+        }
+        if (runLength > 0) {
+            cells.writeRun(Arrays.binarySearch(charset, runChar), runLength, bits);
+        }
+        byte[] packed = cells.toByteArray();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                3 * Integer.BYTES + charset.length * Character.BYTES + Integer.BYTES + packed.length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(chars.length);
+            out.writeInt(chars.length == 0 ? 0 : chars[0].length);
+            out.writeInt(charset.length);
+            for (char c : charset) {
+                out.writeChar(c);
+            }
+            out.writeInt(packed.length);
+            out.write(packed);
+        } catch (IOException e) {
+            throw new AssertionError(e); // memory streams do not fail
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        byte[] encoded = encodeFrame(chars);
+        File file = new File(filename);
+        boolean empty = file.length() == 0;
+        try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
+            if (empty) {
+                writeHeader(out);
+            }
+            out.write(encoded);
+        } catch (IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+
+    @Override
+    public void begin(int rows, int columns) {
+        frame = new char[rows][columns];
+        nextRow = 0;
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        System.arraycopy(row, 0, frame[nextRow], 0, frame[nextRow].length);
+        nextRow++;
+    }
+
+    @Override
+    public void end() {
+        if (frame == null) return;
+        // a cancelled render ends early: its frame keeps only the rows written, as an HTML page does,
+        // and a frame with no rows is not recorded
+        if (nextRow > 0) {
+            out(nextRow < frame.length ? Arrays.copyOf(frame, nextRow) : frame);
+        }
+        frame = null;
+    }
+
+    private static void writeHeader(OutputStream out) throws IOException {
+        out.write(AsciiFrameFormat.MAGIC);
+        out.write(AsciiFrameFormat.VERSION);
+    }
+
+    /**
+     * Packs the cell packets of a frame into bytes, most significant bit first
+     */
+    private static class BitPacker {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private long pending;
+        private int pendingBits;
+
+        void writeRun(int index, int length, int bits) {
+            if (length >= AsciiFrameFormat.MIN_RUN) {
+                write(1, 1);
+                write(index, bits);
+                write(length - AsciiFrameFormat.MIN_RUN, AsciiFrameFormat.RUN_BITS);
+                return;
+            }
+            for (int i = 0; i < length; i++) {
+                write(0, 1);
+                write(index, bits);
+            }
+        }
+
+        void write(int value, int bits) {
+            pending = pending << bits | value;
+            pendingBits += bits;
+            while (pendingBits >= Byte.SIZE) {
+                pendingBits -= Byte.SIZE;
+                bytes.write((int) (pending >>> pendingBits));
+            }
+        }
+
+        byte[] toByteArray() {
+            if (pendingBits > 0) {
+                bytes.write((int) (pending << (Byte.SIZE - pendingBits)));
+                pendingBits = 0;
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a 2D array of chars
+ * one row at a time, as the rows are produced.
+ */
+public interface AsciiRowOutput {
+    /**
+     * Starts the output of a 2D array of chars of the specified dimensions
+     */
+    void begin(int rows, int columns);
+
+    /**
+     * Output the next row. The array may be reused by the caller once this method returns
+     */
+    void writeRow(char[] row);
+
+    /**
+     * Ends the output, after the last row was written, or earlier if the rows stopped coming
+     */
+    void end();
+}
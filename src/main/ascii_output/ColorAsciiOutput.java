@@ -0,0 +1,30 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a 2D array of chars
+ * with every char tinted by its own color.
+ */
+public interface ColorAsciiOutput extends AsciiOutput {
+    /**
+     * Largest difference of any color channel between cells written as a single run of one color
+     */
+    int COLOR_TOLERANCE = 8;
+
+    /**
+     * Output the specified 2D array of chars, colors[y][x] being the color of chars[y][x] packed as
+     * 0xRRGGBB
+     */
+    void out(char[][] chars, int[][] colors);
+
+    /**
+     * Checks whether a cell of the given color can join a run of the given color
+     */
+    static boolean isSameRun(int runColor, int color) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            if (Math.abs(((runColor >> shift) & 0xFF) - ((color >> shift) & 0xFF)) > COLOR_TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
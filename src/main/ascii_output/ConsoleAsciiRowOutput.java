@@ -0,0 +1,28 @@
+package ascii_output;
+
+/**
+ * Output a 2D array of chars to the console, one row at a time.
+ * The result is identical to ConsoleAsciiOutput.
+ */
+public class ConsoleAsciiRowOutput implements AsciiRowOutput {
+    private StringBuilder line;
+
+    @Override
+    public void begin(int rows, int columns) {
+        line = new StringBuilder(2 * columns);
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        line.setLength(0);
+        for (char c : row) {
+            line.append(c).append(' ');
+        }
+        System.out.println(line);
+    }
+
+    @Override
+    public void end() {
+        System.out.flush();
+    }
+}
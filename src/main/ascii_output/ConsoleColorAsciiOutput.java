@@ -0,0 +1,35 @@
+package ascii_output;
+
+/**
+ * Output a 2D array of chars to the console, tinted with 24-bit ANSI colors.
+ * Adjacent chars of nearly the same color share a single color escape sequence.
+ */
+public class ConsoleColorAsciiOutput implements ColorAsciiOutput {
+    private static final String COLOR_FORMAT = "\u001b[38;2;%d;%d;%dm";
+    private static final String RESET = "\u001b[0m";
+
+    @Override
+    public void out(char[][] chars) {
+        new ConsoleAsciiOutput().out(chars);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        StringBuilder line = new StringBuilder();
+        for (int y = 0; y < chars.length; y++) {
+            line.setLength(0);
+            int runColor = -1;
+            for (int x = 0; x < chars[y].length; x++) {
+                int color = colors[y][x];
+                if (runColor < 0 || !ColorAsciiOutput.isSameRun(runColor, color)) {
+                    runColor = color;
+                    line.append(String.format(COLOR_FORMAT, (color >> 16) & 0xFF, (color >> 8) & 0xFF,
+                            color & 0xFF));
+                }
+                line.append(chars[y][x]).append(' ');
+            }
+            line.append(RESET);
+            System.out.println(line);
+        }
+    }
+}
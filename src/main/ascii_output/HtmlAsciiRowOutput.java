@@ -0,0 +1,103 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to an HTML file viewable in a web browser, one row at a time.
+ * The result is identical to HtmlAsciiOutput.
+ */
+public class HtmlAsciiRowOutput implements AsciiRowOutput {
+    private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_FONT_SIZE = 150.0;
+    /** closes the page opened by pagePrefix */
+    static final String PAGE_SUFFIX =
+        "</p>\n"+
+        "</body>\n"+
+        "</html>\n";
+
+    private final String fontName;
+    private final String filename;
+    private BufferedWriter writer;
+
+    public HtmlAsciiRowOutput(String filename, String fontName) {
+        this.fontName = fontName;
+        this.filename = filename;
+    }
+
+    @Override
+    public void begin(int rows, int columns) {
+        try {
+            writer = new BufferedWriter(new FileWriter(filename));
+            writer.write(pagePrefix(fontName, columns));
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void writeRow(char[] row) {
+        if (writer == null) return;
+        try {
+            for (char c : row) {
+                switch(c) {
+                    case '<': writer.write("&lt;");  break;
+                    case '>': writer.write("&gt;");  break;
+                    case '&': writer.write("&amp;"); break;
+                    default:  writer.write(c);
+                }
+            }
+            writer.newLine();
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void end() {
+        if (writer == null) return;
+        try {
+            writer.write(PAGE_SUFFIX);
+            writer.close();
+        } catch(IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+        writer = null;
+    }
+
+    /**
+     * The page markup that precedes the first row, the same page HtmlAsciiOutput writes, shared
+     * by the HTML outputs of this package.
+     * @param fontName the font the rows are drawn in
+     * @param columns the number of chars in every row
+     * @return the markup up to and including the opening of the row paragraph
+     */
+    static String pagePrefix(String fontName, int columns) {
+        return String.format(
+            "<!DOCTYPE html>\n"+
+            "<html>\n"+
+            "<body style=\""+
+                "\tCOLOR:#000000;"+
+                "\tTEXT-ALIGN:center;"+
+                "\tFONT-SIZE:1px;\">\n"+
+            "<p style=\""+
+                "\twhite-space:pre;"+
+                "\tFONT-FAMILY:%s;"+
+                "\tFONT-SIZE:%frem;"+
+                "\tLETTER-SPACING:0.15em;"+
+                "\tLINE-HEIGHT:%fem;\">\n",
+                fontName, BASE_FONT_SIZE/columns, BASE_LINE_SPACING);
+    }
+
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        try {
+            if (writer != null) writer.close();
+        } catch(IOException ignored) {
+            // already reported
+        }
+        writer = null;
+    }
+}
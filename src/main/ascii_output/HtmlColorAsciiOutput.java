@@ -0,0 +1,55 @@
+package ascii_output;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+/**
+ * Output a 2D array of chars to an HTML file viewable in a web browser, every char tinted with its
+ * own color. Adjacent chars of nearly the same color share a single span.
+ */
+public class HtmlColorAsciiOutput implements ColorAsciiOutput {
+    private final String fontName;
+    private final String filename;
+
+    public HtmlColorAsciiOutput(String filename, String fontName) {
+        this.fontName = fontName;
+        this.filename = filename;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        new HtmlAsciiOutput(filename, fontName).out(chars);
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            writer.write(HtmlAsciiRowOutput.pagePrefix(fontName, chars[0].length));
+
+            for(int y = 0 ; y < chars.length ; y++) {
+                int runColor = -1;
+                for (int x = 0; x < chars[y].length ; x++) {
+                    int color = colors[y][x];
+                    if (runColor < 0 || !ColorAsciiOutput.isSameRun(runColor, color)) {
+                        if (runColor >= 0) writer.write("</span>");
+                        runColor = color;
+                        writer.write(String.format("<span style=\"color:#%06x\">", color));
+                    }
+                    switch(chars[y][x]) {
+                        case '<': writer.write("&lt;");  break;
+                        case '>': writer.write("&gt;");  break;
+                        case '&': writer.write("&amp;"); break;
+                        default:  writer.write(chars[y][x]);
+                    }
+                }
+                if (runColor >= 0) writer.write("</span>");
+                writer.newLine();
+            }
+            writer.write(HtmlAsciiRowOutput.PAGE_SUFFIX);
+        } catch(IOException e) {
+            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A grid of normalized brightness values, stored off-heap as 32-bit floats in one contiguous
+ * row-major buffer.
+ * <p>
+ * Compared to a double[][] this halves the memory per cell, keeps the whole grid in a single
+ * allocation instead of one heap object per row, and keeps the values out of the garbage-collected
+ * heap, so caching many grids adds no GC pressure. A float keeps 24 bits of precision, far more than
+ * the 8 bits the charset brightness levels can tell apart, so character choice is unaffected.
+ * <p>
+ * The grid also keeps a histogram of its values, counted as they are set, so whoever fills the grid
+ * gathers the histogram in the same pass. A grid is filled by one thread, setting every cell once, and
+ * only read afterwards.
+ * <p>
+ * The grid has an explicit lifetime: {@link #close()} drops the buffer, after which any access throws.
+ * The off-heap memory itself is returned once the buffer becomes unreachable.
+ */
+public final class BrightnessGrid implements AutoCloseable {
+
+	/**
+	 * Number of equal-width bins the histogram splits [0,1] into.
+	 */
+	public static final int HISTOGRAM_BINS = 256;
+
+	private static final String CLOSED_ERROR = "Brightness grid was closed";
+	private static final String TOO_LARGE_ERROR = "Did not render since the brightness grid is too large.";
+
+	private final int rows;
+	private final int columns;
+	private FloatBuffer values;
+	private final int[] histogram = new int[HISTOGRAM_BINS]; // counts of the values in every bin
+
+	/**
+	 * Allocates a grid of the given dimensions, filled with zeros.
+	 *
+	 * @param rows    number of rows
+	 * @param columns number of columns
+	 * @throws IllegalStateException if the grid takes more bytes than a buffer holds
+	 */
+	public BrightnessGrid(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		long size = (long) rows * columns * Float.BYTES;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException(TOO_LARGE_ERROR);
+		}
+		this.values = ByteBuffer.allocateDirect((int) size)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+	}
+
+	/**
+	 * Rounds a brightness to the float a grid stores it as. Brightness computed for a tile without
+	 * storing it in a grid is rounded the same way before it is matched, so every tile maps to the same
+	 * character whichever path found its brightness.
+	 *
+	 * @param brightness brightness in [0,1]
+	 * @return the brightness as a grid holds it
+	 */
+	public static double round(double brightness) {
+		return (float) brightness;
+	}
+
+	/**
+	 * Gets the number of rows.
+	 *
+	 * @return number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of columns.
+	 *
+	 * @return number of columns
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Gets the brightness of a cell.
+	 *
+	 * @param row    row index
+	 * @param column column index
+	 * @return brightness in [0,1]
+	 * @throws IllegalStateException if the grid was closed
+	 */
+	public double get(int row, int column) {
+		return buffer().get(row * columns + column);
+	}
+
+	/**
+	 * Sets the brightness of a cell, which must not have been set since the histogram was last cleared.
+	 *
+	 * @param row        row index
+	 * @param column     column index
+	 * @param brightness brightness in [0,1]
+	 * @throws IllegalStateException if the grid was closed
+	 */
+	public void set(int row, int column, double brightness) {
+		float value = (float) brightness;
+		buffer().put(row * columns + column, value);
+		histogram[binOf(value)]++;
+	}
+
+	/**
+	 * Empties the histogram, so that a grid reused for new values can have every cell set once again.
+	 */
+	public void clearHistogram() {
+		Arrays.fill(histogram, 0);
+	}
+
+	/**
+	 * Gets the histogram of the values in the grid.
+	 *
+	 * @return the number of values set in each of {@value #HISTOGRAM_BINS} equal-width bins of [0,1]
+	 */
+	public int[] getHistogram() {
+		return histogram.clone();
+	}
+
+	// Helper: the histogram bin of a value, 1.0 falling in the last bin
+	private static int binOf(float value) {
+		return Math.min(HISTOGRAM_BINS - 1, Math.max(0, (int) (value * HISTOGRAM_BINS)));
+	}
+
+	/**
+	 * Gets the number of off-heap bytes held by the grid.
+	 *
+	 * @return size in bytes, 0 once closed
+	 */
+	public long getByteSize() {
+		return values == null ? 0 : (long) rows * columns * Float.BYTES;
+	}
+
+	/**
+	 * Releases the grid. Closing an already closed grid does nothing.
+	 */
+	@Override
+	public void close() {
+		values = null;
+	}
+
+	private FloatBuffer buffer() {
+		FloatBuffer buffer = values;
+		if (buffer == null) {
+			throw new IllegalStateException(CLOSED_ERROR);
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,256 @@
+package image;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * A mip pyramid of normalized brightness values of an image padded to power-of-two dimensions.
+ * Level k holds the average brightness of every square tile of 2^k pixels of the padded image.
+ * <p>
+ * Levels are built on first use, so a pyramid only ever holds the tile sizes asked for. A missing
+ * level is averaged from a finer level if one was built already, and computed straight from the tiles
+ * of the image otherwise, one row of tiles at a time, without padding the image or storing the
+ * brightness of single pixels. Every level computed from the tiles reads every pixel, so the previews
+ * of a progressive render are not built as levels: they are sampled from a few pixels of every tile,
+ * unless a level they can be averaged from is built already, and the pixels are only read in full
+ * for the level the render itself needs.
+ * Levels are off-heap {@link BrightnessGrid}s, released together by {@link #close()}.
+ */
+public class BrightnessPyramid implements AutoCloseable {
+
+	private static final String BAD_RESOLUTION_ERROR = "No pyramid level for this resolution";
+	// Pixels sampled along each side of a tile of a preview
+	private static final int PREVIEW_SAMPLES = 4;
+
+	private final Image image;
+	private final Function<Color, Double> brightnessFunction;
+	private final int width;
+	private final int height;
+	// levels[k] holds (height >> k) rows of (width >> k) values, or is null until it is built
+	private final BrightnessGrid[] levels;
+
+	/**
+	 * Creates the pyramid of the given image, without building any level yet.
+	 *
+	 * @param img                the original image, padded as
+	 *                           {@link ImageProcessor#padToPowerOfTwo(Image)} pads it
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 */
+	public BrightnessPyramid(Image img, Function<Color, Double> brightnessFunction) {
+		image = img;
+		this.brightnessFunction = brightnessFunction;
+		width = ImageProcessor.getPaddedWidth(img);
+		height = ImageProcessor.getPaddedHeight(img);
+		levels = new BrightnessGrid[Integer.numberOfTrailingZeros(Math.min(width, height)) + 1];
+	}
+
+	/**
+	 * Gets the smallest number of tiles per row the pyramid can provide, where a tile spans the whole
+	 * image height.
+	 *
+	 * @return minimal resolution
+	 */
+	public int getMinTilesPerRow() {
+		return width >> (levels.length - 1);
+	}
+
+	/**
+	 * Gets the largest number of tiles per row the pyramid can provide, one tile per pixel.
+	 *
+	 * @return maximal resolution
+	 */
+	public int getMaxTilesPerRow() {
+		return width;
+	}
+
+	/**
+	 * Gets the number of rows of square tiles at the given resolution.
+	 *
+	 * @param tilesPerRow number of tiles per row
+	 * @return number of rows of the grid of this resolution
+	 */
+	public int getRows(int tilesPerRow) {
+		return height / (width / tilesPerRow);
+	}
+
+	/**
+	 * Checks whether the grid of the given resolution was built already.
+	 *
+	 * @param tilesPerRow number of tiles per row
+	 * @return true if {@link #getGrid(int, Runnable)} returns without building the grid
+	 */
+	public synchronized boolean hasGrid(int tilesPerRow) {
+		return levels[levelOf(tilesPerRow)] != null;
+	}
+
+	/**
+	 * Returns the brightness grid of square tiles at the given resolution, which is the matching level
+	 * itself, building the level if it is missing. The grid is owned by the pyramid: it must not be
+	 * modified, and it is closed with it.
+	 *
+	 * @param tilesPerRow number of tiles per row, a power of two between {@link #getMinTilesPerRow()}
+	 *                    and {@link #getMaxTilesPerRow()}
+	 * @param onRow       called after every row of the level is built, may throw to abort
+	 * @return the grid of average tile brightness in [0,1]
+	 * @throws IllegalArgumentException if no level matches the resolution
+	 */
+	public synchronized BrightnessGrid getGrid(int tilesPerRow, Runnable onRow) {
+		int k = levelOf(tilesPerRow);
+		if (levels[k] == null) {
+			int finer = k - 1;
+			while (finer >= 0 && levels[finer] == null) {
+				finer--;
+			}
+			levels[k] = finer >= 0 ? averageLevel(levels[finer], k - finer, onRow) : sumTiles(k, onRow);
+		}
+		return levels[k];
+	}
+
+	/**
+	 * Returns a preview of the brightness grid of square tiles at the given resolution, without building
+	 * a level. If the level or a finer one was built already, the preview is averaged from it, exactly;
+	 * otherwise every tile is the average of {@value #PREVIEW_SAMPLES} by {@value #PREVIEW_SAMPLES}
+	 * evenly spaced pixels of it, so a coarse preview reads a small fraction of the pixels. The grid is
+	 * a new one, owned by the caller.
+	 *
+	 * @param tilesPerRow number of tiles per row, a power of two between {@link #getMinTilesPerRow()}
+	 *                    and {@link #getMaxTilesPerRow()}
+	 * @param onRow       called after every row of the preview is computed, may throw to abort
+	 * @return the grid of average tile brightness in [0,1]
+	 * @throws IllegalArgumentException if no level matches the resolution
+	 */
+	public synchronized BrightnessGrid getPreviewGrid(int tilesPerRow, Runnable onRow) {
+		int k = levelOf(tilesPerRow);
+		for (int finer = k; finer >= 0; finer--) {
+			if (levels[finer] != null) {
+				return averageLevel(levels[finer], k - finer, onRow);
+			}
+		}
+		return sampleTiles(k, onRow);
+	}
+
+	// Helper: the level of a resolution
+	private int levelOf(int tilesPerRow) {
+		if (Integer.bitCount(tilesPerRow) != 1 || tilesPerRow < getMinTilesPerRow()
+				|| tilesPerRow > getMaxTilesPerRow()) {
+			throw new IllegalArgumentException(BAD_RESOLUTION_ERROR);
+		}
+		return Integer.numberOfTrailingZeros(width / tilesPerRow);
+	}
+
+	// Helper: computes a level from the pixels, summing the rows of every row of tiles in order, so each
+	// tile is exactly as bright as ImageProcessor.computeBrightness finds it in the padded image
+	private BrightnessGrid sumTiles(int k, Runnable onRow) {
+		int tileDimension = 1 << k;
+		BrightnessGrid level = new BrightnessGrid(height >> k, width >> k);
+		double[] tileSums = new double[width >> k];
+		boolean complete = false;
+		try {
+			for (int row = 0; row < level.getRows(); row++) {
+				Arrays.fill(tileSums, 0.0);
+				for (int y = row * tileDimension; y < (row + 1) * tileDimension; y++) {
+					ImageProcessor.addRowToTileSums(image, y, tileDimension, brightnessFunction,
+							tileSums);
+				}
+				for (int col = 0; col < tileSums.length; col++) {
+					level.set(row, col, tileSums[col] / (tileDimension * tileDimension * 255.0));
+				}
+				onRow.run();
+			}
+			complete = true;
+			return level;
+		} finally {
+			if (!complete) {
+				level.close();
+			}
+		}
+	}
+
+	// Helper: estimates a level from evenly spaced pixels of every tile, the centers of a grid of
+	// PREVIEW_SAMPLES by PREVIEW_SAMPLES blocks of the tile, or every pixel of smaller tiles
+	private BrightnessGrid sampleTiles(int k, Runnable onRow) {
+		int tileDimension = 1 << k;
+		int samples = Math.min(PREVIEW_SAMPLES, tileDimension);
+		int step = tileDimension / samples;
+		BrightnessGrid grid = new BrightnessGrid(height >> k, width >> k);
+		boolean complete = false;
+		try {
+			for (int row = 0; row < grid.getRows(); row++) {
+				for (int col = 0; col < grid.getColumns(); col++) {
+					double sum = 0.0;
+					for (int sy = 0; sy < samples; sy++) {
+						for (int sx = 0; sx < samples; sx++) {
+							sum += ImageProcessor.paddedPixelBrightness(image, row * tileDimension
+									+ sy * step + step / 2, col * tileDimension + sx * step + step / 2,
+									brightnessFunction);
+						}
+					}
+					grid.set(row, col, sum / (samples * samples * 255.0));
+				}
+				onRow.run();
+			}
+			complete = true;
+			return grid;
+		} finally {
+			if (!complete) {
+				grid.close();
+			}
+		}
+	}
+
+	// Helper: computes a level by averaging the blocks of a finer level, 2^levelsUp tiles a side
+	private BrightnessGrid averageLevel(BrightnessGrid finer, int levelsUp, Runnable onRow) {
+		int span = 1 << levelsUp;
+		BrightnessGrid level = new BrightnessGrid(finer.getRows() >> levelsUp,
+				finer.getColumns() >> levelsUp);
+		boolean complete = false;
+		try {
+			for (int row = 0; row < level.getRows(); row++) {
+				for (int col = 0; col < level.getColumns(); col++) {
+					double sum = 0.0;
+					for (int y = row * span; y < (row + 1) * span; y++) {
+						for (int x = col * span; x < (col + 1) * span; x++) {
+							sum += finer.get(y, x);
+						}
+					}
+					level.set(row, col, sum / (span * span));
+				}
+				onRow.run();
+			}
+			complete = true;
+			return level;
+		} finally {
+			if (!complete) {
+				level.close();
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of off-heap bytes held by the levels built so far.
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getByteSize() {
+		long size = 0;
+		for (BrightnessGrid level : levels) {
+			if (level != null) {
+				size += level.getByteSize();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Releases all the levels.
+	 */
+	@Override
+	public synchronized void close() {
+		for (BrightnessGrid level : levels) {
+			if (level != null) {
+				level.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * The Sobel gradient of an image's luma at every pixel, stored off-heap as two 32-bit float planes.
+ * Gradients are normalized so a step from black to white gives a magnitude of 1.
+ * <p>
+ * The 3x3 Sobel kernels are separable, so the field is built in two passes of three taps each: every
+ * luma row is differenced and smoothed horizontally, and the vertical pass combines the three rows
+ * around each output row. The image is split into row bands convolved in parallel; every band keeps a
+ * rolling window of three rows in buffers allocated once, so no memory is allocated per row or pixel.
+ * Pixels outside the image repeat the nearest edge pixel.
+ * <p>
+ * Like {@link BrightnessGrid}, the field has an explicit lifetime: {@link #close()} drops the planes.
+ */
+public final class GradientField implements AutoCloseable {
+
+	private static final String CLOSED_ERROR = "Gradient field was closed";
+	private static final String TOO_LARGE_ERROR = "Did not render since the gradient field is too large.";
+	// A Sobel kernel sums to 4 on either side, over luma in [0,255]
+	private static final double NORMALIZATION = 1.0 / (4 * 255.0);
+	// Bands shorter than this are not worth a task of their own
+	private static final int MIN_BAND_ROWS = 16;
+
+	private final int width;
+	private final int height;
+	private FloatBuffer gx;
+	private FloatBuffer gy;
+
+	/**
+	 * Builds the gradient field of the given image.
+	 *
+	 * @param img   the image, typically padded (see {@link ImageProcessor#padToPowerOfTwo(Image)})
+	 * @param onRow called after every output row, from the thread that computed it; may throw to abort
+	 */
+	public GradientField(Image img, Runnable onRow) {
+		this.width = img.getWidth();
+		this.height = img.getHeight();
+		this.gx = allocate(width, height);
+		this.gy = allocate(width, height);
+		int processors = Runtime.getRuntime().availableProcessors();
+		int bands = Math.max(1, Math.min(processors, height / MIN_BAND_ROWS));
+		IntStream.range(0, bands).parallel().forEach(band ->
+				convolveBand(img, height * band / bands, height * (band + 1) / bands, onRow));
+	}
+
+	/**
+	 * Gets the width of the field.
+	 *
+	 * @return width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the field.
+	 *
+	 * @return height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the horizontal gradient at a pixel, positive where luma grows to the right.
+	 *
+	 * @param y row index
+	 * @param x column index
+	 * @return normalized horizontal gradient
+	 * @throws IllegalStateException if the field was closed
+	 */
+	public float getGx(int y, int x) {
+		return plane(gx).get(y * width + x);
+	}
+
+	/**
+	 * Gets the vertical gradient at a pixel, positive where luma grows downwards.
+	 *
+	 * @param y row index
+	 * @param x column index
+	 * @return normalized vertical gradient
+	 * @throws IllegalStateException if the field was closed
+	 */
+	public float getGy(int y, int x) {
+		return plane(gy).get(y * width + x);
+	}
+
+	/**
+	 * Gets the number of off-heap bytes held by the field.
+	 *
+	 * @return size in bytes, 0 once closed
+	 */
+	public long getByteSize() {
+		return gx == null ? 0 : 2L * width * height * Float.BYTES;
+	}
+
+	/**
+	 * Releases the field. Closing an already closed field does nothing.
+	 */
+	@Override
+	public void close() {
+		gx = null;
+		gy = null;
+	}
+
+	// Helper: convolves rows [fromY, toY), keeping the horizontal passes of rows y - 1, y and y + 1
+	private void convolveBand(Image img, int fromY, int toY, Runnable onRow) {
+		FloatBuffer gxPlane = plane(gx);
+		FloatBuffer gyPlane = plane(gy);
+		float[] luma = new float[width];
+		// difference and smoothing of the rows above, at and below the current row, rotated as rows advance
+		float[][] differences = new float[3][width];
+		float[][] smoothings = new float[3][width];
+		horizontalPass(img, Math.max(0, fromY - 1), luma, differences[0], smoothings[0]);
+		horizontalPass(img, fromY, luma, differences[1], smoothings[1]);
+		for (int y = fromY; y < toY; y++) {
+			horizontalPass(img, Math.min(height - 1, y + 1), luma, differences[2], smoothings[2]);
+			float[] above = differences[0];
+			float[] at = differences[1];
+			float[] below = differences[2];
+			float[] smoothAbove = smoothings[0];
+			float[] smoothBelow = smoothings[2];
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				gxPlane.put(offset + x, (float) ((above[x] + 2 * at[x] + below[x]) * NORMALIZATION));
+				gyPlane.put(offset + x, (float) ((smoothBelow[x] - smoothAbove[x]) * NORMALIZATION));
+			}
+			differences[0] = at;
+			differences[1] = below;
+			differences[2] = above;
+			smoothings[0] = smoothings[1];
+			smoothings[1] = smoothBelow;
+			smoothings[2] = smoothAbove;
+			onRow.run();
+		}
+	}
+
+	// Helper: reads a row's luma and computes its horizontal difference and smoothing
+	private void horizontalPass(Image img, int y, float[] luma, float[] difference, float[] smoothing) {
+		for (int x = 0; x < width; x++) {
+			luma[x] = (float) ImageProcessor.pixelBrightness(img, y, x, ImageProcessor.DEFAULT_BRIGHTNESS);
+		}
+		int last = width - 1;
+		for (int x = 0; x < width; x++) {
+			float left = luma[Math.max(0, x - 1)];
+			float right = luma[Math.min(last, x + 1)];
+			difference[x] = right - left;
+			smoothing[x] = left + 2 * luma[x] + right;
+		}
+	}
+
+	private static FloatBuffer allocate(int width, int height) {
+		long size = (long) width * height * Float.BYTES;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalStateException(TOO_LARGE_ERROR);
+		}
+		return ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder()).asFloatBuffer();
+	}
+
+	private FloatBuffer plane(FloatBuffer plane) {
+		if (plane == null) {
+			throw new IllegalStateException(CLOSED_ERROR);
+		}
+		return plane;
+	}
+}
@@ -8,31 +8,50 @@ import java.io.IOException;
 
 /**
  * A package-private class of the package image.
+ * Pixels are stored packed as 0xAARRGGBB ints, row by row.
  *
  * @author Dan Nirel
  */
 public class Image {
 
-	private final Color[][] pixelArray;
+	private final int[] pixels;
 	private final int width;
 	private final int height;
 
+	/**
+	 * Decodes an image file with the first {@link ImageDecoder} that accepts it.
+	 *
+	 * @param filename path of the image file
+	 * @throws IOException if the file cannot be read or decoded
+	 * @see ImageDecoders
+	 */
 	public Image(String filename) throws IOException {
-		BufferedImage im = ImageIO.read(new File(filename));
-		width = im.getWidth();
-		height = im.getHeight();
-
+		Image decoded = ImageDecoders.decode(filename);
+		width = decoded.width;
+		height = decoded.height;
+		pixels = decoded.pixels;
+	}
 
-		pixelArray = new Color[height][width];
+	public Image(Color[][] pixelArray, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width * height];
 		for (int i = 0; i < height; i++) {
 			for (int j = 0; j < width; j++) {
-				pixelArray[i][j] = new Color(im.getRGB(j, i));
+				pixels[i * width + j] = pixelArray[i][j].getRGB();
 			}
 		}
 	}
 
-	public Image(Color[][] pixelArray, int width, int height) {
-		this.pixelArray = pixelArray;
+	/**
+	 * Wraps packed pixels without copying them.
+	 *
+	 * @param pixels packed 0xAARRGGBB pixels, row by row, owned by the image from now on
+	 * @param width  width in pixels
+	 * @param height height in pixels
+	 */
+	public Image(int[] pixels, int width, int height) {
+		this.pixels = pixels;
 		this.width = width;
 		this.height = height;
 	}
@@ -46,19 +65,24 @@ public class Image {
 	}
 
 	public Color getPixel(int x, int y) {
-		return pixelArray[x][y];
+		return new Color(pixels[x * width + y]);
+	}
+
+	/**
+	 * Gets a pixel without creating a Color object.
+	 *
+	 * @param x row index
+	 * @param y column index
+	 * @return the packed 0xAARRGGBB pixel
+	 */
+	public int getRGB(int x, int y) {
+		return pixels[x * width + y];
 	}
 
 	public void saveImage(String fileName) {
-		// Initialize BufferedImage, assuming Color[][] is already properly populated.
-		BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
-				BufferedImage.TYPE_INT_RGB);
-		// Set each pixel of the BufferedImage to the color from the Color[][].
-		for (int x = 0; x < pixelArray.length; x++) {
-			for (int y = 0; y < pixelArray[x].length; y++) {
-				bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-			}
-		}
+		// Initialize BufferedImage, assuming the pixels are already properly populated.
+		BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		bufferedImage.setRGB(0, 0, width, height, pixels, 0, width);
 		File outputfile = new File(fileName + ".jpeg");
 		try {
 			ImageIO.write(bufferedImage, "jpeg", outputfile);
@@ -0,0 +1,67 @@
+package image;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes an image file into an {@link Image}.
+ * Decoders are looked up by {@link ImageDecoders}: additional decoders can be plugged in by listing them
+ * in META-INF/services/image.ImageDecoder, and are tried before the built-in ones.
+ */
+public interface ImageDecoder {
+
+	/**
+	 * Checks whether this decoder can read the given file.
+	 *
+	 * @param filename path of the image file
+	 * @param header   the first bytes of the file (possibly fewer than {@link ImageDecoders#HEADER_SIZE}
+	 *                 for short files), positioned at 0; must not be modified
+	 * @return true if {@link #decode(String)} should be used for the file
+	 */
+	boolean canDecode(String filename, ByteBuffer header);
+
+	/**
+	 * Decodes the given file.
+	 *
+	 * @param filename path of the image file
+	 * @return the decoded image
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	Image decode(String filename) throws IOException;
+
+	/**
+	 * Reads the dimensions of the image without decoding its pixels, if the format allows it.
+	 * The default implementation decodes the whole image.
+	 *
+	 * @param filename path of the image file
+	 * @return width and height in pixels
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	default Dimension readDimensions(String filename) throws IOException {
+		Image image = decode(filename);
+		return new Dimension(image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Decodes a horizontal band of rows of the given file, for callers that only need part of a huge
+	 * image. The default implementation decodes the whole image and copies the band out of it.
+	 *
+	 * @param filename path of the image file
+	 * @param firstRow first row of the band
+	 * @param rows     number of rows in the band, within the image
+	 * @return the band, as wide as the image and rows high
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	default Image decodeRows(String filename, int firstRow, int rows) throws IOException {
+		Image image = decode(filename);
+		int width = image.getWidth();
+		int[] pixels = new int[Math.multiplyExact(width, rows)];
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < width; x++) {
+				pixels[y * width + x] = image.getRGB(firstRow + y, x);
+			}
+		}
+		return new Image(pixels, width, rows);
+	}
+}
@@ -0,0 +1,107 @@
+package image;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * The registry of image decoders.
+ * Decoders registered through {@link ServiceLoader} are tried first, then the built-in decoders of
+ * binary PPM/PGM and headerless raw RGB/gray files, and finally ImageIO, which handles JPEG, PNG and
+ * the other formats it knows.
+ */
+public final class ImageDecoders {
+
+	/**
+	 * Number of leading bytes of a file passed to {@link ImageDecoder#canDecode(String, ByteBuffer)}.
+	 */
+	public static final int HEADER_SIZE = 16;
+
+	private static final String NO_DECODER_ERROR = "No decoder can read ";
+	private static final String UNREADABLE_ERROR = "Can't read input file: ";
+
+	private static final List<ImageDecoder> DECODERS = loadDecoders();
+
+	private ImageDecoders() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Decodes a file with the first decoder that accepts it.
+	 *
+	 * @param filename path of the image file
+	 * @return the decoded image
+	 * @throws IOException if the file cannot be read, is malformed, or no decoder accepts it
+	 */
+	public static Image decode(String filename) throws IOException {
+		return findDecoder(filename).decode(filename);
+	}
+
+	/**
+	 * Reads the dimensions of an image file with the first decoder that accepts it, which is usually
+	 * much faster than decoding it.
+	 *
+	 * @param filename path of the image file
+	 * @return width and height in pixels
+	 * @throws IOException if the file cannot be read, is malformed, or no decoder accepts it
+	 */
+	public static Dimension readDimensions(String filename) throws IOException {
+		return findDecoder(filename).readDimensions(filename);
+	}
+
+	/**
+	 * Decodes a horizontal band of rows of an image file with the first decoder that accepts it. The
+	 * built-in decoders read only the band, or for ImageIO formats keep only the band, so a huge image
+	 * can be processed by several processes, each holding its own band.
+	 *
+	 * @param filename path of the image file
+	 * @param firstRow first row of the band
+	 * @param rows     number of rows in the band, within the image
+	 * @return the band, as wide as the image and rows high
+	 * @throws IOException if the file cannot be read, is malformed, or no decoder accepts it
+	 */
+	public static Image decodeRows(String filename, int firstRow, int rows) throws IOException {
+		return findDecoder(filename).decodeRows(filename, firstRow, rows);
+	}
+
+	private static ImageDecoder findDecoder(String filename) throws IOException {
+		ByteBuffer header = readHeader(filename);
+		for (ImageDecoder decoder : DECODERS) {
+			if (decoder.canDecode(filename, header.duplicate())) {
+				return decoder;
+			}
+		}
+		throw new IOException(NO_DECODER_ERROR + filename);
+	}
+
+	private static ByteBuffer readHeader(String filename) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// keep reading until the header is full or the file ends
+			}
+		} catch (NoSuchFileException | AccessDeniedException e) {
+			throw new IOException(UNREADABLE_ERROR + filename, e);
+		}
+		return header.flip().asReadOnlyBuffer();
+	}
+
+	private static List<ImageDecoder> loadDecoders() {
+		List<ImageDecoder> decoders = new ArrayList<>();
+		for (ImageDecoder decoder : ServiceLoader.load(ImageDecoder.class)) {
+			decoders.add(decoder);
+		}
+		decoders.add(new PnmDecoder());
+		decoders.add(new RawDecoder());
+		decoders.add(new ImageIODecoder()); //accepts anything, so it must stay last
+		return List.copyOf(decoders);
+	}
+}
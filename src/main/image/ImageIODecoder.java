@@ -0,0 +1,100 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+/**
+ * Decodes every format ImageIO supports, such as JPEG and PNG. Used as the last resort decoder.
+ */
+class ImageIODecoder implements ImageDecoder {
+
+	private static final String UNSUPPORTED_ERROR = "Unsupported image format: ";
+	private static final String UNREADABLE_ERROR = "Can't read input file: ";
+	private static final int OPAQUE = 0xFF000000;
+
+	@Override
+	public boolean canDecode(String filename, ByteBuffer header) {
+		return true;
+	}
+
+	@Override
+	public Image decode(String filename) throws IOException {
+		BufferedImage im = ImageIO.read(new File(filename));
+		if (im == null) {
+			throw new IOException(UNSUPPORTED_ERROR + filename);
+		}
+		return toImage(im);
+	}
+
+	@Override
+	public Dimension readDimensions(String filename) throws IOException {
+		try (ImageInputStream input = openInput(filename)) {
+			// only the header is parsed, the pixels are never decoded
+			ImageReader reader = findReader(input, filename);
+			try {
+				reader.setInput(input, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	@Override
+	public Image decodeRows(String filename, int firstRow, int rows) throws IOException {
+		try (ImageInputStream input = openInput(filename)) {
+			ImageReader reader = findReader(input, filename);
+			try {
+				reader.setInput(input, true, true);
+				// rows after the band are never decoded, and rows before it are not kept
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(new Rectangle(0, firstRow, reader.getWidth(0), rows));
+				return toImage(reader.read(0, param));
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	// Helper to open the file as an image input stream
+	private static ImageInputStream openInput(String filename) throws IOException {
+		File file = new File(filename);
+		if (!file.canRead()) {
+			throw new IOException(UNREADABLE_ERROR + filename);
+		}
+		ImageInputStream input = ImageIO.createImageInputStream(file);
+		if (input == null) {
+			throw new IOException(UNSUPPORTED_ERROR + filename);
+		}
+		return input;
+	}
+
+	// Helper to find a reader of the stream's format
+	private static ImageReader findReader(ImageInputStream input, String filename) throws IOException {
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext()) {
+			throw new IOException(UNSUPPORTED_ERROR + filename);
+		}
+		return readers.next();
+	}
+
+	// Helper to convert a decoded image to packed opaque pixels
+	private static Image toImage(BufferedImage im) {
+		int width = im.getWidth();
+		int height = im.getHeight();
+		// one bulk conversion to packed sRGB instead of a call per pixel
+		int[] pixels = im.getRGB(0, 0, width, height, null, 0, width);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] |= OPAQUE; //alpha is ignored, as Color(int) does
+		}
+		return new Image(pixels, width, height);
+	}
+}
@@ -1,6 +1,7 @@
 package image;
 
 import java.awt.*;
+import java.util.Arrays;
 import java.util.function.Function;
 
 /**
@@ -17,6 +18,12 @@ public class ImageProcessor {
 	public static final Function<Color, Double> DEFAULT_BRIGHTNESS = c ->
 			0.2126 * c.getRed() + 0.7152 * c.getGreen() + 0.0722 * c.getBlue();
 
+	// Color of the padding added around images, packed as Image stores it
+	private static final int WHITE_RGB = new Color(255, 255, 255).getRGB();
+	// Red, green and blue sums of the tile being averaged, one array per thread so averaging allocates
+	// nothing
+	private static final ThreadLocal<long[]> CHANNEL_SUMS = ThreadLocal.withInitial(() -> new long[3]);
+
 	private ImageProcessor() {
 		// prevent instantiation
 	}
@@ -81,25 +88,157 @@ public class ImageProcessor {
 			return img;
 		}
 
-		Color[][] newPixels = new Color[newHeight][newWidth];
+		int[] newPixels = new int[newWidth * newHeight];
+		// Fill padding with white, then copy the original rows shifted into the middle
+		Arrays.fill(newPixels, WHITE_RGB);
+		for (int y = 0; y < height; y++) {
+			copyRow(img, y, newPixels, (y + offsetY) * newWidth + offsetX);
+		}
 
+		return new Image(newPixels, newWidth, newHeight);
+	}
 
-		// Fill padding with white
-		Color white = new Color(255, 255, 255);
-		for (int y = 0; y < newHeight; y++) {
-			for (int x = 0; x < newWidth; x++) {
-				if (y < offsetY || y >= offsetY + height ||
-						x < offsetX || x >= offsetX + width) {
-					// Outside original-image region → padding
-					newPixels[y][x] = white;
-				} else {
-					// Inside original-image region → copy shifted pixel
-					newPixels[y][x] = img.getPixel(y - offsetY, x - offsetX);
+	/**
+	 * Returns a horizontal band of the image as padToPowerOfTwo would pad it, without padding the rest of
+	 * the image. Rows of the band that fall in the padding are white.
+	 *
+	 * @param img        the original image
+	 * @param startY     first row of the band, in padded coordinates
+	 * @param bandHeight number of rows in the band
+	 * @return a new Image of the padded width and bandHeight rows
+	 */
+	public static Image padBand(Image img, int startY, int bandHeight) {
+		int newWidth = getPaddedWidth(img);
+		int[] bandPixels = new int[newWidth * bandHeight];
+		fillBand(img, startY, bandHeight, bandPixels);
+		return new Image(bandPixels, newWidth, bandHeight);
+	}
+
+	/**
+	 * Copies a horizontal band of the image, padded as padBand pads it, into the given pixels, for
+	 * callers that reuse one buffer for every band.
+	 *
+	 * @param img        the original image
+	 * @param startY     first row of the band, in padded coordinates
+	 * @param bandHeight number of rows in the band
+	 * @param bandPixels receives the band row by row, at least the padded width times bandHeight long
+	 */
+	public static void fillBand(Image img, int startY, int bandHeight, int[] bandPixels) {
+		fillBand(img, 0, img.getHeight(), startY, bandHeight, bandPixels);
+	}
+
+	/**
+	 * Returns a horizontal band of an image as padBand would pad it, from only the rows of the image the
+	 * band covers, for callers that decode those rows alone rather than the whole image.
+	 *
+	 * @param rows        consecutive rows of the original image, including every row the band covers
+	 * @param firstRow    the row of the original image the first of the rows is
+	 * @param imageHeight height of the original image
+	 * @param startY      first row of the band, in padded coordinates
+	 * @param bandHeight  number of rows in the band
+	 * @return a new Image of the padded width and bandHeight rows
+	 */
+	public static Image padBand(Image rows, int firstRow, int imageHeight, int startY, int bandHeight) {
+		int newWidth = getPaddedDimension(rows.getWidth());
+		int[] bandPixels = new int[newWidth * bandHeight];
+		fillBand(rows, firstRow, imageHeight, startY, bandHeight, bandPixels);
+		return new Image(bandPixels, newWidth, bandHeight);
+	}
+
+	// Helper to copy a padded band out of the rows of the image starting at firstRow
+	private static void fillBand(Image rows, int firstRow, int imageHeight, int startY, int bandHeight,
+								 int[] bandPixels) {
+		int width = rows.getWidth();
+		int newWidth = getPaddedDimension(width);
+		int offsetX = (newWidth - width) / 2;
+		int offsetY = (getPaddedDimension(imageHeight) - imageHeight) / 2;
+
+		Arrays.fill(bandPixels, 0, newWidth * bandHeight, WHITE_RGB);
+		for (int y = 0; y < bandHeight; y++) {
+			int sourceY = startY + y - offsetY;
+			if (sourceY >= 0 && sourceY < imageHeight) {
+				copyRow(rows, sourceY - firstRow, bandPixels, y * newWidth + offsetX);
+			}
+		}
+	}
+
+	/**
+	 * Returns a rectangular region of the image as padToPowerOfTwo would pad it, copying only the pixels
+	 * inside the region. Pixels of the region that fall in the padding are white.
+	 *
+	 * @param img          the original image
+	 * @param startY       first row of the region, in padded coordinates
+	 * @param startX       first column of the region, in padded coordinates
+	 * @param regionWidth  number of columns in the region
+	 * @param regionHeight number of rows in the region
+	 * @return a new Image of regionWidth columns and regionHeight rows
+	 */
+	public static Image padRegion(Image img, int startY, int startX, int regionWidth, int regionHeight) {
+		int[] regionPixels = new int[regionWidth * regionHeight];
+		fillRegion(img, startY, startX, regionWidth, regionHeight, regionPixels);
+		return new Image(regionPixels, regionWidth, regionHeight);
+	}
+
+	/**
+	 * Copies a rectangular region of the image, padded as padRegion pads it, into the given pixels, for
+	 * callers that reuse one buffer for every region.
+	 *
+	 * @param img          the original image
+	 * @param startY       first row of the region, in padded coordinates
+	 * @param startX       first column of the region, in padded coordinates
+	 * @param regionWidth  number of columns in the region
+	 * @param regionHeight number of rows in the region
+	 * @param regionPixels receives the region row by row, at least regionWidth times regionHeight long
+	 */
+	public static void fillRegion(Image img, int startY, int startX, int regionWidth, int regionHeight,
+								  int[] regionPixels) {
+		int width = img.getWidth();
+		int height = img.getHeight();
+		int offsetX = (getPaddedWidth(img) - width) / 2;
+		int offsetY = (getPaddedHeight(img) - height) / 2;
+
+		Arrays.fill(regionPixels, 0, regionWidth * regionHeight, WHITE_RGB);
+		int firstX = Math.max(startX, offsetX);
+		int lastX = Math.min(startX + regionWidth, offsetX + width); // exclusive
+		for (int y = 0; y < regionHeight; y++) {
+			int sourceY = startY + y - offsetY;
+			if (sourceY >= 0 && sourceY < height) {
+				for (int x = firstX; x < lastX; x++) {
+					regionPixels[y * regionWidth + x - startX] = img.getRGB(sourceY, x - offsetX);
 				}
 			}
 		}
+	}
 
-		return new Image(newPixels, newWidth, newHeight);
+	/**
+	 * Returns the width the image would have after padToPowerOfTwo.
+	 *
+	 * @param img the original image
+	 * @return the padded width
+	 */
+	public static int getPaddedWidth(Image img) {
+		return nextPowerOfTwo(img.getWidth());
+	}
+
+	/**
+	 * Returns the height the image would have after padToPowerOfTwo.
+	 *
+	 * @param img the original image
+	 * @return the padded height
+	 */
+	public static int getPaddedHeight(Image img) {
+		return nextPowerOfTwo(img.getHeight());
+	}
+
+	/**
+	 * Returns the length a width or height would have after padToPowerOfTwo, for callers that know the
+	 * dimensions of an image without having decoded it.
+	 *
+	 * @param dimension the width or height of the original image
+	 * @return the padded width or height
+	 */
+	public static int getPaddedDimension(int dimension) {
+		return nextPowerOfTwo(dimension);
 	}
 
 	/**
@@ -119,21 +258,468 @@ public class ImageProcessor {
 			int startX,
 			int tileDimension,
 			Function<Color, Double> brightnessFunction) {
+		return computeBrightness(img, startY, startX, tileDimension, tileDimension, brightnessFunction);
+	}
+
+	/**
+	 * Computes the average brightness of a rectangular region of the image, such as a tile taller than
+	 * wide. Brightness is calculated using the given function, normalized to [0,1].
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileWidth          width of the region
+	 * @param tileHeight         height of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightness(
+			Image img,
+			int startY,
+			int startX,
+			int tileWidth,
+			int tileHeight,
+			Function<Color, Double> brightnessFunction) {
+
+		return sumBrightness(img, startY, startX, tileWidth, tileHeight, brightnessFunction, null)
+				/ (tileWidth * tileHeight * 255.0);
+	}
+
+	/**
+	 * Computes the average brightness of a square region of the image together with its average color,
+	 * in a single pass over its pixels. The brightness is exactly the one computeBrightness returns.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileDimension      width of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param colors             receives the average color, packed as 0xRRGGBB
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightnessAndColor(
+			Image img,
+			int startY,
+			int startX,
+			int tileDimension,
+			Function<Color, Double> brightnessFunction,
+			int[] colors,
+			int colorIndex) {
+		return computeBrightnessAndColor(img, startY, startX, tileDimension, tileDimension,
+				brightnessFunction, colors, colorIndex);
+	}
+
+	/**
+	 * Computes the average brightness of a rectangular region of the image together with its average
+	 * color, in a single pass over its pixels.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileWidth          width of the region
+	 * @param tileHeight         height of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param colors             receives the average color, packed as 0xRRGGBB
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightnessAndColor(
+			Image img,
+			int startY,
+			int startX,
+			int tileWidth,
+			int tileHeight,
+			Function<Color, Double> brightnessFunction,
+			int[] colors,
+			int colorIndex) {
+
+		long[] channelSums = clearedChannelSums();
+		double sum = sumBrightness(img, startY, startX, tileWidth, tileHeight, brightnessFunction,
+				channelSums);
+		colors[colorIndex] = averageColor(channelSums, (long) tileWidth * tileHeight);
+		return sum / (tileWidth * tileHeight * 255.0);
+	}
+
+
+	/**
+	 * Computes the average brightness of a square region of the image together with its binary shape.
+	 * The region is divided into maskResolution x maskResolution cells (a cell is a single pixel sampled
+	 * by nearest neighbour when the region is smaller than the mask), and bit (y * maskResolution + x)
+	 * of the mask is set if cell (x, y) is at least as bright as the region's average.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileDimension      width of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param maskResolution     number of mask cells per row and column
+	 * @param mask               output array of at least (maskResolution^2 + 63) / 64 longs, overwritten
+	 * @param cells              scratch array of at least maskResolution^2 doubles, overwritten
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightnessAndMask(
+			Image img,
+			int startY,
+			int startX,
+			int tileDimension,
+			Function<Color, Double> brightnessFunction,
+			int maskResolution,
+			long[] mask,
+			double[] cells) {
+		return computeBrightnessAndMask(img, startY, startX, tileDimension, brightnessFunction,
+				maskResolution, mask, cells, null, 0);
+	}
+
+	/**
+	 * Computes the average brightness of a square region of the image together with its binary shape,
+	 * as the method above does, and with its average color, all in a single pass over its pixels.
+	 * When the region is smaller than the mask, the color averages the sampled pixels.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileDimension      width of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param maskResolution     number of mask cells per row and column
+	 * @param mask               output array of at least (maskResolution^2 + 63) / 64 longs, overwritten
+	 * @param cells              scratch array of at least maskResolution^2 doubles, overwritten
+	 * @param colors             receives the average color, packed as 0xRRGGBB, or null if not needed
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightnessAndMask(
+			Image img,
+			int startY,
+			int startX,
+			int tileDimension,
+			Function<Color, Double> brightnessFunction,
+			int maskResolution,
+			long[] mask,
+			double[] cells,
+			int[] colors,
+			int colorIndex) {
+		return computeBrightnessAndMask(img, startY, startX, tileDimension, tileDimension,
+				brightnessFunction, maskResolution, mask, cells, colors, colorIndex);
+	}
+
+	/**
+	 * Computes the average brightness of a rectangular region of the image together with its binary
+	 * shape and, if needed, its average color, as the method above does for square regions. The mask
+	 * cells are as much taller than wide as the region is; when the region is narrower than the mask,
+	 * every cell samples its nearest pixel.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileWidth          width of the region
+	 * @param tileHeight         height of the region, at least its width
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param maskResolution     number of mask cells per row and column
+	 * @param mask               output array of at least (maskResolution^2 + 63) / 64 longs, overwritten
+	 * @param cells              scratch array of at least maskResolution^2 doubles, overwritten
+	 * @param colors             receives the average color, packed as 0xRRGGBB, or null if not needed
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeBrightnessAndMask(
+			Image img,
+			int startY,
+			int startX,
+			int tileWidth,
+			int tileHeight,
+			Function<Color, Double> brightnessFunction,
+			int maskResolution,
+			long[] mask,
+			double[] cells,
+			int[] colors,
+			int colorIndex) {
 
+		long[] channelSums = colors == null ? null : clearedChannelSums();
+		long pixels;
+		int cellCount = maskResolution * maskResolution;
 		double sum = 0.0;
+		if (tileWidth >= maskResolution) {
+			// every cell averages a block of pixels, and together they cover the whole region
+			int cellWidth = tileWidth / maskResolution;
+			int cellHeight = tileHeight / maskResolution;
+			for (int cy = 0; cy < maskResolution; cy++) {
+				for (int cx = 0; cx < maskResolution; cx++) {
+					double cell = sumBrightness(img, startY + cy * cellHeight, startX + cx * cellWidth,
+							cellWidth, cellHeight, brightnessFunction, channelSums)
+							/ (cellWidth * cellHeight * 255.0);
+					cells[cy * maskResolution + cx] = cell;
+					sum += cell;
+				}
+			}
+			pixels = (long) tileWidth * tileHeight;
+		} else {
+			// every pixel covers several cells, so sample each cell's nearest pixel
+			for (int cy = 0; cy < maskResolution; cy++) {
+				int y = startY + cy * tileHeight / maskResolution;
+				for (int cx = 0; cx < maskResolution; cx++) {
+					int x = startX + cx * tileWidth / maskResolution;
+					double cell = pixelBrightness(img, y, x, brightnessFunction) / 255.0;
+					cells[cy * maskResolution + cx] = cell;
+					sum += cell;
+					if (channelSums != null) {
+						addChannels(img.getRGB(y, x), channelSums);
+					}
+				}
+			}
+			pixels = cellCount;
+		}
+		if (colors != null) {
+			colors[colorIndex] = averageColor(channelSums, pixels);
+		}
+		double average = sum / cellCount;
 
-		for (int y = startY; y < startY + tileDimension; y++) {
-			for (int x = startX; x < startX + tileDimension; x++) {
-				Color pixel = img.getPixel(y, x);
-				sum += brightnessFunction.apply(pixel);
+		Arrays.fill(mask, 0L);
+		for (int bit = 0; bit < cellCount; bit++) {
+			if (cells[bit] >= average) {
+				mask[bit >>> 6] |= 1L << bit;
 			}
 		}
+		return average;
+	}
 
-		return sum / (tileDimension * tileDimension * 255.0);
+	/**
+	 * Computes the average brightness of a square region of the image together with the average
+	 * brightness of every cell of it, for the region divided into cellColumns x cellRows cells that may
+	 * be taller than wide. Cell (x, y) is written to cells[y * cellColumns + x]. When the region is
+	 * smaller than a cell grid dimension, every cell samples its nearest pixel instead.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileDimension      width of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param cellColumns        number of cells per row, dividing tileDimension if not larger
+	 * @param cellRows           number of cells per column, dividing tileDimension if not larger
+	 * @param cells              output array of at least cellColumns * cellRows doubles, overwritten
+	 * @param colors             receives the average color, packed as 0xRRGGBB, or null if not needed
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeCellBrightness(
+			Image img,
+			int startY,
+			int startX,
+			int tileDimension,
+			Function<Color, Double> brightnessFunction,
+			int cellColumns,
+			int cellRows,
+			double[] cells,
+			int[] colors,
+			int colorIndex) {
+		return computeCellBrightness(img, startY, startX, tileDimension, tileDimension, brightnessFunction,
+				cellColumns, cellRows, cells, colors, colorIndex);
 	}
 
+	/**
+	 * Computes the average brightness of a rectangular region of the image together with the average
+	 * brightness of every cell of it, as the method above does for square regions.
+	 *
+	 * @param img                the source image
+	 * @param startY             top-left row index
+	 * @param startX             top-left column index
+	 * @param tileWidth          width of the region
+	 * @param tileHeight         height of the region
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param cellColumns        number of cells per row, dividing tileWidth if not larger
+	 * @param cellRows           number of cells per column, dividing tileHeight if not larger
+	 * @param cells              output array of at least cellColumns * cellRows doubles, overwritten
+	 * @param colors             receives the average color, packed as 0xRRGGBB, or null if not needed
+	 * @param colorIndex         index of colors the average color is written to
+	 * @return average brightness in [0,1]
+	 */
+	public static double computeCellBrightness(
+			Image img,
+			int startY,
+			int startX,
+			int tileWidth,
+			int tileHeight,
+			Function<Color, Double> brightnessFunction,
+			int cellColumns,
+			int cellRows,
+			double[] cells,
+			int[] colors,
+			int colorIndex) {
+
+		long[] channelSums = colors == null ? null : clearedChannelSums();
+		long pixels;
+		int cellCount = cellColumns * cellRows;
+		double sum = 0.0;
+		if (tileWidth >= cellColumns && tileHeight >= cellRows) {
+			int cellWidth = tileWidth / cellColumns;
+			int cellHeight = tileHeight / cellRows;
+			for (int cy = 0; cy < cellRows; cy++) {
+				for (int cx = 0; cx < cellColumns; cx++) {
+					double cell = sumBrightness(img, startY + cy * cellHeight, startX + cx * cellWidth,
+							cellWidth, cellHeight, brightnessFunction, channelSums)
+							/ (cellWidth * cellHeight * 255.0);
+					cells[cy * cellColumns + cx] = cell;
+					sum += cell;
+				}
+			}
+			pixels = (long) tileWidth * tileHeight;
+		} else {
+			for (int cy = 0; cy < cellRows; cy++) {
+				int y = startY + cy * tileHeight / cellRows;
+				for (int cx = 0; cx < cellColumns; cx++) {
+					int x = startX + cx * tileWidth / cellColumns;
+					double cell = pixelBrightness(img, y, x, brightnessFunction) / 255.0;
+					cells[cy * cellColumns + cx] = cell;
+					sum += cell;
+					if (channelSums != null) {
+						addChannels(img.getRGB(y, x), channelSums);
+					}
+				}
+			}
+			pixels = cellCount;
+		}
+		if (colors != null) {
+			colors[colorIndex] = averageColor(channelSums, pixels);
+		}
+		return sum / cellCount;
+	}
+
+	/**
+	 * Computes the brightness of a region all of one color, such as a uniform tile, without reading its
+	 * pixels. Averaging the pixels gives the same value, up to the rounding of their sum.
+	 *
+	 * @param rgb                the color, packed as 0xRRGGBB
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @return brightness in [0,1]
+	 */
+	public static double computeColorBrightness(int rgb, Function<Color, Double> brightnessFunction) {
+		if (brightnessFunction == DEFAULT_BRIGHTNESS) {
+			return (0.2126 * ((rgb >> 16) & 0xFF) + 0.7152 * ((rgb >> 8) & 0xFF) + 0.0722 * (rgb & 0xFF))
+					/ 255.0;
+		}
+		return brightnessFunction.apply(new Color(rgb)) / 255.0;
+	}
+
+	/**
+	 * Computes the brightness of a single pixel. The default function is evaluated directly on the packed
+	 * pixel, giving the same value without creating a Color for every pixel.
+	 *
+	 * @param img                the source image
+	 * @param y                  row index
+	 * @param x                  column index
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @return brightness in [0,255]
+	 */
+	static double pixelBrightness(Image img, int y, int x, Function<Color, Double> brightnessFunction) {
+		return rgbBrightness(img.getRGB(y, x), brightnessFunction);
+	}
+
+	/**
+	 * Adds the brightness of every pixel of a row of the image, as padToPowerOfTwo would pad it, to the
+	 * sum of the tile its column falls in, without padding the image. Adding the rows of a row of tiles
+	 * in order gives every tile exactly the sum computeBrightness takes of it in the padded image.
+	 *
+	 * @param img                the original image
+	 * @param paddedY            the row, in padded coordinates
+	 * @param tileWidth          width of the tiles, a power of two no wider than the padded image
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @param tileSums           the brightness sums of the tiles of the row of tiles, one per tile
+	 */
+	public static void addRowToTileSums(Image img, int paddedY, int tileWidth,
+										Function<Color, Double> brightnessFunction, double[] tileSums) {
+		int width = img.getWidth();
+		int newWidth = getPaddedWidth(img);
+		int offsetX = (newWidth - width) / 2;
+		int sourceY = paddedY - (getPaddedHeight(img) - img.getHeight()) / 2;
+		int tileShift = Integer.numberOfTrailingZeros(tileWidth);
+		double white = rgbBrightness(WHITE_RGB, brightnessFunction);
+		if (sourceY < 0 || sourceY >= img.getHeight()) {
+			for (int x = 0; x < newWidth; x++) {
+				tileSums[x >> tileShift] += white;
+			}
+			return;
+		}
+		for (int x = 0; x < newWidth; x++) {
+			int sourceX = x - offsetX;
+			tileSums[x >> tileShift] += sourceX >= 0 && sourceX < width
+					? pixelBrightness(img, sourceY, sourceX, brightnessFunction) : white;
+		}
+	}
+
+	/**
+	 * Gets the brightness of a pixel of the image as padToPowerOfTwo would pad it, without padding the
+	 * image.
+	 *
+	 * @param img                the original image
+	 * @param paddedY            the row, in padded coordinates
+	 * @param paddedX            the column, in padded coordinates
+	 * @param brightnessFunction function mapping a Color to a brightness value in [0,255]
+	 * @return the brightness in [0,255]
+	 */
+	public static double paddedPixelBrightness(Image img, int paddedY, int paddedX,
+											   Function<Color, Double> brightnessFunction) {
+		int sourceY = paddedY - (getPaddedHeight(img) - img.getHeight()) / 2;
+		int sourceX = paddedX - (getPaddedWidth(img) - img.getWidth()) / 2;
+		if (sourceY < 0 || sourceY >= img.getHeight() || sourceX < 0 || sourceX >= img.getWidth()) {
+			return rgbBrightness(WHITE_RGB, brightnessFunction);
+		}
+		return pixelBrightness(img, sourceY, sourceX, brightnessFunction);
+	}
+
+	// Helper: the brightness of a packed pixel in [0,255], without a Color for the default function
+	private static double rgbBrightness(int rgb, Function<Color, Double> brightnessFunction) {
+		if (brightnessFunction == DEFAULT_BRIGHTNESS) {
+			return 0.2126 * ((rgb >> 16) & 0xFF) + 0.7152 * ((rgb >> 8) & 0xFF) + 0.0722 * (rgb & 0xFF);
+		}
+		return brightnessFunction.apply(new Color(rgb));
+	}
+
+	// Helper: sums the brightness of a rectangular region, adding its color channels to channelSums if
+	// given
+	private static double sumBrightness(Image img, int startY, int startX, int regionWidth,
+										int regionHeight, Function<Color, Double> brightnessFunction,
+										long[] channelSums) {
+		double sum = 0.0;
+		for (int y = startY; y < startY + regionHeight; y++) {
+			for (int x = startX; x < startX + regionWidth; x++) {
+				sum += pixelBrightness(img, y, x, brightnessFunction);
+				if (channelSums != null) {
+					addChannels(img.getRGB(y, x), channelSums);
+				}
+			}
+		}
+		return sum;
+	}
+
+	// Helper: the channel sums of this thread, set to zero
+	private static long[] clearedChannelSums() {
+		long[] channelSums = CHANNEL_SUMS.get();
+		Arrays.fill(channelSums, 0L);
+		return channelSums;
+	}
+
+	private static void addChannels(int rgb, long[] channelSums) {
+		channelSums[0] += (rgb >> 16) & 0xFF;
+		channelSums[1] += (rgb >> 8) & 0xFF;
+		channelSums[2] += rgb & 0xFF;
+	}
+
+	// Helper: packs the rounded averages of summed color channels as 0xRRGGBB
+	private static int averageColor(long[] channelSums, long pixels) {
+		int red = (int) ((channelSums[0] + pixels / 2) / pixels);
+		int green = (int) ((channelSums[1] + pixels / 2) / pixels);
+		int blue = (int) ((channelSums[2] + pixels / 2) / pixels);
+		return red << 16 | green << 8 | blue;
+	}
+
+	// Helper to copy a whole row of the image into a packed pixel array
+	private static void copyRow(Image img, int y, int[] target, int targetOffset) {
+		for (int x = 0; x < img.getWidth(); x++) {
+			target[targetOffset + x] = img.getRGB(y, x);
+		}
+	}
 
-	// Helper to compute next power of two ≥ n
+	// Helper to compute next power of two >= n
 	private static int nextPowerOfTwo(int n) {
 		if (n <= 0) return 1;
 		int p = 1;
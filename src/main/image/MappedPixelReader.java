@@ -0,0 +1,106 @@
+package image;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads uncompressed, interleaved pixel samples straight from a memory-mapped file region into the
+ * packed pixels of an {@link Image}. The file is mapped in windows of whole rows, so the page cache is
+ * read directly without intermediate stream buffers and huge files never need one mapping.
+ */
+final class MappedPixelReader {
+
+	// Largest region of the file mapped at once
+	private static final long WINDOW_BYTES = 64L << 20;
+	private static final int OPAQUE = 0xFF000000;
+	private static final String TRUNCATED_ERROR = "Image file is truncated";
+
+	private MappedPixelReader() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Reads width x height pixels stored row by row from the given offset.
+	 *
+	 * @param channel  an open channel of the file
+	 * @param offset   position of the first sample in the file
+	 * @param width    width in pixels
+	 * @param height   height in pixels
+	 * @param channels 1 for gray samples, 3 for red, green and blue samples
+	 * @param maxValue largest sample value; samples are one byte up to 255 and two big-endian bytes above
+	 * @return packed opaque pixels, row by row
+	 * @throws IOException if the file is shorter than the pixels it should hold
+	 */
+	static int[] read(FileChannel channel, long offset, int width, int height, int channels, int maxValue)
+			throws IOException {
+		return readRows(channel, offset, width, 0, height, channels, maxValue);
+	}
+
+	/**
+	 * Reads a band of rows of width pixels stored row by row from the given offset, without touching
+	 * the rows before or after it.
+	 *
+	 * @param channel  an open channel of the file
+	 * @param offset   position of the first sample of the first row of the image in the file
+	 * @param width    width in pixels
+	 * @param firstRow first row of the band
+	 * @param height   number of rows in the band
+	 * @param channels 1 for gray samples, 3 for red, green and blue samples
+	 * @param maxValue largest sample value; samples are one byte up to 255 and two big-endian bytes above
+	 * @return packed opaque pixels of the band, row by row
+	 * @throws IOException if the file is shorter than the band it should hold
+	 */
+	static int[] readRows(FileChannel channel, long offset, int width, int firstRow, int height,
+						  int channels, int maxValue) throws IOException {
+		int bytesPerSample = maxValue > 255 ? 2 : 1;
+		int rowBytes = Math.toIntExact((long) width * channels * bytesPerSample);
+		long bandOffset = offset + (long) firstRow * rowBytes;
+		if (channel.size() < bandOffset + (long) rowBytes * height) {
+			throw new IOException(TRUNCATED_ERROR);
+		}
+		int[] pixels = new int[Math.multiplyExact(width, height)];
+		byte[] row = new byte[rowBytes];
+		int rowsPerWindow = (int) Math.max(1, WINDOW_BYTES / Math.max(1, rowBytes));
+		for (int startRow = 0; startRow < height; startRow += rowsPerWindow) {
+			int rows = Math.min(rowsPerWindow, height - startRow);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+					bandOffset + (long) startRow * rowBytes, (long) rows * rowBytes);
+			for (int y = startRow; y < startRow + rows; y++) {
+				window.get(row);
+				convertRow(row, pixels, y * width, width, channels, bytesPerSample, maxValue);
+			}
+		}
+		return pixels;
+	}
+
+	private static void convertRow(byte[] row, int[] pixels, int base, int width, int channels,
+								   int bytesPerSample, int maxValue) {
+		for (int x = 0; x < width; x++) {
+			int sample = x * channels;
+			if (channels == 1) {
+				int gray = sample(row, sample, bytesPerSample, maxValue);
+				pixels[base + x] = OPAQUE | gray << 16 | gray << 8 | gray;
+			} else {
+				int red = sample(row, sample, bytesPerSample, maxValue);
+				int green = sample(row, sample + 1, bytesPerSample, maxValue);
+				int blue = sample(row, sample + 2, bytesPerSample, maxValue);
+				pixels[base + x] = OPAQUE | red << 16 | green << 8 | blue;
+			}
+		}
+	}
+
+	// Helper to read a sample and scale it to [0,255]
+	private static int sample(byte[] row, int index, int bytesPerSample, int maxValue) {
+		int value;
+		if (bytesPerSample == 1) {
+			value = row[index] & 0xFF;
+		} else {
+			value = (row[2 * index] & 0xFF) << 8 | (row[2 * index + 1] & 0xFF);
+		}
+		if (maxValue == 255) {
+			return value;
+		}
+		return Math.min(255, (value * 255 + maxValue / 2) / maxValue);
+	}
+}
@@ -0,0 +1,122 @@
+package image;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes binary PGM (P5, gray) and PPM (P6, RGB) files, with 8-bit or 16-bit samples.
+ * The header is parsed from the first bytes of the file and the pixels are read from a memory mapping.
+ */
+class PnmDecoder implements ImageDecoder {
+
+	// Headers are a few short tokens, comments included they fit in this many bytes
+	private static final int MAX_HEADER_SIZE = 4096;
+	private static final int MAX_SAMPLE_VALUE = 65535;
+	private static final String BAD_HEADER_ERROR = "Malformed PPM/PGM header in ";
+
+	@Override
+	public boolean canDecode(String filename, ByteBuffer header) {
+		return header.remaining() >= 3 && header.get(0) == 'P'
+				&& (header.get(1) == '5' || header.get(1) == '6')
+				&& isWhitespace(header.get(2));
+	}
+
+	@Override
+	public Image decode(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			Header header = readHeader(channel, filename);
+			int[] pixels = MappedPixelReader.read(channel, header.dataOffset, header.width, header.height,
+					header.channels, header.maxValue);
+			return new Image(pixels, header.width, header.height);
+		}
+	}
+
+	@Override
+	public Image decodeRows(String filename, int firstRow, int rows) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			Header header = readHeader(channel, filename);
+			int[] pixels = MappedPixelReader.readRows(channel, header.dataOffset, header.width, firstRow,
+					rows, header.channels, header.maxValue);
+			return new Image(pixels, header.width, rows);
+		}
+	}
+
+	@Override
+	public Dimension readDimensions(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			Header header = readHeader(channel, filename);
+			return new Dimension(header.width, header.height);
+		}
+	}
+
+	// Helper to parse the header at the start of the file
+	private static Header readHeader(FileChannel channel, String filename) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_HEADER_SIZE, channel.size()));
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// keep reading until the header buffer is full or the file ends
+		}
+		buffer.flip();
+		if (buffer.remaining() < 3) {
+			throw new IOException(BAD_HEADER_ERROR + filename);
+		}
+		Header header = new Header();
+		header.channels = buffer.get(1) == '5' ? 1 : 3;
+		buffer.position(2);
+		header.width = readNumber(buffer, filename);
+		header.height = readNumber(buffer, filename);
+		header.maxValue = readNumber(buffer, filename);
+		if (header.width <= 0 || header.height <= 0 || header.maxValue <= 0
+				|| header.maxValue > MAX_SAMPLE_VALUE || !buffer.hasRemaining()) {
+			throw new IOException(BAD_HEADER_ERROR + filename);
+		}
+		buffer.get(); //the single whitespace byte that ends the header
+		header.dataOffset = buffer.position();
+		return header;
+	}
+
+	// Helper to skip whitespace and comments, then read a decimal number
+	private static int readNumber(ByteBuffer header, String filename) throws IOException {
+		while (header.hasRemaining()) {
+			byte b = header.get(header.position());
+			if (b == '#') {
+				while (header.hasRemaining() && header.get() != '\n') {
+					// skip the rest of the comment line
+				}
+			} else if (isWhitespace(b)) {
+				header.get();
+			} else {
+				break;
+			}
+		}
+		long value = 0;
+		int digits = 0;
+		while (header.hasRemaining() && Character.isDigit(header.get(header.position()))) {
+			value = value * 10 + (header.get() - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw new IOException(BAD_HEADER_ERROR + filename);
+			}
+			digits++;
+		}
+		if (digits == 0) {
+			throw new IOException(BAD_HEADER_ERROR + filename);
+		}
+		return (int) value;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	// The fields of a parsed header
+	private static final class Header {
+		private int width;
+		private int height;
+		private int maxValue;
+		private int channels;
+		private long dataOffset;
+	}
+}
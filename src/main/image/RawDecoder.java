@@ -0,0 +1,65 @@
+package image;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decodes headerless raw frames of 8-bit samples. Since the file holds no header, the dimensions and
+ * layout come from the file name, which must end with .WIDTHxHEIGHT.rgb (interleaved red, green, blue)
+ * or .WIDTHxHEIGHT.gray, for example frame.640x480.rgb.
+ */
+class RawDecoder implements ImageDecoder {
+
+	private static final Pattern RAW_NAME = Pattern.compile(".*\\.(\\d{1,9})x(\\d{1,9})\\.(rgb|gray)",
+			Pattern.CASE_INSENSITIVE);
+	private static final String GRAY_EXTENSION = ".gray";
+	private static final String BAD_NAME_ERROR = "Raw image name must end with .WIDTHxHEIGHT.rgb or " +
+			".gray: ";
+
+	@Override
+	public boolean canDecode(String filename, ByteBuffer header) {
+		return RAW_NAME.matcher(filename).matches();
+	}
+
+	@Override
+	public Image decode(String filename) throws IOException {
+		Dimension dimensions = readDimensions(filename);
+		int channels = filename.toLowerCase().endsWith(GRAY_EXTENSION) ? 1 : 3;
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			int[] pixels = MappedPixelReader.read(channel, 0, dimensions.width, dimensions.height, channels,
+					255);
+			return new Image(pixels, dimensions.width, dimensions.height);
+		}
+	}
+
+	@Override
+	public Image decodeRows(String filename, int firstRow, int rows) throws IOException {
+		Dimension dimensions = readDimensions(filename);
+		int channels = filename.toLowerCase().endsWith(GRAY_EXTENSION) ? 1 : 3;
+		try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ)) {
+			int[] pixels = MappedPixelReader.readRows(channel, 0, dimensions.width, firstRow, rows,
+					channels, 255);
+			return new Image(pixels, dimensions.width, rows);
+		}
+	}
+
+	@Override
+	public Dimension readDimensions(String filename) throws IOException {
+		Matcher matcher = RAW_NAME.matcher(filename);
+		if (!matcher.matches()) {
+			throw new IOException(BAD_NAME_ERROR + filename);
+		}
+		int width = Integer.parseInt(matcher.group(1));
+		int height = Integer.parseInt(matcher.group(2));
+		if (width == 0 || height == 0) {
+			throw new IOException(BAD_NAME_ERROR + filename);
+		}
+		return new Dimension(width, height);
+	}
+}
@@ -0,0 +1,96 @@
+package image;
+
+import java.util.BitSet;
+
+/**
+ * A brightness grid whose cells are computed on demand, for renders that only look at part of the
+ * image. Cells that were not computed yet read as NaN; once set, a cell keeps its value, so any later
+ * view that overlaps it reuses it instead of reading its pixels again.
+ * <p>
+ * The values live in an off-heap {@link BrightnessGrid}, allocated whole up front, with a bit per cell
+ * marking which are computed. The grid is filled and read by one thread at a time, and has the same
+ * explicit lifetime: {@link #close()} drops it.
+ */
+public final class SparseBrightnessGrid implements AutoCloseable {
+
+	private final BrightnessGrid values;
+	private final BitSet computed;
+
+	/**
+	 * Allocates a grid of the given dimensions with no cell computed.
+	 *
+	 * @param rows    number of rows
+	 * @param columns number of columns
+	 */
+	public SparseBrightnessGrid(int rows, int columns) {
+		this.values = new BrightnessGrid(rows, columns);
+		this.computed = new BitSet(rows * columns);
+	}
+
+	/**
+	 * Gets the number of rows.
+	 *
+	 * @return number of rows
+	 */
+	public int getRows() {
+		return values.getRows();
+	}
+
+	/**
+	 * Gets the number of columns.
+	 *
+	 * @return number of columns
+	 */
+	public int getColumns() {
+		return values.getColumns();
+	}
+
+	/**
+	 * Gets the brightness of a cell.
+	 *
+	 * @param row    row index
+	 * @param column column index
+	 * @return brightness in [0,1], or NaN if the cell was not computed yet
+	 * @throws IllegalStateException if the grid was closed
+	 */
+	public double get(int row, int column) {
+		if (!computed.get(row * values.getColumns() + column)) {
+			return Double.NaN;
+		}
+		return values.get(row, column);
+	}
+
+	/**
+	 * Sets the brightness of a cell, unless it was computed already.
+	 *
+	 * @param row        row index
+	 * @param column     column index
+	 * @param brightness brightness in [0,1]
+	 * @throws IllegalStateException if the grid was closed
+	 */
+	public void set(int row, int column, double brightness) {
+		int index = row * values.getColumns() + column;
+		if (!computed.get(index)) {
+			values.set(row, column, brightness);
+			computed.set(index);
+		}
+	}
+
+	/**
+	 * Gets the number of bytes held by the grid, on and off the heap.
+	 *
+	 * @return size in bytes, 0 once closed
+	 */
+	public long getByteSize() {
+		long size = values.getByteSize();
+		return size == 0 ? 0 : size + computed.size() / Byte.SIZE;
+	}
+
+	/**
+	 * Releases the grid. Closing an already closed grid does nothing.
+	 */
+	@Override
+	public void close() {
+		values.close();
+	}
+}
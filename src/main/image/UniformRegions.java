@@ -0,0 +1,137 @@
+package image;
+
+/**
+ * A quadtree of the uniform regions of an image whose dimensions are powers of two: for every square
+ * block of 2^k pixels, from {@value #MIN_BLOCK_DIMENSION} pixels up, the single color all its pixels
+ * share, or {@link #NOT_UNIFORM}. Padding and flat areas such as sky or the background of a scanned
+ * page are found once, so renders at any resolution can fill their tiles without reading a pixel.
+ * <p>
+ * Only exact uniformity is recorded, so the brightness and color of a uniform tile are those of its
+ * single color, as averaging its pixels would give. Building compares packed pixels only, which is
+ * cheaper than computing their brightness.
+ */
+public final class UniformRegions {
+	/**
+	 * Marks blocks whose pixels do not all share one color, and tiles too small to be looked up.
+	 */
+	public static final int NOT_UNIFORM = -1;
+
+	/**
+	 * Width of the smallest blocks recorded; smaller tiles are never reported uniform.
+	 */
+	public static final int MIN_BLOCK_DIMENSION = 4;
+
+	private static final int MIN_LEVEL = Integer.numberOfTrailingZeros(MIN_BLOCK_DIMENSION);
+	private static final int COLOR_BITS = 0xFFFFFF;
+
+	private final int width;
+	// levels[k] holds the color of every block of 2^(k + MIN_LEVEL) pixels, row by row
+	private final int[][] levels;
+
+	/**
+	 * Finds the uniform regions of the given image.
+	 *
+	 * @param img   an image whose width and height are powers of two (see
+	 *              {@link ImageProcessor#padToPowerOfTwo(Image)})
+	 * @param onRow called after every pixel row is read, may throw to abort
+	 */
+	public UniformRegions(Image img, Runnable onRow) {
+		this.width = img.getWidth();
+		int height = img.getHeight();
+		int levelCount = Math.max(0,
+				Integer.numberOfTrailingZeros(Math.min(width, height)) + 1 - MIN_LEVEL);
+		levels = new int[levelCount][];
+		if (levelCount == 0) {
+			for (int y = 0; y < height; y++) {
+				onRow.run();
+			}
+			return;
+		}
+
+		// the first pixel of a block is read before the rest of it, and any other color marks it as mixed
+		int blocksPerRow = width / MIN_BLOCK_DIMENSION;
+		int[] base = new int[blocksPerRow * (height / MIN_BLOCK_DIMENSION)];
+		for (int y = 0; y < height; y++) {
+			int rowOffset = (y / MIN_BLOCK_DIMENSION) * blocksPerRow;
+			boolean firstRow = y % MIN_BLOCK_DIMENSION == 0;
+			for (int x = 0; x < width; x++) {
+				int color = img.getRGB(y, x) & COLOR_BITS;
+				int block = rowOffset + x / MIN_BLOCK_DIMENSION;
+				if (firstRow && x % MIN_BLOCK_DIMENSION == 0) {
+					base[block] = color;
+				} else if (base[block] != color) {
+					base[block] = NOT_UNIFORM;
+				}
+			}
+			onRow.run();
+		}
+		levels[0] = base;
+
+		for (int k = 1; k < levelCount; k++) {
+			int[] below = levels[k - 1];
+			int belowWidth = width >> (k - 1 + MIN_LEVEL);
+			int levelWidth = belowWidth / 2;
+			int[] level = new int[below.length / 4];
+			for (int i = 0; i < level.length; i++) {
+				int top = (i / levelWidth) * 2 * belowWidth + (i % levelWidth) * 2;
+				int color = below[top];
+				boolean uniform = below[top + 1] == color && below[top + belowWidth] == color
+						&& below[top + belowWidth + 1] == color;
+				level[i] = uniform ? color : NOT_UNIFORM;
+			}
+			levels[k] = level;
+		}
+	}
+
+	/**
+	 * Gets the color shared by every pixel of a square tile.
+	 *
+	 * @param startY        top row of the tile, a multiple of tileDimension
+	 * @param startX        left column of the tile, a multiple of tileDimension
+	 * @param tileDimension width of the tile, a power of two
+	 * @return the color packed as 0xRRGGBB, or {@link #NOT_UNIFORM} if the tile is mixed or smaller
+	 *         than {@value #MIN_BLOCK_DIMENSION} pixels
+	 */
+	public int getUniformColor(int startY, int startX, int tileDimension) {
+		int k = Integer.numberOfTrailingZeros(tileDimension) - MIN_LEVEL;
+		if (k < 0 || k >= levels.length) {
+			return NOT_UNIFORM;
+		}
+		int shift = k + MIN_LEVEL;
+		return levels[k][(startY >> shift) * (width >> shift) + (startX >> shift)];
+	}
+
+	/**
+	 * Gets the color shared by every pixel of a tile as many times taller than wide as a power of two:
+	 * the color of the square tiles stacked in it, if they all share one.
+	 *
+	 * @param startY     top row of the tile, a multiple of tileHeight
+	 * @param startX     left column of the tile, a multiple of tileWidth
+	 * @param tileWidth  width of the tile, a power of two
+	 * @param tileHeight height of the tile, a power-of-two multiple of its width
+	 * @return the color packed as 0xRRGGBB, or {@link #NOT_UNIFORM} if the tile is mixed or narrower
+	 *         than {@value #MIN_BLOCK_DIMENSION} pixels
+	 */
+	public int getUniformColor(int startY, int startX, int tileWidth, int tileHeight) {
+		int color = getUniformColor(startY, startX, tileWidth);
+		for (int y = startY + tileWidth; y < startY + tileHeight && color != NOT_UNIFORM; y += tileWidth) {
+			if (getUniformColor(y, startX, tileWidth) != color) {
+				color = NOT_UNIFORM;
+			}
+		}
+		return color;
+	}
+
+	/**
+	 * Gets the number of bytes held by the quadtree.
+	 *
+	 * @return size in bytes
+	 */
+	public long getByteSize() {
+		long size = 0;
+		for (int[] level : levels) {
+			size += (long) level.length * Integer.BYTES;
+		}
+		return size;
+	}
+}
@@ -2,6 +2,7 @@ package image_char_matching;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 /**
  * Inspired by, and partly copied from
@@ -10,12 +11,13 @@ import java.awt.image.BufferedImage;
  * described in the blog:
  * https://dzone.com/articles/ascii-art-generator-java
  * Adaptations made by Dan Nirel and again by Rachel Behar.
- * The class converts characters to a binary "image" (2D array of booleans).
+ * The class converts characters to a binary "image" (2D array of booleans), or to a packed bit mask
+ * in which bit (y * resolution + x) is set if the pixel at (x, y) is white.
  */
 public class CharConverter {
 	private static final double X_OFFSET_FACTOR = 0.2;
 	private static final double Y_OFFSET_FACTOR = 0.75;
-	private static final String FONT_NAME = "Courier New";
+	public static final String DEFAULT_FONT_NAME = "Courier New";
 	public static final int DEFAULT_PIXEL_RESOLUTION = 16;
 
 	/**
@@ -24,25 +26,113 @@ public class CharConverter {
 	 * whose dimension in pixels is specified.
 	 */
 	public static boolean[][] convertToBoolArray(char c) {
-		BufferedImage img = getBufferedImage(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
+		long[] mask = convertToBitMasks(new char[]{c})[0];
 		boolean[][] matrix = new boolean[DEFAULT_PIXEL_RESOLUTION][DEFAULT_PIXEL_RESOLUTION];
 		for (int y = 0; y < DEFAULT_PIXEL_RESOLUTION; y++) {
 			for (int x = 0; x < DEFAULT_PIXEL_RESOLUTION; x++) {
-				matrix[y][x] = img.getRGB(x, y) == 0; //is the color white
+				int bit = y * DEFAULT_PIXEL_RESOLUTION + x;
+				matrix[y][x] = (mask[bit >>> 6] & (1L << bit)) != 0; //is the color white
 			}
 		}
 		return matrix;
 	}
 
-	private static BufferedImage getBufferedImage(char c, String fontName, int pixelsPerRow) {
-		String charStr = Character.toString(c);
+	/**
+	 * Renders the given characters at the default pixel resolution.
+	 *
+	 * @param chars characters to render
+	 * @return one bit mask per character, in the order given
+	 * @see #convertToBitMasks(char[], int)
+	 */
+	public static long[][] convertToBitMasks(char[] chars) {
+		return convertToBitMasks(chars, DEFAULT_PIXEL_RESOLUTION);
+	}
+
+	/**
+	 * Renders the given characters in the default font.
+	 *
+	 * @param chars           characters to render
+	 * @param pixelResolution width and height of every glyph in pixels
+	 * @return one bit mask per character, in the order given
+	 * @see #convertToBitMasks(char[], String, int)
+	 */
+	public static long[][] convertToBitMasks(char[] chars, int pixelResolution) {
+		return convertToBitMasks(chars, DEFAULT_FONT_NAME, pixelResolution);
+	}
+
+	/**
+	 * Renders all the given characters side by side into a single atlas image in one Graphics pass,
+	 * then packs every glyph cell into a bit mask of {@link #maskLength(int)} longs.
+	 * Each glyph is clipped to its own cell, so the result is identical to rendering it alone.
+	 * Every call uses its own atlas, so calls may run concurrently.
+	 *
+	 * @param chars           characters to render
+	 * @param fontName        family of the font to render in
+	 * @param pixelResolution width and height of every glyph in pixels
+	 * @return one bit mask per character, in the order given
+	 */
+	public static long[][] convertToBitMasks(char[] chars, String fontName, int pixelResolution) {
+		long[][] masks = new long[chars.length][maskLength(pixelResolution)];
+		if (chars.length == 0) {
+			return masks;
+		}
+		int atlasWidth = chars.length * pixelResolution;
+		BufferedImage atlas = getAtlasImage(chars, fontName, pixelResolution);
+		int[] pixels = ((DataBufferInt) atlas.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < chars.length; i++) {
+			long[] mask = masks[i];
+			int cellStart = i * pixelResolution;
+			for (int y = 0; y < pixelResolution; y++) {
+				int rowStart = y * atlasWidth + cellStart;
+				for (int x = 0; x < pixelResolution; x++) {
+					if (pixels[rowStart + x] == 0) { //is the color white
+						int bit = y * pixelResolution + x;
+						mask[bit >>> 6] |= 1L << bit;
+					}
+				}
+			}
+		}
+		return masks;
+	}
+
+	/**
+	 * Returns the number of longs needed to hold a glyph mask of the given resolution.
+	 *
+	 * @param pixelResolution width and height of the glyph in pixels
+	 * @return mask length in longs
+	 */
+	public static int maskLength(int pixelResolution) {
+		return (pixelResolution * pixelResolution + Long.SIZE - 1) / Long.SIZE;
+	}
+
+	/**
+	 * Counts the white pixels of a glyph mask.
+	 *
+	 * @param mask a mask produced by {@link #convertToBitMasks(char[], int)}
+	 * @return number of set bits
+	 */
+	public static int countWhitePixels(long[] mask) {
+		int count = 0;
+		for (long word : mask) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	private static BufferedImage getAtlasImage(char[] chars, String fontName, int pixelsPerRow) {
 		Font font = new Font(fontName, Font.PLAIN, pixelsPerRow);
-		BufferedImage img = new BufferedImage(pixelsPerRow, pixelsPerRow, BufferedImage.TYPE_INT_ARGB);
+		BufferedImage img = new BufferedImage(chars.length * pixelsPerRow, pixelsPerRow,
+				BufferedImage.TYPE_INT_ARGB);
 		Graphics g = img.getGraphics();
 		g.setFont(font);
 		int xOffset = (int) Math.round(pixelsPerRow * X_OFFSET_FACTOR);
 		int yOffset = (int) Math.round(pixelsPerRow * Y_OFFSET_FACTOR);
-		g.drawString(charStr, xOffset, yOffset);
+		for (int i = 0; i < chars.length; i++) {
+			int cellStart = i * pixelsPerRow;
+			g.setClip(cellStart, 0, pixelsPerRow, pixelsPerRow);
+			g.drawString(Character.toString(chars[i]), cellStart + xOffset, yOffset);
+		}
+		g.dispose();
 		return img;
 	}
 
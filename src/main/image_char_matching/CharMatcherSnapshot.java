@@ -0,0 +1,338 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * An immutable, compiled view of a charset, used to match image tiles to characters.
+ * <p>
+ * The charset is flattened into arrays sorted by raw brightness (number of white pixels) and then by
+ * character, so lookups are binary searches and linear scans with no boxing or map access.
+ * Snapshots are never modified after construction: charset edits build a new snapshot through
+ * {@link #withChars(char[], long[][])} and {@link #withoutChars(char[])}, which makes a snapshot safe
+ * to share between any number of concurrent renders without locking.
+ */
+public final class CharMatcherSnapshot {
+
+	/**
+	 * A snapshot of the empty charset, for glyphs of the default pixel resolution.
+	 */
+	public static final CharMatcherSnapshot EMPTY = empty(CharConverter.DEFAULT_PIXEL_RESOLUTION);
+
+	private static final String IS_EMPTY_ERROR = "Charset is empty";
+	// Fraction of the charset's raw brightness range searched around the query in shape matching
+	private static final double SHAPE_WINDOW_FRACTION = 0.15;
+	// Minimal raw brightness distance searched around the query in shape matching
+	private static final int SHAPE_MIN_WINDOW = 4;
+	// Width and height of the glyphs in pixels, and the size of their masks
+	private final int pixelResolution;
+	private final int glyphPixels;
+	private final int maskWords;
+
+	// All characters, sorted by raw brightness then character, with their brightness and glyph mask
+	private final char[] chars;
+	private final int[] rawBrightness;
+	private final long[] masks;
+
+	// Distinct raw brightness levels, each with its first (smallest) character
+	private final int[] levels;
+	private final char[] levelChars;
+
+	private final int shapeWindow;
+
+	private CharMatcherSnapshot(int pixelResolution, char[] chars, int[] rawBrightness, long[] masks) {
+		this.pixelResolution = pixelResolution;
+		this.glyphPixels = pixelResolution * pixelResolution;
+		this.maskWords = CharConverter.maskLength(pixelResolution);
+		this.chars = chars;
+		this.rawBrightness = rawBrightness;
+		this.masks = masks;
+
+		int distinct = 0;
+		for (int i = 0; i < chars.length; i++) {
+			if (i == 0 || rawBrightness[i] != rawBrightness[i - 1]) distinct++;
+		}
+		levels = new int[distinct];
+		levelChars = new char[distinct];
+		for (int i = 0, level = 0; i < chars.length; i++) {
+			if (i == 0 || rawBrightness[i] != rawBrightness[i - 1]) {
+				levels[level] = rawBrightness[i];
+				levelChars[level] = chars[i];
+				level++;
+			}
+		}
+		shapeWindow = chars.length == 0 ? SHAPE_MIN_WINDOW : Math.max(SHAPE_MIN_WINDOW,
+				(int) Math.round((maxRaw() - minRaw()) * SHAPE_WINDOW_FRACTION));
+	}
+
+	/**
+	 * Returns a snapshot of the empty charset, for glyphs of the given pixel resolution.
+	 *
+	 * @param pixelResolution width and height of the glyphs in pixels
+	 * @return the empty snapshot
+	 */
+	public static CharMatcherSnapshot empty(int pixelResolution) {
+		return new CharMatcherSnapshot(pixelResolution, new char[0], new int[0], new long[0]);
+	}
+
+	/**
+	 * Returns a snapshot holding this charset plus the given characters.
+	 * Characters already present are ignored.
+	 *
+	 * @param newChars   characters to add
+	 * @param glyphMasks glyph mask of every new character, as produced by CharConverter at this snapshot's
+	 *                   pixel resolution
+	 * @return the new snapshot, or this one if nothing was added
+	 */
+	public CharMatcherSnapshot withChars(char[] newChars, long[][] glyphMasks) {
+		int count = chars.length;
+		char[] mergedChars = Arrays.copyOf(chars, count + newChars.length);
+		int[] mergedBrightness = Arrays.copyOf(rawBrightness, count + newChars.length);
+		long[] mergedMasks = Arrays.copyOf(masks, (count + newChars.length) * maskWords);
+		for (int i = 0; i < newChars.length; i++) {
+			if (indexOf(mergedChars, count, newChars[i]) >= 0) continue;
+			mergedChars[count] = newChars[i];
+			mergedBrightness[count] = CharConverter.countWhitePixels(glyphMasks[i]);
+			System.arraycopy(glyphMasks[i], 0, mergedMasks, count * maskWords, maskWords);
+			count++;
+		}
+		if (count == chars.length) {
+			return this;
+		}
+		return sorted(pixelResolution, mergedChars, mergedBrightness, mergedMasks, count);
+	}
+
+	/**
+	 * Returns a snapshot holding this charset without the given characters.
+	 * Characters not present are ignored.
+	 *
+	 * @param removedChars characters to remove
+	 * @return the new snapshot, or this one if nothing was removed
+	 */
+	public CharMatcherSnapshot withoutChars(char[] removedChars) {
+		char[] keptChars = new char[chars.length];
+		int[] keptBrightness = new int[chars.length];
+		long[] keptMasks = new long[masks.length];
+		int count = 0;
+		for (int i = 0; i < chars.length; i++) {
+			if (indexOf(removedChars, removedChars.length, chars[i]) >= 0) continue;
+			keptChars[count] = chars[i];
+			keptBrightness[count] = rawBrightness[i];
+			System.arraycopy(masks, i * maskWords, keptMasks, count * maskWords, maskWords);
+			count++;
+		}
+		if (count == chars.length) {
+			return this;
+		}
+		// removing keeps the order, so no need to sort again
+		return new CharMatcherSnapshot(pixelResolution, Arrays.copyOf(keptChars, count),
+				Arrays.copyOf(keptBrightness, count), Arrays.copyOf(keptMasks, count * maskWords));
+	}
+
+	/**
+	 * Checks whether a character is part of this charset.
+	 *
+	 * @param c character to look for
+	 * @return true if the character is in the charset
+	 */
+	public boolean contains(char c) {
+		return indexOf(chars, chars.length, c) >= 0;
+	}
+
+	/**
+	 * Returns the pixel resolution of the glyphs, which is also the mask resolution tiles are compared at
+	 * in shape matching.
+	 *
+	 * @return width and height of the glyphs in pixels
+	 */
+	public int getPixelResolution() {
+		return pixelResolution;
+	}
+
+	/**
+	 * Returns the number of characters in this charset.
+	 *
+	 * @return charset size
+	 */
+	public int size() {
+		return chars.length;
+	}
+
+	/**
+	 * Returns a copy of this charset.
+	 *
+	 * @return TreeSet of the characters in this snapshot
+	 */
+	public TreeSet<Character> getCharset() {
+		TreeSet<Character> charset = new TreeSet<>();
+		for (char c : chars) {
+			charset.add(c);
+		}
+		return charset;
+	}
+
+	/**
+	 * Returns the character whose brightness best matches the given normalized brightness value.
+	 * The brightness is stretched over the charset's raw brightness range, and the nearest level wins,
+	 * preferring the darker level on ties and the smallest character within a level.
+	 *
+	 * @param brightness brightness in [0,1]
+	 * @return closest matching character
+	 * @throws IllegalStateException if charset is empty
+	 */
+	public char getCharByImageBrightness(double brightness) {
+		return levelChars[getNearestLevel(brightness)];
+	}
+
+	/**
+	 * Returns the index of the brightness level getCharByImageBrightness picks for the given brightness.
+	 * Levels are the distinct character brightness values, indexed from darkest to brightest.
+	 *
+	 * @param brightness brightness in [0,1]
+	 * @return index of the nearest level
+	 * @throws IllegalStateException if charset is empty
+	 */
+	public int getNearestLevel(double brightness) {
+		if (chars.length == 0) {
+			throw new IllegalStateException(IS_EMPTY_ERROR);
+		}
+		int rawQuery = normalizedToRaw(brightness);
+
+		int ceil = lowerBound(levels, levels.length, rawQuery);
+		if (ceil < levels.length && levels[ceil] == rawQuery) return ceil;
+		if (ceil == 0) return 0;
+		int floor = ceil - 1;
+		if (ceil == levels.length) return floor;
+		int dFloor = rawQuery - levels[floor];
+		int dCeil = levels[ceil] - rawQuery;
+		return (dFloor <= dCeil) ? floor : ceil;
+	}
+
+	/**
+	 * Gets the character of a brightness level, the smallest one if several share it.
+	 *
+	 * @param level level index, as returned by getNearestLevel
+	 * @return the level's character
+	 */
+	public char getLevelChar(int level) {
+		return levelChars[level];
+	}
+
+	/**
+	 * Gets the brightness of a level on the same normalized scale as the queries, so the difference
+	 * between a query and its level is the error made by rendering it with that level's character.
+	 *
+	 * @param level level index, as returned by getNearestLevel
+	 * @return normalized brightness in [0,1], 0 if all characters are equally bright
+	 */
+	public double getLevelBrightness(int level) {
+		int min = minRaw();
+		int max = maxRaw();
+		return min == max ? 0.0 : (double) (levels[level] - min) / (max - min);
+	}
+
+	/**
+	 * Returns the character whose glyph best matches the given tile shape, among the characters whose
+	 * brightness is close to the tile's brightness.
+	 * Candidates are first pruned to a brightness window around the query, then compared to the tile by
+	 * the Hamming distance between their glyph mask and the tile mask; ties are broken by brightness.
+	 * Tiles without any structure (all bits set or all clear) are matched by brightness alone.
+	 *
+	 * @param brightness brightness in [0,1]
+	 * @param tileMask   tile shape at {@link #getPixelResolution()}, bit set for bright
+	 *                   cells, as produced by ImageProcessor.computeBrightnessAndMask
+	 * @return best matching character
+	 * @throws IllegalStateException if charset is empty
+	 */
+	public char getCharByShape(double brightness, long[] tileMask) {
+		if (chars.length == 0) {
+			throw new IllegalStateException(IS_EMPTY_ERROR);
+		}
+		int setBits = CharConverter.countWhitePixels(tileMask);
+		if (setBits == 0 || setBits == glyphPixels) {
+			return getCharByImageBrightness(brightness);
+		}
+		int rawQuery = normalizedToRaw(brightness);
+
+		char best = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		int bestBrightnessDistance = Integer.MAX_VALUE;
+		for (int i = lowerBound(rawBrightness, rawBrightness.length, rawQuery - shapeWindow);
+			 i < chars.length && rawBrightness[i] <= rawQuery + shapeWindow; i++) {
+			int distance = 0;
+			for (int w = 0, offset = i * maskWords; w < maskWords; w++) {
+				distance += Long.bitCount(masks[offset + w] ^ tileMask[w]);
+			}
+			int brightnessDistance = Math.abs(rawBrightness[i] - rawQuery);
+			if (distance < bestDistance
+					|| (distance == bestDistance && brightnessDistance < bestBrightnessDistance)) {
+				best = chars[i];
+				bestDistance = distance;
+				bestBrightnessDistance = brightnessDistance;
+			}
+		}
+		// no character is close enough in brightness, fall back to the nearest one
+		return bestDistance == Integer.MAX_VALUE ? getCharByImageBrightness(brightness) : best;
+	}
+
+	// Helper: converts normalized [0,1] brightness into raw brightness [min,max] of the charset
+	private int normalizedToRaw(double brightness) {
+		int min = minRaw();
+		int max = maxRaw();
+		return min == max ? min : (int) Math.round(min + brightness * (max - min));
+	}
+
+	private int minRaw() {
+		return rawBrightness[0];
+	}
+
+	private int maxRaw() {
+		return rawBrightness[rawBrightness.length - 1];
+	}
+
+	// Helper: sorts the first count entries by raw brightness then character and compiles them
+	private static CharMatcherSnapshot sorted(int pixelResolution, char[] chars, int[] rawBrightness,
+											  long[] masks, int count) {
+		int maskWords = CharConverter.maskLength(pixelResolution);
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> rawBrightness[a] != rawBrightness[b]
+				? Integer.compare(rawBrightness[a], rawBrightness[b])
+				: Character.compare(chars[a], chars[b]));
+
+		char[] sortedChars = new char[count];
+		int[] sortedBrightness = new int[count];
+		long[] sortedMasks = new long[count * maskWords];
+		for (int i = 0; i < count; i++) {
+			sortedChars[i] = chars[order[i]];
+			sortedBrightness[i] = rawBrightness[order[i]];
+			System.arraycopy(masks, order[i] * maskWords, sortedMasks, i * maskWords, maskWords);
+		}
+		return new CharMatcherSnapshot(pixelResolution, sortedChars, sortedBrightness, sortedMasks);
+	}
+
+	// Helper: index of c among the first count characters, or -1
+	private static int indexOf(char[] chars, int count, char c) {
+		for (int i = 0; i < count; i++) {
+			if (chars[i] == c) return i;
+		}
+		return -1;
+	}
+
+	// Helper: index of the first of the first count elements not smaller than key in a sorted array
+	private static int lowerBound(int[] sorted, int count, int key) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
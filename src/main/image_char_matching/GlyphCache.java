@@ -0,0 +1,98 @@
+package image_char_matching;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A process-wide cache of glyph masks, keyed by font, pixel resolution and character, shared by every
+ * matcher and session. Glyphs are rasterized once per key, so switching back to a font already seen
+ * costs nothing; glyphs missing from the cache are rasterized together, split into a few atlases
+ * rendered in parallel, rather than one Graphics setup per character.
+ */
+public final class GlyphCache {
+	// Atlases narrower than this are not worth a task of their own
+	private static final int MIN_CHARS_PER_ATLAS = 16;
+
+	private static final Map<Key, long[]> MASKS = new ConcurrentHashMap<>();
+
+	private GlyphCache() {
+		// prevent instantiation
+	}
+
+	/**
+	 * Gets the glyph masks of the given characters, rasterizing those not cached yet.
+	 * Masks are shared between callers and must not be modified.
+	 *
+	 * @param chars           characters to get
+	 * @param fontName        family of the font the glyphs are rendered in
+	 * @param pixelResolution width and height of every glyph in pixels
+	 * @return one bit mask per character, in the order given, as CharConverter produces them
+	 */
+	public static long[][] getMasks(char[] chars, String fontName, int pixelResolution) {
+		List<Character> missing = new ArrayList<>();
+		for (char c : chars) {
+			Key key = new Key(fontName, pixelResolution, c);
+			if (!MASKS.containsKey(key) && !missing.contains(c)) {
+				missing.add(c);
+			}
+		}
+		if (!missing.isEmpty()) {
+			rasterize(missing, fontName, pixelResolution);
+		}
+		long[][] masks = new long[chars.length][];
+		for (int i = 0; i < chars.length; i++) {
+			masks[i] = MASKS.get(new Key(fontName, pixelResolution, chars[i]));
+		}
+		return masks;
+	}
+
+	// Helper: rasterizes the given characters in parallel atlases and caches their masks
+	private static void rasterize(List<Character> chars, String fontName, int pixelResolution) {
+		int atlases = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+				chars.size() / MIN_CHARS_PER_ATLAS));
+		IntStream.range(0, atlases).parallel().forEach(atlas -> {
+			int from = chars.size() * atlas / atlases;
+			int to = chars.size() * (atlas + 1) / atlases;
+			char[] batch = new char[to - from];
+			for (int i = from; i < to; i++) {
+				batch[i - from] = chars.get(i);
+			}
+			long[][] masks = CharConverter.convertToBitMasks(batch, fontName, pixelResolution);
+			for (int i = 0; i < batch.length; i++) {
+				MASKS.putIfAbsent(new Key(fontName, pixelResolution, batch[i]), masks[i]);
+			}
+		});
+	}
+
+	/**
+	 * Identifies a glyph.
+	 */
+	private static final class Key {
+		private final String fontName;
+		private final int pixelResolution;
+		private final char c;
+
+		Key(String fontName, int pixelResolution, char c) {
+			this.fontName = fontName;
+			this.pixelResolution = pixelResolution;
+			this.c = c;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			return c == key.c && pixelResolution == key.pixelResolution && fontName.equals(key.fontName);
+		}
+
+		@Override
+		public int hashCode() {
+			return (fontName.hashCode() * 31 + pixelResolution) * 31 + c;
+		}
+	}
+}
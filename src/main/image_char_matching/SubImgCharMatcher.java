@@ -1,14 +1,19 @@
 package image_char_matching;
 
 import java.util.*;
-import java.util.function.Function;
 
 /**
  * SubImgCharMatcher maps sub-image brightness values to the best-matching ASCII characters
  * from a user-defined character set, based on a specified rounding method.
  * <p>
- * It supports adding and removing characters from the set, and automatically updates
- * brightness normalization functions accordingly.
+ * It supports adding and removing characters from the set. Every edit compiles a new immutable
+ * {@link CharMatcherSnapshot} off to the side and publishes it atomically (copy-on-write), so readers
+ * never block and never observe a half-applied edit. A render should grab one snapshot through
+ * {@link #getSnapshot()} and use it throughout, which makes a single matcher safe to share between
+ * concurrent renders and sessions.
+ * <p>
+ * Glyphs are taken from the shared {@link GlyphCache} in the matcher's font, which can be changed; the
+ * charset is then recompiled from the glyphs of the new font.
  *
  * @author aronisaacs
  */
@@ -17,16 +22,11 @@ public class SubImgCharMatcher {
 	private static final String CHARSET_NULL_ERROR = "Initial charset must not be null";
 	private static final int FIRST_ASCII_KEY = 32;
 	private static final int LAST_ASCII_LETTER = 126;
-	private static final String IS_EMPTY_ERROR = "Charset is empty";
-	private static final String NORMALIZATION_EXCEPTION = "Cannot normalize: charset is empty";
-	// Maps raw brightness (number of white pixels) to characters with that brightness
-	private final TreeMap<Integer, TreeSet<Character>> rawBrightnessMap = new TreeMap<>();
-
-	// Maps characters to their raw brightness value for fast removal
-	private final Map<Character, Integer> charToRawBrightness = new HashMap<>();
 
-	// Function to convert normalized [0,1] brightness into raw brightness [0,256]
-	private Function<Double, Integer> normalizedToRaw;
+	// The currently published charset, replaced as a whole on every edit
+	private volatile CharMatcherSnapshot snapshot = CharMatcherSnapshot.EMPTY;
+	// The font glyphs are rendered in, the pixel resolution is the snapshot's
+	private volatile String fontName = CharConverter.DEFAULT_FONT_NAME;
 
 	/**
 	 * Constructs a matcher with the given initial character set.
@@ -38,119 +38,144 @@ public class SubImgCharMatcher {
 	 */
 	public SubImgCharMatcher(char[] charset) {
 		Objects.requireNonNull(charset, CHARSET_NULL_ERROR);
-		for (char c : charset) {
-			addChar(c);
-		}
-		updateNormalizationFunction();
+		addChars(charset);
+	}
+
+	/**
+	 * Returns the currently published charset. The snapshot never changes, so a render that grabs it
+	 * once sees a consistent charset even if the matcher is edited meanwhile.
+	 *
+	 * @return the current snapshot
+	 */
+	public CharMatcherSnapshot getSnapshot() {
+		return snapshot;
 	}
 
 	/**
 	 * Adds a character to the matcher if not already present.
-	 * Automatically updates the brightness normalization function.
 	 *
 	 * @param c character to add
 	 * @throws IllegalArgumentException if character is not in printable ASCII range
-	 * @throws NullPointerException     if c is null (autoboxed Character used incorrectly)
 	 */
 	public void addChar(char c) {
-		if (!(c >= FIRST_ASCII_KEY && c <= LAST_ASCII_LETTER)) {
-			throw new IllegalArgumentException();
-		}
-		if (charToRawBrightness.containsKey(c)) return;
-
-		// Count number of black pixels (true values)
-		boolean[][] matrix = CharConverter.convertToBoolArray(c);
-		int whitePixels = 0;
-		for (boolean[] row : matrix) {
-			for (boolean pixel : row) {
-				if (pixel) whitePixels++;
+		addChars(new char[]{c});
+	}
+
+	/**
+	 * Adds all the given characters that are not already present.
+	 * The new glyphs are rasterized together in a single pass, and a single new snapshot is published.
+	 *
+	 * @param chars characters to add
+	 * @throws IllegalArgumentException if any character is not in printable ASCII range, in which case
+	 *                                  nothing is added
+	 */
+	public synchronized void addChars(char[] chars) {
+		CharMatcherSnapshot current = snapshot;
+		StringBuilder missing = new StringBuilder();
+		for (char c : chars) {
+			if (!(c >= FIRST_ASCII_KEY && c <= LAST_ASCII_LETTER)) {
+				throw new IllegalArgumentException();
+			}
+			if (!current.contains(c) && missing.indexOf(String.valueOf(c)) < 0) {
+				missing.append(c);
 			}
 		}
+		if (missing.length() == 0) return;
 
-		// Add to maps
-		charToRawBrightness.put(c, whitePixels);
-		rawBrightnessMap.putIfAbsent(whitePixels, new TreeSet<>());
-		rawBrightnessMap.get(whitePixels).add(c);
-
-		updateNormalizationFunction();
+		char[] newChars = missing.toString().toCharArray();
+		snapshot = current.withChars(newChars,
+				GlyphCache.getMasks(newChars, fontName, current.getPixelResolution()));
 	}
 
 	/**
-	 * Removes a character from the matcher.
-	 * Updates normalization if min/max brightness changes.
+	 * Changes the font the glyphs are rendered in, recompiling the charset from the glyphs of the new
+	 * font and publishing it as a single new snapshot.
 	 *
-	 * @param c character to remove
-	 * @throws IllegalArgumentException if the character is not in the charset
-	 * @throws NullPointerException     if c is null (autoboxed Character used incorrectly)
+	 * @param fontName        family of the font
+	 * @param pixelResolution width and height of every glyph in pixels, also the resolution tile shapes
+	 *                        are compared at
 	 */
-	public void removeChar(char c) {
-		if (!charToRawBrightness.containsKey(c)) {
-			return;
+	public synchronized void setFont(String fontName, int pixelResolution) {
+		CharMatcherSnapshot current = snapshot;
+		TreeSet<Character> charset = current.getCharset();
+		char[] chars = new char[charset.size()];
+		int i = 0;
+		for (char c : charset) {
+			chars[i++] = c;
 		}
+		this.fontName = fontName;
+		snapshot = CharMatcherSnapshot.empty(pixelResolution).withChars(chars,
+				GlyphCache.getMasks(chars, fontName, pixelResolution));
+	}
 
-		int brightness = charToRawBrightness.get(c);
-		TreeSet<Character> bucket = rawBrightnessMap.get(brightness);
+	/**
+	 * Returns the font the glyphs are rendered in.
+	 *
+	 * @return the font family
+	 */
+	public String getFontName() {
+		return fontName;
+	}
 
-		// Remove character from brightness bucket
-		if (bucket != null) {
-			bucket.remove(c);
-			if (bucket.isEmpty()) {
-				rawBrightnessMap.remove(brightness);
-			}
-		}
+	/**
+	 * Returns the width and height the glyphs are rendered at.
+	 *
+	 * @return pixel resolution of the glyphs
+	 */
+	public int getPixelResolution() {
+		return snapshot.getPixelResolution();
+	}
 
-		charToRawBrightness.remove(c);
-		updateNormalizationFunction();
+	/**
+	 * Removes a character from the matcher. Characters not in the charset are ignored.
+	 *
+	 * @param c character to remove
+	 */
+	public void removeChar(char c) {
+		removeChars(new char[]{c});
+	}
+
+	/**
+	 * Removes all the given characters from the matcher, publishing a single new snapshot.
+	 * Characters not in the charset are ignored.
+	 *
+	 * @param chars characters to remove
+	 */
+	public synchronized void removeChars(char[] chars) {
+		snapshot = snapshot.withoutChars(chars);
 	}
 
 	/**
 	 * Returns the character whose brightness best matches the given normalized brightness value,
+	 * using the current snapshot.
 	 *
 	 * @param brightness brightness in [0,1]
 	 * @return closest matching character
 	 * @throws IllegalStateException if charset is empty
 	 */
 	public char getCharByImageBrightness(double brightness) {
-		if (charToRawBrightness.isEmpty()) {
-			throw new IllegalStateException(IS_EMPTY_ERROR);
-		}
-		int rawQuery = normalizedToRaw.apply(brightness);
-
-		Integer floor = rawBrightnessMap.floorKey(rawQuery);
-		Integer ceil = rawBrightnessMap.ceilingKey(rawQuery);
-		if (floor == null) return rawBrightnessMap.get(ceil).first();
-		if (ceil == null) return rawBrightnessMap.get(floor).first();
-		int dFloor = Math.abs(floor - rawQuery);
-		int dCeil = Math.abs(ceil - rawQuery);
-		return (dFloor <= dCeil) ? rawBrightnessMap.get(floor).first() : rawBrightnessMap.get(ceil).first();
+		return snapshot.getCharByImageBrightness(brightness);
 	}
 
 	/**
-	 * Returns a copy of the current charset.
+	 * Returns the character whose glyph best matches the given tile shape, using the current snapshot.
 	 *
-	 * @return TreeSet of characters currently in the matcher
+	 * @param brightness brightness in [0,1]
+	 * @param tileMask   tile shape, bit set for bright cells
+	 * @return best matching character
+	 * @throws IllegalStateException if charset is empty
+	 * @see CharMatcherSnapshot#getCharByShape(double, long[])
 	 */
-	public TreeSet<Character> getCharset() {
-		return new TreeSet<>(charToRawBrightness.keySet());
+	public char getCharByShape(double brightness, long[] tileMask) {
+		return snapshot.getCharByShape(brightness, tileMask);
 	}
 
 	/**
-	 * Recomputes the normalization function from [0,1] to raw brightness values.
-	 * Called automatically after every add/remove.
+	 * Returns a copy of the current charset.
+	 *
+	 * @return TreeSet of characters currently in the matcher
 	 */
-	private void updateNormalizationFunction() {
-		if (rawBrightnessMap.isEmpty()) {
-			normalizedToRaw = b -> {
-				throw new IllegalStateException(NORMALIZATION_EXCEPTION);
-			};
-		} else {
-			int min = rawBrightnessMap.firstKey();
-			int max = rawBrightnessMap.lastKey();
-			if (min == max) {
-				normalizedToRaw = b -> min;
-			} else {
-				normalizedToRaw = b -> (int) Math.round(min + b * (max - min));
-			}
-		}
+	public TreeSet<Character> getCharset() {
+		return snapshot.getCharset();
 	}
 }